@@ -0,0 +1,179 @@
+/*
+j8583 A Java implementation of the ISO8583 protocol
+Copyright (C) 2007 Enrique Zamudio Lopez
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+*/
+package com.solab.iso8583;
+
+import java.text.ParseException;
+import java.util.BitSet;
+
+/**
+ * Operations on bitmaps stored as three long words: the first one for fields 1 to 64, the
+ * second one for fields 65 to 128 and the third one for fields 129 to 192. Within each word
+ * the bits are in the same order they have in the message, so the most significant bit is
+ * the first field of the word; this way each word is read and written as a big-endian long.
+ */
+final class Bitmap {
+
+    /** The number of words needed for all the fields. */
+    static final int WORDS = 3;
+    /** The bit of the first field in a word, which indicates that the next bitmap is present. */
+    static final long FIRST_BIT = 0x8000000000000000L;
+
+    private Bitmap() {
+    }
+
+    /**
+     * Returns the index of the word that contains the specified field.
+     *
+     * @param field the field number, from 1 to 192
+     * @return the word index
+     */
+    static int word(int field) {
+        return (field - 1) >> 6;
+    }
+
+    /**
+     * Returns the bit of the specified field within its word.
+     *
+     * @param field the field number, from 1 to 192
+     * @return the bit mask
+     */
+    static long bit(int field) {
+        return FIRST_BIT >>> ((field - 1) & 63);
+    }
+
+    /**
+     * Returns the first field that is set in the bitmap, starting at the specified one.
+     *
+     * @param words the bitmap
+     * @param field the first field number to look at, from 1
+     * @return the field number, or -1 if there are no more fields set
+     */
+    static int next(long[] words, int field) {
+        int w = word(field);
+        if (w >= WORDS) {
+            return -1;
+        }
+        long word = words[w] & (-1L >>> ((field - 1) & 63));
+        while (word == 0) {
+            if (++w == WORDS) {
+                return -1;
+            }
+            word = words[w];
+        }
+        return (w << 6) + Long.numberOfLeadingZeros(word) + 1;
+    }
+
+    /**
+     * Returns a mask with the bits of all the fields of a word up to the specified one.
+     *
+     * @param word  the word index
+     * @param field the last field number to include
+     * @return the mask
+     */
+    static long upTo(int word, int field) {
+        final int bits = field - (word << 6);
+        if (bits <= 0) {
+            return 0;
+        }
+        return bits >= 64 ? -1L : -1L << (64 - bits);
+    }
+
+    /**
+     * Reads a binary bitmap word.
+     *
+     * @param buf the buffer
+     * @param pos the position of the first byte of the word
+     * @return the word
+     */
+    static long readBinary(byte[] buf, int pos) {
+        long w = 0;
+        for (int i = pos; i < pos + 8; i++) {
+            w = (w << 8) | (buf[i] & 0xff);
+        }
+        return w;
+    }
+
+    /**
+     * Reads a bitmap word encoded as 16 hex digits, in upper or lower case.
+     *
+     * @param buf the buffer
+     * @param pos the position of the first digit
+     * @return the word
+     * @throws ParseException if there is an invalid digit
+     */
+    static long readHex(byte[] buf, int pos) throws ParseException {
+        long w = 0;
+        for (int i = pos; i < pos + 16; i++) {
+            final int c = buf[i];
+            final int nibble;
+            if (c >= '0' && c <= '9') {
+                nibble = c - '0';
+            } else if (c >= 'A' && c <= 'F') {
+                nibble = c - 55;
+            } else if (c >= 'a' && c <= 'f') {
+                nibble = c - 87;
+            } else {
+                throw new ParseException("Invalid ISO8583 bitmap", i);
+            }
+            w = (w << 4) | nibble;
+        }
+        return w;
+    }
+
+    /**
+     * Writes a bitmap word as 8 bytes.
+     *
+     * @param w    the word
+     * @param dest the array to write the bytes to
+     * @param pos  the position of the first byte
+     */
+    static void writeBinary(long w, byte[] dest, int pos) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            dest[pos++] = (byte) (w >>> shift);
+        }
+    }
+
+    /**
+     * Encodes a bitmap word as 16 upper case hex digits.
+     *
+     * @param w   the word
+     * @param dest the array to write the digits to
+     * @param pos the position of the first digit
+     */
+    static void writeHex(long w, byte[] dest, int pos) {
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            dest[pos++] = IsoMessage.HEX[(int) (w >>> shift) & 15];
+        }
+    }
+
+    /**
+     * Converts bitmap words to a BitSet where bit 0 is the first field of the first word.
+     *
+     * @param words the words
+     * @return the bit set
+     */
+    static BitSet toBitSet(long... words) {
+        final long[] reversed = new long[words.length];
+        for (int i = 0; i < words.length; i++) {
+            reversed[i] = Long.reverse(words[i]);
+        }
+        return BitSet.valueOf(reversed);
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583;
+
+/**
+ * Receives the fields of a message, in order, from {@link IsoMessage#forEachField(FieldVisitor)}.
+ */
+@FunctionalInterface
+public interface FieldVisitor {
+
+    /**
+     * Called for each field that is present in the message.
+     *
+     * @param field the field number
+     * @param value the value of the field
+     */
+    void visit(int field, IsoValue<?> value);
+
+}
@@ -18,14 +18,23 @@ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
 */
 package com.solab.iso8583;
 
+import com.solab.iso8583.util.Charsets;
 import com.solab.iso8583.util.HexCodec;
+import com.solab.iso8583.util.SingleByteCodec;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -112,9 +121,17 @@ public class IsoMessage {
     private boolean binaryHeader;
     private boolean binaryFields;
 
-    /** This is where the values are stored. */
-    @SuppressWarnings("rawtypes")
-	private final IsoValue[] fields = new IsoValue[MAX_AMOUNT_OF_FIELDS + 1];
+    private static final IsoValue<?>[] NO_FIELDS = new IsoValue<?>[0];
+
+    /** This is where the values are stored: indexed by field number, or in compact storage mode,
+     * only the fields that are present, in order, indexed by their rank in the bitmap.
+     * The array is created when the first field is set. */
+	private IsoValue<?>[] fields = NO_FIELDS;
+    private boolean compactStorage;
+    /** The bitmap of the fields that are present, kept up to date as fields are set and removed. */
+    private final long[] bitmap = new long[Bitmap.WORDS];
+    /** The fields whose values are shared with other messages, so they're copied before they're handed out. */
+    private final long[] shared = new long[Bitmap.WORDS];
     /** Stores the optional ISO header. */
     private String isoHeader;
     private byte[] binIsoHeader;
@@ -127,7 +144,16 @@ public class IsoMessage {
     private boolean tertiaryBitmapNeeded = false;
     private boolean forceStringEncoding;
     private boolean encodeVariableLengthFieldsInHex;
+    /** Set while the message is in a {@link MessagePool}, so that it's not put there twice;
+     * volatile because a message can be released and acquired on different threads. */
+    volatile boolean pooled;
     private String encoding = System.getProperty("file.encoding");
+    /** The charset for the encoding, resolved when it's set; null if it's not supported. */
+    private Charset charset = Charsets.lookup(encoding);
+    /** Translation tables for single-byte encodings such as EBCDIC; null for other encodings. */
+    private SingleByteCodec table = SingleByteCodec.forCharset(charset);
+    /** Fields that haven't been decoded yet, when the message was parsed lazily. */
+    private LazyFieldIndex lazyFields;
 
     /**
      * Creates a new empty message with no values set.
@@ -228,6 +254,8 @@ public class IsoMessage {
             throw new IllegalArgumentException("Cannot set null encoding.");
         }
     	encoding = value;
+    	charset = Charsets.lookup(value);
+    	table = SingleByteCodec.forCharset(charset);
     }
 
     /**
@@ -400,8 +428,7 @@ public class IsoMessage {
      * @return the object value
      */
     public <T> T getObjectValue(int field) {
-    	@SuppressWarnings("unchecked")
-    	IsoValue<T> v = fields[field];
+    	IsoValue<T> v = peekField(field);
     	return v == null ? null : v.getValue();
     }
 
@@ -412,9 +439,53 @@ public class IsoMessage {
      * @param field the field
      * @return the field
      */
-    @SuppressWarnings("unchecked")
     public <T> IsoValue<T> getField(int field) {
-    	return fields[field];
+    	IsoValue<T> v = peekField(field);
+    	if (v != null && (shared[Bitmap.word(field)] & Bitmap.bit(field)) != 0) {
+    		//The caller may modify the value, so it gets a copy of its own instead of the shared one
+    		v = copy(v);
+    		putValue(field, v);
+    	}
+    	return v;
+    }
+
+    /**
+     * Returns the value of a field without copying it if it's shared with other messages,
+     * to be read but not modified. Fields left undecoded by a lazy parse are decoded first.
+     */
+    <T> IsoValue<T> peekField(int field) {
+    	IsoValue<T> v = valueAt(field);
+    	if (v == null && lazyFields != null) {
+    		decodeLazyField(field);
+    		v = valueAt(field);
+    	}
+    	return v;
+    }
+
+    /**
+     * Returns the value of a field to be set in another message, like a response; from then on,
+     * both messages copy it before handing it out with {@link #getField(int)}.
+     */
+    <T> IsoValue<T> shareField(int field) {
+    	final IsoValue<T> v = peekField(field);
+    	if (v != null) {
+    		shared[Bitmap.word(field)] |= Bitmap.bit(field);
+    	}
+    	return v;
+    }
+
+    /**
+     * Stores a value that is shared with other messages, like a template value, without copying
+     * it; it's only copied if it's requested with {@link #getField(int)}, or if this message needs
+     * it with a different character encoding.
+     */
+    void setSharedField(int index, IsoValue<?> field) {
+    	if (!Objects.equals(field.getCharacterEncoding(), encoding)) {
+    		setField(index, copy(field));
+    	} else {
+    		setField(index, field);
+    		shared[Bitmap.word(index)] |= Bitmap.bit(index);
+    	}
     }
 
     /**
@@ -432,13 +503,20 @@ public class IsoMessage {
     	if (index > END_OF_SECONDARY_BITMAP_FIELDS) {
             tertiaryBitmapNeeded = true;
         }
-    	if (field != null) {
+    	if (field != null && !Objects.equals(field.getCharacterEncoding(), encoding)) {
         	field.setCharacterEncoding(encoding);
     	}
-    	fields[index] = field;
+    	putValue(index, field);
+    	if (lazyFields != null) {
+    		lazyFields.remove(index);
+    	}
     	return this;
     }
 
+    private static <T> IsoValue<T> copy(IsoValue<T> v) {
+        return new IsoValue<>(v);
+    }
+
     /**
      * Convenience method for setting several fields in one call.  
   * @param values the values
@@ -480,8 +558,11 @@ public class IsoMessage {
     	if (index < 2 || index > MAX_AMOUNT_OF_FIELDS) {
     		throw new IndexOutOfBoundsException("Field index must be between 2 and " + MAX_AMOUNT_OF_FIELDS);
     	}
+    	if (lazyFields != null) {
+    		lazyFields.remove(index);
+    	}
     	if (value == null) {
-    		fields[index] = null;
+    		putValue(index, null);
     	} else {
             if (index > END_OF_SECONDARY_BITMAP_FIELDS) {
                 tertiaryBitmapNeeded = true;
@@ -493,7 +574,7 @@ public class IsoMessage {
     			v = new IsoValue<>(t, value, encoder);
     		}
     		v.setCharacterEncoding(encoding);
-    		fields[index] = v;
+    		putValue(index, v);
     	}
     	return this;
     }
@@ -511,7 +592,7 @@ public class IsoMessage {
      * @throws IllegalArgumentException if there is no current field at the specified index.
      */
     public <T> IsoMessage updateValue(int index, T value) {
-        IsoValue<T> current = getField(index);
+        IsoValue<T> current = peekField(index);
         if (current == null) {
             throw new IllegalArgumentException("Value-only field setter can only be used on existing fields");
         } else {
@@ -529,7 +610,198 @@ public class IsoMessage {
      * @return the boolean
      */
     public boolean hasField(int idx) {
-    	return fields[idx] != null;
+    	return idx != 0 && (bitmap[Bitmap.word(idx)] & Bitmap.bit(idx)) != 0;
+    }
+
+    /**
+     * Returns the number of the first field present in the message, starting at the specified one.
+     * Only the bitmap is checked, so iterating over the fields like this takes as many steps as there
+     * are fields in the message:
+     * <pre>for (int i = m.nextSetField(2); i &gt; 0; i = m.nextSetField(i + 1))</pre>
+     *
+     * @param from The first field number to check.
+     * @return the number of the field, or -1 if there are no more fields.
+     */
+    public int nextSetField(int from) {
+        return Bitmap.next(bitmap, Math.max(from, 2));
+    }
+
+    /**
+     * Calls the visitor with each field present in the message, in order. Fields that were left
+     * undecoded by a lazy parse are decoded first.
+     *
+     * @param visitor the visitor
+     */
+    public void forEachField(FieldVisitor visitor) {
+        for (int i = nextSetField(2); i > 0; i = nextSetField(i + 1)) {
+            visitor.visit(i, getField(i));
+        }
+    }
+
+    /**
+     * Sets whether the values are stored in an array with room for only the fields that are
+     * present, instead of one with room for every possible field. Compact storage takes less
+     * memory when messages are kept around, at the cost of moving some values when a field is
+     * added or removed; getting a field takes constant time either way. Changing the mode moves
+     * the current values to the new storage. The default is false.
+     *
+     * @param flag the flag
+     */
+    public void setCompactStorage(boolean flag) {
+    	if (flag == compactStorage) {
+    		return;
+    	}
+    	final IsoValue<?>[] old = fields;
+    	final int count = fieldCount();
+    	fields = count == 0 ? NO_FIELDS : new IsoValue<?>[flag ? count : MAX_AMOUNT_OF_FIELDS + 1];
+    	int k = 0;
+    	for (int i = nextSetField(2); i > 0; i = nextSetField(i + 1)) {
+    		if (flag) {
+    			fields[k++] = old.length == 0 ? null : old[i];
+    		} else {
+    			fields[i] = old[k++];
+    		}
+    	}
+    	compactStorage = flag;
+    }
+
+    /**
+     * Returns true if the values are stored in an array with room for only the fields that are present.
+     *
+     * @return the boolean
+     */
+    public boolean isCompactStorage() {
+    	return compactStorage;
+    }
+
+    /** Returns true if the message type is 4 decimal digits that the encoding writes as ASCII,
+     * so they can be written without formatting them. */
+    private boolean asciiType() {
+    	if ((type & ~0xffff) != 0 || (type & 0x8888 & ((type & 0x4444) << 1 | (type & 0x2222) << 2)) != 0) {
+    		return false;
+    	}
+    	return IsoValue.hasAsciiDigits(encoding);
+    }
+
+    /** Encodes text with the character encoding of the message. */
+    private byte[] encode(String s) throws UnsupportedEncodingException {
+    	if (table != null) {
+    		return table.encode(s);
+    	}
+    	return charset == null ? s.getBytes(encoding) : s.getBytes(charset);
+    }
+
+    /** Returns the number of fields present, according to the bitmap. */
+    private int fieldCount() {
+    	int count = 0;
+    	for (long w : bitmap) {
+    		count += Long.bitCount(w);
+    	}
+    	return count;
+    }
+
+    /** Returns the position of a field in compact storage: the number of fields before it. */
+    private int rank(int field) {
+    	final int w = Bitmap.word(field);
+    	int r = Long.bitCount(bitmap[w] & ~(-1L >>> ((field - 1) & 63)));
+    	for (int i = 0; i < w; i++) {
+    		r += Long.bitCount(bitmap[i]);
+    	}
+    	return r;
+    }
+
+    /** Returns the value stored for a field, without decoding it if it was parsed lazily. */
+    @SuppressWarnings("unchecked")
+    private <T> IsoValue<T> valueAt(int field) {
+    	if (compactStorage) {
+    		return hasField(field) ? (IsoValue<T>) fields[rank(field)] : null;
+    	}
+    	return fields.length == 0 ? null : (IsoValue<T>) fields[field];
+    }
+
+    /** Stores the value of a field, or removes it if it's null, and updates the bitmap. */
+    private void putValue(int index, IsoValue<?> value) {
+    	final int w = Bitmap.word(index);
+    	final long bit = Bitmap.bit(index);
+    	final boolean present = (bitmap[w] & bit) != 0;
+    	shared[w] &= ~bit;
+    	if (!compactStorage) {
+    		if (fields.length == 0 && value != null) {
+    			fields = new IsoValue<?>[MAX_AMOUNT_OF_FIELDS + 1];
+    		}
+    		if (fields.length > 0) {
+    			fields[index] = value;
+    		}
+    	} else if (present) {
+    		final int r = rank(index);
+    		if (value == null) {
+    			final int count = fieldCount();
+    			System.arraycopy(fields, r + 1, fields, r, count - r - 1);
+    			fields[count - 1] = null;
+    		} else {
+    			fields[r] = value;
+    		}
+    	} else if (value != null) {
+    		final int r = rank(index);
+    		final int count = fieldCount();
+    		if (count == fields.length) {
+    			fields = Arrays.copyOf(fields, Math.max(4, count + (count >> 1)));
+    		}
+    		System.arraycopy(fields, r, fields, r + 1, count - r);
+    		fields[r] = value;
+    	}
+    	if (value == null) {
+    		bitmap[w] &= ~bit;
+    	} else {
+    		bitmap[w] |= bit;
+    	}
+    }
+
+    /**
+     * Sets the index of fields that were left undecoded by a lazy parse; they will be
+     * decoded the first time they're requested.
+     *
+     * @param value the index
+     */
+    void setLazyFields(LazyFieldIndex value) {
+        lazyFields = value;
+        if (compactStorage) {
+            //Make room for the lazy fields, in order, among the ones already stored
+            final IsoValue<?>[] old = fields;
+            final long[] stored = bitmap.clone();
+            value.markFields(bitmap);
+            fields = new IsoValue<?>[fieldCount()];
+            int k = 0;
+            int j = 0;
+            for (int i = nextSetField(2); i > 0; i = nextSetField(i + 1)) {
+                if ((stored[Bitmap.word(i)] & Bitmap.bit(i)) != 0) {
+                    fields[k] = old[j++];
+                }
+                k++;
+            }
+        } else {
+            value.markFields(bitmap);
+        }
+        if (bitmap[2] != 0) {
+            tertiaryBitmapNeeded = true;
+        }
+    }
+
+    private void decodeLazyField(int field) {
+        try {
+            IsoValue<?> v = lazyFields.decode(field);
+            if (v != null) {
+                v.setCharacterEncoding(encoding);
+                putValue(field, v);
+            }
+        } catch (ParseException | UnsupportedEncodingException ex) {
+            throw new IllegalStateException(String.format("Cannot decode field %d: %s",
+                    field, ex.getMessage()), ex);
+        } finally {
+            if (lazyFields.isEmpty()) {
+                lazyFields = null;
+            }
+        }
     }
 
     /**
@@ -579,6 +851,39 @@ public class IsoMessage {
     	outs.flush();
     }
 
+    /**
+     * Writes a message straight to a stream, after writing the specified number of bytes indicating
+     * the message's length. Unlike {@link #write(OutputStream, int)}, the message is not written to
+     * an internal memory stream first: the length is computed up front with {@link #encodedSize(int)}
+     * and then the header and every field are written to the stream as they're encoded, so this is
+     * meant for buffered streams. Several messages can be written before a single flush if
+     * {@code flush} is false.
+     *
+     * @param outs        The stream to write the message to.
+     * @param lengthBytes The size of the message length header. Valid ranges are 0 to 4.
+     * @param flush       Whether to flush the stream after writing the message.
+     * @throws IOException if there is a problem writing to the stream.
+     */
+    public void write(OutputStream outs, int lengthBytes, boolean flush) throws IOException {
+    	if (lengthBytes > 4) {
+    		throw new IllegalArgumentException("The length header can have at most 4 bytes");
+    	}
+    	if (lengthBytes > 0) {
+    		final int l = encodedSize(0);
+    		for (int shift = (lengthBytes - 1) * 8; shift >= 0; shift -= 8) {
+    			outs.write((l >> shift) & 0xff);
+    		}
+    	}
+    	writeMessage(outs);
+    	//ETX
+    	if (etx > -1) {
+    		outs.write(etx);
+    	}
+    	if (flush) {
+    		outs.flush();
+    	}
+    }
+
     /**
      * Creates and returns a ByteBuffer with the data of the message, including the length header.
      * The returned buffer is already flipped, so it is ready to be written to a Channel.  
@@ -587,35 +892,99 @@ public class IsoMessage {
      * @return the byte buffer
      */
     public ByteBuffer writeToBuffer(int lengthBytes) {
+    	ByteBuffer buf = ByteBuffer.allocate(encodedSize(lengthBytes));
+    	writeTo(buf, lengthBytes);
+    	buf.flip();
+    	return buf;
+    }
+
+    /**
+     * Writes the message, including the length header and the ETX, straight into the specified
+     * buffer, starting at its current position; no intermediate buffers are used. The buffer can be
+     * direct or pooled; its position is advanced past the message and it is not flipped.
+     * Use {@link #encodedSize(int)} to know how much room the message needs.
+     *
+     * @param dst         the buffer to write the message to.
+     * @param lengthBytes The size of the message length header. Valid ranges are 0 to 4.
+     * @throws java.nio.BufferOverflowException if the message doesn't fit in the remaining space of the buffer.
+     */
+    public void writeTo(ByteBuffer dst, int lengthBytes) {
     	if (lengthBytes > 4) {
     		throw new IllegalArgumentException("The length header can have at most 4 bytes");
     	}
+    	final int start = dst.position();
+    	if (dst.remaining() < lengthBytes) {
+    		throw new BufferOverflowException();
+    	}
+    	dst.position(start + lengthBytes);
+    	try {
+    		writeMessage(new ByteBufferOutputStream(dst));
+    	} catch (IOException ex) {
+    		//should never happen, writing to a ByteBuffer
+    	}
+    	//ETX
+    	if (etx > -1) {
+    		dst.put((byte)etx);
+    	}
+    	//The length header is filled in last, when the length is known
+    	int l = dst.position() - start - lengthBytes;
+    	for (int i = lengthBytes - 1; i >= 0; i--) {
+    		dst.put(start + i, (byte)(l & 0xff));
+    		l >>= 8;
+    	}
+    }
 
-    	byte[] data = writeData();
-    	ByteBuffer buf = ByteBuffer.allocate(lengthBytes + data.length + (etx > -1 ? 1 : 0));
-    	if (lengthBytes > 0) {
-    		int l = data.length;
-    		if (etx > -1) {
-    			l++;
-    		}
-    		if (lengthBytes == 4) {
-                buf.put((byte)((l & 0xff000000) >> 24));
-    		}
-    		if (lengthBytes > 2) {
-                buf.put((byte)((l & 0xff0000) >> 16));
+    /**
+     * Returns the exact number of bytes that the message takes when written with
+     * {@link #write(OutputStream, int)}, {@link #writeToBuffer(int)} or {@link #writeTo(ByteBuffer, int)},
+     * including the length header and the ETX. The size is computed from the lengths of the fields;
+     * only the values with a custom encoder or in a multi-byte encoding are encoded to be measured.
+     *
+     * @param lengthBytes The size of the message length header. Valid ranges are 0 to 4.
+     * @return the number of bytes
+     */
+    public int encodedSize(int lengthBytes) {
+    	if (lengthBytes > 4) {
+    		throw new IllegalArgumentException("The length header can have at most 4 bytes");
+    	}
+    	int size = lengthBytes + (etx > -1 ? 1 : 0);
+    	try {
+    		if (isoHeader != null) {
+    			size += encode(isoHeader).length;
+    		} else if (binIsoHeader != null) {
+    			size += binIsoHeader.length;
     		}
-    		if (lengthBytes > 1) {
-                buf.put((byte)((l & 0xff00) >> 8));
+    		size += binaryHeader ? 2 : asciiType() || table != null && (type & ~0xffff) == 0 ? 4 : encode(String.format("%04x", type)).length;
+    	} catch (UnsupportedEncodingException ex) {
+    		throw new IllegalStateException("Unsupported encoding " + encoding, ex);
+    	}
+    	if (tertiaryBitmapNeeded) {
+    		fillTertiaryBitmapField();
+    	}
+    	final boolean secondary = needsSecondaryBitmap();
+    	if (binaryHeader || binBitmap) {
+    		size += secondary ? 16 : 8;
+    	} else if (!forceStringEncoding || table != null || IsoValue.hasAsciiDigits(encoding)) {
+    		size += secondary ? 32 : 16;
+    	} else {
+    		final ByteBufferOutputStream counter = new ByteBufferOutputStream(null);
+    		try {
+    			writeBitmapToStreamAsAscii(counter, primaryBitmapWord(secondary), secondary);
+    		} catch (IOException ex) {
+    			throw new IllegalStateException("Unsupported encoding " + encoding, ex);
     		}
-            buf.put((byte)(l & 0xff));
+    		size += counter.getCount();
     	}
-    	buf.put(data);
-    	//ETX
-    	if (etx > -1) {
-    		buf.put((byte)etx);
+    	for (int i = nextSetField(2); i > 0; i = nextSetField(i + 1)) {
+    		IsoValue<?> v = valueAt(i);
+    		if (v != null) {
+    			size += v.encodedSize(binaryFields, forceStringEncoding);
+    		} else if (lazyFields != null && lazyFields.contains(i)) {
+    			int raw = lazyFields.rawSize(i, binaryFields, forceStringEncoding, encoding);
+    			size += raw >= 0 ? raw : peekField(i).encodedSize(binaryFields, forceStringEncoding);
+    		}
     	}
-    	buf.flip();
-    	return buf;
+    	return size;
     }
 
     /**
@@ -623,24 +992,21 @@ public class IsoMessage {
      * @return the bit set
      */
     protected BitSet createBitmapBitSet() {
-        BitSet bs = new BitSet(forceb2 ? 128 : 64);
-        for (int i = 2 ; i <= END_OF_SECONDARY_BITMAP_FIELDS; i++) {
-            if (fields[i] != null) {
-                bs.set(i - 1);
-            }
-        }
-        if (forceb2) {
-            bs.set(0);
-        } else if (bs.length() > PRIMARY_BITMAP_SIZE) {
-            //Extend to 128 if needed
-            BitSet b2 = new BitSet(EXTENDED_BITMAP_SIZE);
-            b2.or(bs);
-            bs = b2;
-            bs.set(0);
-        }
+        final boolean secondary = needsSecondaryBitmap();
+        BitSet bs = new BitSet(secondary ? EXTENDED_BITMAP_SIZE : PRIMARY_BITMAP_SIZE);
+        bs.or(Bitmap.toBitSet(primaryBitmapWord(secondary), bitmap[1]));
         return bs;
     }
 
+    private boolean needsSecondaryBitmap() {
+        return forceb2 || bitmap[1] != 0;
+    }
+
+    /** Returns the first word of the bitmap, with the bit that indicates the secondary bitmap. */
+    private long primaryBitmapWord(boolean secondary) {
+        return secondary ? bitmap[0] | Bitmap.FIRST_BIT : bitmap[0] & ~Bitmap.FIRST_BIT;
+    }
+
     /**
      * Create tertiary bit set bit set.
      *
@@ -649,19 +1015,14 @@ public class IsoMessage {
     /* Creates a BitSet for fields 129-196 */
     protected BitSet createTertiaryBitSet() {
         BitSet tertiaryBitmap = new BitSet(64);
-        for (int i = START_OF_TERTIARY_BITMAP_FIELDS ; i <= END_OF_TERTIARY_BITMAP_FIELDS; i++) {
-            if (fields[i] != null) {
-                tertiaryBitmap.set(i - START_OF_TERTIARY_BITMAP_FIELDS);
-            }
-        }
+        tertiaryBitmap.or(Bitmap.toBitSet(bitmap[2]));
         return tertiaryBitmap;
     }
 
     private void fillTertiaryBitmapField(){
-        ByteArrayOutputStream bout = new ByteArrayOutputStream();
-        BitSet bitset = createTertiaryBitSet();
-        writeBitmapToStreamAsBinary(bout, bitset);
-        IsoValue<byte[]> bitmapValue = new IsoValue<>(IsoType.BINARY, bout.toByteArray(), bout.size());
+        final byte[] bin = new byte[8];
+        Bitmap.writeBinary(bitmap[2], bin, 0);
+        IsoValue<byte[]> bitmapValue = new IsoValue<>(IsoType.BINARY, bin, bin.length);
         setField(INDEX_OF_TERTIARY_BITMAP, bitmapValue);
     }
 
@@ -671,29 +1032,38 @@ public class IsoMessage {
      */
     public byte[] writeData() {
     	ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    	try {
+    		writeMessage(bout);
+    	} catch (IOException ex) {
+    		//should never happen, writing to a ByteArrayOutputStream
+    	}
+    	return bout.toByteArray();
+    }
+
+    /** Writes the ISO header, message type, bitmap and fields to the stream. */
+    private void writeMessage(OutputStream outs) throws IOException {
     	if (isoHeader != null) {
-    		try {
-    			bout.write(isoHeader.getBytes(encoding));
-    		} catch (IOException ex) {
-    			//should never happen, writing to a ByteArrayOutputStream
-    		}
+    		outs.write(encode(isoHeader));
     	} else if (binIsoHeader != null) {
-            try {
-                bout.write(binIsoHeader);
-            } catch (IOException ex) {
-                //should never happen, writing to a ByteArrayOutputStream
-            }
+            outs.write(binIsoHeader);
         }
     	//Message Type
     	if (binaryHeader) {
-        	bout.write((type & 0xff00) >> 8);
-        	bout.write(type & 0xff);
-    	} else {
-    		try {
-    			bout.write(String.format("%04x", type).getBytes(encoding));
-    		} catch (IOException ex) {
-    			//should never happen, writing to a ByteArrayOutputStream
+        	outs.write((type & 0xff00) >> 8);
+        	outs.write(type & 0xff);
+    	} else if (asciiType()) {
+    		for (int shift = 12; shift >= 0; shift -= 4) {
+    			outs.write('0' + ((type >> shift) & 15));
+    		}
+    	} else if (table != null && (type & ~0xffff) == 0) {
+    		final byte[] mti = new byte[4];
+    		for (int i = 0; i < 4; i++) {
+    			mti[i] = (byte) Character.forDigit((type >> (12 - i * 4)) & 15, 16);
     		}
+    		table.fromAscii(mti, 0, 4);
+    		outs.write(mti);
+    	} else {
+    		outs.write(encode(String.format("%04x", type)));
     	}
 
     	//Bitmap
@@ -701,72 +1071,46 @@ public class IsoMessage {
             fillTertiaryBitmapField();
         }
 
-        BitSet bs = createBitmapBitSet();
+        final boolean secondary = needsSecondaryBitmap();
+        final long primary = primaryBitmapWord(secondary);
         //Write bitmap to stream
         if (binaryHeader || binBitmap) {
-            writeBitmapToStreamAsBinary(bout, bs);
+            final byte[] bin = new byte[secondary ? 16 : 8];
+            Bitmap.writeBinary(primary, bin, 0);
+            if (secondary) {
+                Bitmap.writeBinary(bitmap[1], bin, 8);
+            }
+            outs.write(bin);
         } else {
-            writeBitmapToStreamAsAscii(bout, bs);
+            writeBitmapToStreamAsAscii(outs, primary, secondary);
         }
 
         //Fields
-    	for (int i = 2; i < fields.length; i++) {
-    		IsoValue<?> v = fields[i];
+    	for (int i = nextSetField(2); i > 0; i = nextSetField(i + 1)) {
+    		IsoValue<?> v = valueAt(i);
     		if (v != null) {
-        		try {
-        			v.write(bout, binaryFields, forceStringEncoding);
-        		} catch (IOException ex) {
-        			//should never happen, writing to a ByteArrayOutputStream
-        		}
+    			v.write(outs, binaryFields, forceStringEncoding);
+    		} else if (lazyFields != null && lazyFields.contains(i)
+    				&& !lazyFields.writeRaw(i, outs, binaryFields, forceStringEncoding, encoding)) {
+    			//The message is being encoded differently from how it was parsed
+    			peekField(i).write(outs, binaryFields, forceStringEncoding);
     		}
     	}
-    	return bout.toByteArray();
-    }
-
-    private void writeBitmapToStreamAsBinary(ByteArrayOutputStream bout, BitSet bs) {
-        int bitPosition = 0x80; // byte: 1000 0000
-        int resultByte = 0x00;
-        for (int i = 0; i < bs.size(); i++) {
-            if (bs.get(i)) {
-                resultByte |= bitPosition; // set the bit selected by bitPosition to 1
-            }
-            bitPosition >>= 1; // move the selected bit 1 to the right
-            if (bitPosition == 0) { // if all bits have been used
-                bout.write(resultByte); // write the resulting bite
-                bitPosition = 128; // start over
-                resultByte = 0;
-            }
-        }
     }
 
-    private void writeBitmapToStreamAsAscii(ByteArrayOutputStream bout, BitSet bs) {
-        ByteArrayOutputStream bout2 = null;
-        if (forceStringEncoding) {
-            bout2 = bout;
-            bout = new ByteArrayOutputStream();
-        }
-        int pos = 0;
-        int lim = bs.size() / 4;
-        for (int i = 0; i < lim; i++) {
-            int nibble = 0;
-            if (bs.get(pos++))
-                nibble |= 8;
-            if (bs.get(pos++))
-                nibble |= 4;
-            if (bs.get(pos++))
-                nibble |= 2;
-            if (bs.get(pos++))
-                nibble |= 1;
-            bout.write(HEX[nibble]);
+    private void writeBitmapToStreamAsAscii(OutputStream outs, long primary, boolean secondary) throws IOException {
+        final byte[] hex = new byte[secondary ? 32 : 16];
+        Bitmap.writeHex(primary, hex, 0);
+        if (secondary) {
+            Bitmap.writeHex(bitmap[1], hex, 16);
         }
-        if (forceStringEncoding) {
-            final String _hb = new String(bout.toByteArray());
-            bout = bout2;
-            try {
-                bout.write(_hb.getBytes(encoding));
-            } catch (IOException ignore) {
-                //never happen
-            }
+        if (forceStringEncoding && table != null) {
+            table.fromAscii(hex, 0, hex.length);
+            outs.write(hex, 0, hex.length);
+        } else if (forceStringEncoding) {
+            outs.write(encode(new String(hex, StandardCharsets.US_ASCII)));
+        } else {
+            outs.write(hex, 0, hex.length);
         }
     }
 
@@ -806,25 +1150,17 @@ public class IsoMessage {
         sb.append(String.format("%04x", type));
 
         //Bitmap
-        BitSet bs = createBitmapBitSet();
-        int pos = 0;
-        int lim = bs.size() / 4;
-        for (int i = 0; i < lim; i++) {
-            int nibble = 0;
-            if (bs.get(pos++))
-               nibble |= 8;
-            if (bs.get(pos++))
-               nibble |= 4;
-            if (bs.get(pos++))
-               nibble |= 2;
-            if (bs.get(pos++))
-               nibble |= 1;
-            sb.append(new String(HEX, nibble, 1));
+        final boolean secondary = needsSecondaryBitmap();
+        final byte[] hex = new byte[secondary ? 32 : 16];
+        Bitmap.writeHex(primaryBitmapWord(secondary), hex, 0);
+        if (secondary) {
+            Bitmap.writeHex(bitmap[1], hex, 16);
         }
+        sb.append(new String(hex, StandardCharsets.US_ASCII));
 
         //Fields
-        for (int i = 2; i <= MAX_AMOUNT_OF_FIELDS; i++) {
-            IsoValue<?> v = fields[i];
+        for (int i = nextSetField(2); i > 0; i = nextSetField(i + 1)) {
+            IsoValue<?> v = peekField(i);
             if (v != null) {
                 String desc = v.toString();
                 if (v.getType() == IsoType.LLBIN || v.getType() == IsoType.LLBCDBIN || v.getType() == IsoType.LLBCDLENGTHALPHANUM || v.getType() == IsoType.LLVAR || v.getType() == IsoType.LLBINLENGTHNUM || v.getType() == IsoType.LLBINLENGTHALPHANUM || v.getType() == IsoType.LLBINLENGTHBIN)  {
@@ -901,7 +1237,7 @@ public class IsoMessage {
      */
     public void copyFieldsFrom(IsoMessage src, int...idx) {
     	for (int i : idx) {
-    		IsoValue<Object> v = src.getField(i);
+    		IsoValue<Object> v = src.peekField(i);
     		if (v != null) {
         		setValue(i, v.getValue(), v.getEncoder(), v.getType(), v.getLength());
     		}
@@ -918,6 +1254,42 @@ public class IsoMessage {
         }
     }
 
+    /**
+     * Removes all the fields and restores every setting to its default value, leaving the message
+     * as if it had just been created with the no-arg constructor, so that it can be used again;
+     * only the storage mode is kept, along with the storage itself.
+     * {@link MessageFactory#acquire(int)} and {@link MessageFactory#parseMessageInto} then apply the
+     * settings of the factory, the same as with new messages.
+     */
+    public void reset() {
+        if (compactStorage) {
+            Arrays.fill(fields, 0, Math.min(fieldCount(), fields.length), null);
+        } else if (fields.length > 0) {
+            //Only the slots of the fields that are present need to be cleared
+            for (int i = nextSetField(2); i > 0; i = nextSetField(i + 1)) {
+                fields[i] = null;
+            }
+        }
+        Arrays.fill(bitmap, 0);
+        Arrays.fill(shared, 0);
+        lazyFields = null;
+        tertiaryBitmapNeeded = false;
+        type = 0;
+        isoHeader = null;
+        binIsoHeader = null;
+        etx = -1;
+        forceb2 = false;
+        binBitmap = false;
+        binaryHeader = false;
+        binaryFields = false;
+        forceStringEncoding = false;
+        encodeVariableLengthFieldsInHex = false;
+        encoding = System.getProperty("file.encoding");
+        charset = Charsets.lookup(encoding);
+        table = SingleByteCodec.forCharset(charset);
+        sensitiveFields = Set.of();
+    }
+
     /**
      * Returns true is the message contains all the specified fields.
      * A convenience for m.hasField(x) &amp;&amp; m.hasField(y) &amp;&amp; m.hasField(z) &amp;&amp; ...  
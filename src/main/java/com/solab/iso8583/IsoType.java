@@ -18,8 +18,12 @@ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
 */
 package com.solab.iso8583;
 
+import com.solab.iso8583.util.DateCodec;
+import com.solab.iso8583.util.NumericCodec;
+
 import java.math.BigDecimal;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
@@ -191,7 +195,25 @@ public enum IsoType {
 	}
 
 	/**
-	 * Formats a Date if the receiver is DATE10, DATE4, DATE_EXP, DATE12, DATE14 or TIME; throws an exception
+	 * Returns the pattern of the digits of the date types, or null if the receiver is not a date type.
+	 *
+	 * @return the pattern, in the format used by SimpleDateFormat
+	 */
+	public String getDatePattern() {
+		return switch (this) {
+			case DATE10 -> "MMddHHmmss";
+			case DATE4 -> "MMdd";
+			case DATE_EXP -> "yyMM";
+			case TIME -> "HHmmss";
+			case DATE12 -> "yyMMddHHmmss";
+			case DATE14 -> "yyyyMMddHHmmss";
+			case DATE6 -> "yyMMdd";
+			default -> null;
+		};
+	}
+
+	/**
+	 * Formats a Date if the receiver is DATE10, DATE4, DATE_EXP, DATE12, DATE14, DATE6 or TIME; throws an exception
 	 * otherwise.  
 	 *
 	 * @param value the value
@@ -199,28 +221,29 @@ public enum IsoType {
 	 * @return the string
 	 */
 	public String format(final Date value, final TimeZone tz) {
-        final SimpleDateFormat sdf;
-		if (this == DATE10) {
-            sdf = new SimpleDateFormat("MMddHHmmss");
-		} else if (this == DATE4) {
-            sdf = new SimpleDateFormat("MMdd");
-		} else if (this == DATE_EXP) {
-            sdf = new SimpleDateFormat("yyMM");
-		} else if (this == TIME) {
-            sdf = new SimpleDateFormat("HHmmss");
-        } else if (this == DATE12) {
-            sdf = new SimpleDateFormat("yyMMddHHmmss");
-		} else if (this == DATE14) {
-            sdf = new SimpleDateFormat("yyyyMMddHHmmss");
-        } else if (this == DATE6) {
-            sdf = new SimpleDateFormat("yyMMdd");
-        } else {
-            throw new IllegalArgumentException("Cannot format date as " + this);
-        }
-        if (tz != null) {
-            sdf.setTimeZone(tz);
-        }
-        return sdf.format(value);
+		final byte[] digits = new byte[length];
+		format(value, tz, digits, 0);
+		return new String(digits, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Writes the digits of a Date as ASCII characters, if the receiver is DATE10, DATE4, DATE_EXP,
+	 * DATE12, DATE14, DATE6 or TIME; throws an exception otherwise. The array must have room for
+	 * as many digits as the length of the type.
+	 *
+	 * @param value the value
+	 * @param tz the time zone, or null to use the default one
+	 * @param dest the array to write the digits to
+	 * @param pos the position of the first digit
+	 * @return the position after the last digit
+	 */
+	public int format(final Date value, final TimeZone tz, final byte[] dest, final int pos) {
+		final String pattern = getDatePattern();
+		if (pattern == null) {
+			throw new IllegalArgumentException("Cannot format date as " + this);
+		}
+		return DateCodec.writeDigits(value.getTime(), tz == null ? ZoneId.systemDefault() : tz.toZoneId(),
+				pattern, dest, pos);
 	}
 
 	/**
@@ -295,6 +318,11 @@ public enum IsoType {
 	 */
 	public String format(long value, int length) {
 		if (this == NUMERIC) {
+			if (NumericCodec.fits(value, length)) {
+				final byte[] digits = new byte[length];
+				NumericCodec.writeAscii(value, length, digits, 0);
+				return new String(digits, StandardCharsets.ISO_8859_1);
+			}
 			String x = String.format(String.format("%%0%dd", length), value);
 	        if (x.length() > length) {
 	        	throw new IllegalArgumentException("Numeric value is larger than intended length: " + value + " LEN " + length);
@@ -303,6 +331,11 @@ public enum IsoType {
 		} else if (this == ALPHA || VARIABLE_LENGTH_VAR_TYPES.contains(this)) {
 			return format(Long.toString(value), length);
 		} else if (this == AMOUNT) {
+			if (NumericCodec.fits(value, 10)) {
+				final byte[] digits = new byte[12];
+				NumericCodec.writeAscii(value * 100, 12, digits, 0);
+				return new String(digits, StandardCharsets.ISO_8859_1);
+			}
 			return String.format("%010d00", value);
 		} else if (this == BINARY || VARIABLE_LENGTH_BIN_TYPES.contains(this)) {
 			//TODO
@@ -310,6 +343,29 @@ public enum IsoType {
 		throw new IllegalArgumentException("Cannot format number as " + this);
 	}
 
+	/**
+	 * Writes the integer value as ASCII digits, zero-filled to the left, if the receiver is NUMERIC
+	 * or AMOUNT; throws an exception otherwise. Like {@link #format(long, int)}, an AMOUNT is written
+	 * with 12 digits, the last two being the cents. No intermediate String is created.
+	 *
+	 * @param value the value; it must not be negative
+	 * @param length the length of a NUMERIC
+	 * @param dest the array to write the digits to
+	 * @param pos the position of the first digit
+	 * @return the position after the last digit
+	 */
+	public int format(long value, int length, final byte[] dest, final int pos) {
+		if (this == NUMERIC) {
+			return NumericCodec.writeAscii(value, length, dest, pos);
+		} else if (this == AMOUNT) {
+			if (!NumericCodec.fits(value, 10)) {
+				throw new IllegalArgumentException("Amount does not fit in 12 digits: " + value);
+			}
+			return NumericCodec.writeAscii(value * 100, 12, dest, pos);
+		}
+		throw new IllegalArgumentException("Cannot write number as digits for " + this);
+	}
+
 	/**
 	 * Formats the BigDecimal as an AMOUNT, NUMERIC, or a String.  
 	 *
@@ -319,7 +375,13 @@ public enum IsoType {
 	 */
 	public String format(BigDecimal value, int length) {
 		if (this == AMOUNT) {
-			return String.format("%012d", value.movePointRight(2).longValue());
+			final long cents = value.movePointRight(2).longValue();
+			if (NumericCodec.fits(cents, 12)) {
+				final byte[] digits = new byte[12];
+				NumericCodec.writeAscii(cents, 12, digits, 0);
+				return new String(digits, StandardCharsets.ISO_8859_1);
+			}
+			return String.format("%012d", cents);
 		} else if (this == NUMERIC) {
 			return format(value.longValue(), length);
 		} else if (this == ALPHA || VARIABLE_LENGTH_VAR_TYPES.contains(this)) {
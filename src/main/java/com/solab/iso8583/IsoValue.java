@@ -19,14 +19,25 @@ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
 package com.solab.iso8583;
 
 import com.solab.iso8583.util.Bcd;
+import com.solab.iso8583.util.Charsets;
 import com.solab.iso8583.util.HexCodec;
+import com.solab.iso8583.util.NumericCodec;
+import com.solab.iso8583.util.SingleByteCodec;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.solab.iso8583.IsoType.RAW_BINARY;
 import static com.solab.iso8583.IsoType.VARIABLE_LENGTH_VAR_TYPES;
@@ -44,13 +55,25 @@ import static com.solab.iso8583.IsoType.VARIABLE_LENGTH_VAR_TYPES;
  */
 public class IsoValue<T> {
 
+    private static final String DIGITS = "0123456789ABCDEF";
+    /** Whether each encoding writes digits (hex included) the same as ASCII, so dates can be written directly. */
+    private static final Map<String, Boolean> ASCII_DIGITS = new ConcurrentHashMap<>();
+    /** Whether each encoding writes every character as a single byte, so an ALPHA takes as many bytes as its length. */
+    private static final Map<String, Boolean> SINGLE_BYTE = new ConcurrentHashMap<>();
+
     private final IsoType type;
     private final T value;
     private final CustomFieldEncoder<T> encoder;
     private int length;
     private String encoding;
+    /** The charset for the encoding, resolved when it's set; null if there's no encoding or it's not supported. */
+    private Charset charset;
+    /** Translation tables for single-byte encodings such as EBCDIC; null for other encodings. */
+    private SingleByteCodec table;
     private TimeZone tz;
     private boolean variableLengthFieldsInHex;
+    /** The bytes written for a constant value, when it was pre-encoded with {@link #preEncode}. */
+    private Encoded encoded;
 
     public IsoValue(IsoValue<T> source) {
         this.type = source.getType();
@@ -58,8 +81,11 @@ public class IsoValue<T> {
         this.encoder = source.getEncoder();
         this.length = source.getLength();
         this.encoding = source.getCharacterEncoding();
+        this.charset = source.charset;
+        this.table = source.table;
         this.tz = source.getTimeZone();
         this.variableLengthFieldsInHex = source.isVariableLengthFieldsInHex();
+        this.encoded = source.encoded;
     }
 
     /**
@@ -247,7 +273,13 @@ public class IsoValue<T> {
      * @param value the value
      */
     public void setCharacterEncoding(String value) {
+        if (Objects.equals(encoding, value)) {
+            return;
+        }
+        encoded = null;
         encoding = value;
+        charset = Charsets.lookup(value);
+        table = SingleByteCodec.forCharset(charset);
     }
 
     /**
@@ -265,6 +297,10 @@ public class IsoValue<T> {
      * @param value the value
      */
     public void setTimeZone(TimeZone value) {
+        if (Objects.equals(tz, value)) {
+            return;
+        }
+        encoded = null;
         tz = value;
     }
 
@@ -403,6 +439,11 @@ public class IsoValue<T> {
             }
             //BCD encode the rest of the length
             outs.write((((l % 100) / 10) << 4) | (l % 10));
+        } else if (forceStringEncoding && table != null && NumericCodec.fits(l, digits)) {
+            final byte[] lhead = new byte[digits];
+            NumericCodec.writeAscii(l, digits, lhead, 0);
+            table.fromAscii(lhead, 0, digits);
+            outs.write(lhead);
         } else if (forceStringEncoding) {
             String lhead = Integer.toString(l);
             final int ldiff = digits - lhead.length();
@@ -413,7 +454,7 @@ public class IsoValue<T> {
             } else if (ldiff == 3) {
                 lhead = "000" + lhead;
             }
-            outs.write(encoding == null ? lhead.getBytes() : lhead.getBytes(encoding));
+            outs.write(encode(lhead));
         } else {
             //write the length in ASCII
             if (digits == 4) {
@@ -441,12 +482,23 @@ public class IsoValue<T> {
      * @throws IOException the io exception
      */
     public void write(final OutputStream outs, final boolean binary, final boolean forceStringEncoding) throws IOException {
+        final Encoded pre = encoded;
+        if (pre != null && pre.binary() == binary && pre.forceString() == forceStringEncoding) {
+            outs.write(pre.bytes());
+            return;
+        }
         if (type == IsoType.LLLVAR || type == IsoType.LLVAR || type == IsoType.LLLLVAR || type == IsoType.LLBINLENGTHALPHANUM || type == IsoType.LLLLBINLENGTHALPHANUM || type == IsoType.LLBINLENGTHBIN || type == IsoType.LLLLBINLENGTHBIN || type == IsoType.LLBCDLENGTHALPHANUM) {
             writeLengthHeader(length, outs, type, binary, forceStringEncoding);
         } else if (type == IsoType.LLBIN || type == IsoType.LLLBIN || type == IsoType.LLLLBIN || type == IsoType.LLBINLENGTHNUM || type == IsoType.LLLLBINLENGTHNUM) {
             writeLengthHeader(binary ? length : length * 2, outs, type, binary, forceStringEncoding);
         } else if (type == IsoType.LLBCDBIN || type == IsoType.LLLBCDBIN || type == IsoType.LLLLBCDBIN) {
             writeLengthHeader(length, outs, type, binary, forceStringEncoding);
+        } else if (value instanceof Date date && type.getDatePattern() != null
+                && (!binary || type != IsoType.DATE6)) {
+            writeDate(date, outs, binary);
+            return;
+        } else if ((type == IsoType.NUMERIC || type == IsoType.AMOUNT) && writeNumber(outs, binary)) {
+            return;
         } else if (binary) {
             //numeric types in binary are coded like this
             byte[] buf = null;
@@ -485,9 +537,245 @@ public class IsoValue<T> {
                     outs.write(0);
                 }
             }
+        } else if (!writeHex(outs)) {
+            outs.write(encode(toString()));
+        }
+    }
+
+    /**
+     * Writes the digits of a date straight to the stream, without formatting it as a String first;
+     * in BCD if it's binary.
+     */
+    private void writeDate(final Date date, final OutputStream outs, final boolean binary) throws IOException {
+        final byte[] digits = new byte[type.getLength()];
+        type.format(date, tz, digits, 0);
+        if (binary) {
+            final byte[] bcd = new byte[digits.length / 2];
+            for (int i = 0; i < bcd.length; i++) {
+                bcd[i] = (byte) (((digits[i * 2] - 48) << 4) | (digits[i * 2 + 1] - 48));
+            }
+            outs.write(bcd);
+        } else if (hasAsciiDigits(encoding)) {
+            outs.write(digits);
+        } else if (table != null) {
+            table.fromAscii(digits, 0, digits.length);
+            outs.write(digits);
         } else {
-            outs.write(encoding == null ? toString().getBytes() : toString().getBytes(encoding));
+            final String s = new String(digits, StandardCharsets.ISO_8859_1);
+            outs.write(encode(s));
+        }
+    }
+
+    /**
+     * Returns the exact number of bytes that {@link #write(OutputStream, boolean, boolean)} writes
+     * for this value, including the length header if it's a variable length type.
+     *
+     * @param binary              Specifies whether the value would be written in binary or text format.
+     * @param forceStringEncoding Same as in {@link #write(OutputStream, boolean, boolean)}.
+     * @return the number of bytes
+     */
+    public int encodedSize(final boolean binary, final boolean forceStringEncoding) {
+        final Encoded pre = encoded;
+        if (pre != null && pre.binary() == binary && pre.forceString() == forceStringEncoding) {
+            return pre.bytes().length;
+        } else if ((type == IsoType.NUMERIC || type == IsoType.AMOUNT) && (binary || writesDigits())
+                && numericDigits() >= 0) {
+            final int count = type == IsoType.AMOUNT ? 12 : length;
+            return binary ? (count / 2) + (count % 2) : count;
+        } else if (value instanceof Date && type.getDatePattern() != null && (!binary || type != IsoType.DATE6)
+                && (binary || writesDigits())) {
+            return binary ? type.getLength() / 2 : type.getLength();
+        } else if (type == IsoType.ALPHA && value != null && isSingleByte(encoding)) {
+            return length;
+        }
+        final int size = variableSize(binary, forceStringEncoding);
+        if (size >= 0) {
+            return size;
+        }
+        //Custom encoders and multi-byte charsets are counted as they are written
+        final ByteBufferOutputStream counter = new ByteBufferOutputStream(null);
+        try {
+            write(counter, binary, forceStringEncoding);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot compute the size of " + type + " value", ex);
+        }
+        return counter.getCount();
+    }
+
+    /**
+     * Encodes a constant value once, so that every copy of it is written from the cached bytes
+     * as long as it's written the same way and with the same character encoding.
+     * Only values that can't change are encoded: strings and numbers without a custom encoder.
+     * This is used for the fields of message templates.
+     *
+     * @param binary              Specifies whether the value will be written in binary or text format.
+     * @param forceStringEncoding Same as in {@link #write(OutputStream, boolean, boolean)}.
+     */
+    void preEncode(final boolean binary, final boolean forceStringEncoding) {
+        if (encoder != null || !(value instanceof String || value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte || value instanceof BigInteger
+                || value instanceof BigDecimal)) {
+            return;
         }
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream(length + 4);
+        encoded = null;
+        try {
+            write(bout, binary, forceStringEncoding);
+        } catch (IOException | RuntimeException ex) {
+            //Leave it to be encoded when the message is written, which will report the problem
+            return;
+        }
+        encoded = new Encoded(bout.toByteArray(), binary, forceStringEncoding);
+    }
+
+    /** The bytes of a pre-encoded value and how they were written; immutable so that it can be shared. */
+    private record Encoded(byte[] bytes, boolean binary, boolean forceString) {
+    }
+
+    /**
+     * Writes the hex digits of a BINARY or LLBIN byte array straight to the stream, without
+     * encoding it as a String first. Returns false if the value can only be written through
+     * its String representation.
+     */
+    private boolean writeHex(final OutputStream outs) throws IOException {
+        if (!(value instanceof byte[] bytesValue) || encoder != null || !writesDigits()
+                || !(type == IsoType.LLBIN || type == IsoType.LLLBIN || type == IsoType.LLLLBIN
+                    || type == IsoType.BINARY && bytesValue.length == length)) {
+            return false;
+        }
+        final byte[] hex = new byte[bytesValue.length * 2];
+        HexCodec.hexEncode(bytesValue, 0, bytesValue.length, hex, 0);
+        if (table != null && !hasAsciiDigits(encoding)) {
+            table.fromAscii(hex, 0, hex.length);
+        }
+        outs.write(hex);
+        return true;
+    }
+
+    /**
+     * Returns the size of a LL*VAR, LL*BIN or BINARY value, computed from its length: the length
+     * header plus the characters, hex digits or raw bytes of the value. Returns -1 if the size
+     * can't be known without encoding the value.
+     */
+    private int variableSize(final boolean binary, final boolean forceStringEncoding) {
+        if (encoder != null || value == null) {
+            return -1;
+        }
+        if (type == IsoType.LLVAR || type == IsoType.LLLVAR || type == IsoType.LLLLVAR) {
+            if (!isSingleByte(encoding)) {
+                return -1;
+            }
+            final int header = headerSize(length, binary && !forceStringEncoding, forceStringEncoding);
+            return header < 0 ? -1 : header + value.toString().length();
+        } else if (!(value instanceof byte[] bytesValue)) {
+            return -1;
+        } else if (!binary && !writesDigits() && !isSingleByte(encoding)) {
+            //The hex digits take more than a byte each
+            return -1;
+        } else if (type == IsoType.BINARY) {
+            return binary ? Math.max(length, bytesValue.length) : length * 2;
+        } else if (type == IsoType.LLBIN || type == IsoType.LLLBIN || type == IsoType.LLLLBIN) {
+            final int header = headerSize(binary ? length : length * 2, binary, forceStringEncoding);
+            return header < 0 ? -1 : header + (binary ? bytesValue.length : bytesValue.length * 2);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of bytes that {@link #writeLengthHeader} writes for a LL*VAR or LL*BIN
+     * length, or -1 if it depends on the encoding.
+     */
+    private int headerSize(final int l, final boolean bcd, final boolean forceStringEncoding) {
+        final int digits = type == IsoType.LLLLBIN || type == IsoType.LLLLVAR ? 4
+                : type == IsoType.LLLBIN || type == IsoType.LLLVAR ? 3 : 2;
+        if (bcd) {
+            return digits == 2 ? 1 : 2;
+        } else if (forceStringEncoding && (!NumericCodec.fits(l, digits) || table == null && !isSingleByte(encoding))) {
+            return -1;
+        }
+        return digits;
+    }
+
+    /**
+     * Writes the digits of a NUMERIC or AMOUNT straight to the stream, without formatting it as
+     * a String first; in BCD if it's binary. Returns false if the value can only be written
+     * through its String representation.
+     */
+    private boolean writeNumber(final OutputStream outs, final boolean binary) throws IOException {
+        if (!binary && !writesDigits()) {
+            return false;
+        }
+        final long digits = numericDigits();
+        if (digits < 0) {
+            return false;
+        }
+        final int count = type == IsoType.AMOUNT ? 12 : length;
+        final byte[] buf = new byte[binary ? (count / 2) + (count % 2) : count];
+        if (binary) {
+            NumericCodec.writeBcd(digits, count, buf, 0);
+        } else {
+            NumericCodec.writeAscii(digits, count, buf, 0);
+            if (table != null && !hasAsciiDigits(encoding)) {
+                table.fromAscii(buf, 0, count);
+            }
+        }
+        outs.write(buf);
+        return true;
+    }
+
+    /**
+     * Returns the number whose digits represent this NUMERIC or AMOUNT (the cents, for an AMOUNT),
+     * or -1 if the value can only be written through its String representation.
+     */
+    private long numericDigits() {
+        final long digits;
+        final int count;
+        if (type == IsoType.AMOUNT) {
+            if (value instanceof BigDecimal bigDecimal) {
+                digits = bigDecimal.movePointRight(2).longValue();
+            } else if ((value instanceof Long || value instanceof Integer || value instanceof Short
+                    || value instanceof Byte) && NumericCodec.fits(((Number) value).longValue(), 10)) {
+                digits = ((Number) value).longValue() * 100;
+            } else {
+                return -1;
+            }
+            count = 12;
+        } else if (value instanceof Number number && !(value instanceof BigInteger)) {
+            digits = number.longValue();
+            count = length;
+        } else {
+            return -1;
+        }
+        return NumericCodec.fits(digits, count) ? digits : -1;
+    }
+
+    /** Encodes text with the character encoding of the value, or the default one if it has none. */
+    private byte[] encode(final String s) throws UnsupportedEncodingException {
+        if (table != null) {
+            return table.encode(s);
+        } else if (charset != null) {
+            return s.getBytes(charset);
+        }
+        return encoding == null ? s.getBytes() : s.getBytes(encoding);
+    }
+
+    /** Returns true if the digits of numbers, dates and binary values can be written without formatting them as a String. */
+    private boolean writesDigits() {
+        return table != null || hasAsciiDigits(encoding);
+    }
+
+    /** Returns true if the encoding writes every character as a single byte. */
+    private static boolean isSingleByte(final String encoding) {
+        return SINGLE_BYTE.computeIfAbsent(encoding == null ? Charset.defaultCharset().name() : encoding,
+                enc -> Charset.isSupported(enc) && Charset.forName(enc).canEncode()
+                        && Charset.forName(enc).newEncoder().maxBytesPerChar() == 1.0f);
+    }
+
+    /** Returns true if the encoding writes digits, hex digits included, the same as ASCII. */
+    static boolean hasAsciiDigits(final String encoding) {
+        return ASCII_DIGITS.computeIfAbsent(encoding == null ? Charset.defaultCharset().name() : encoding,
+                enc -> Charset.isSupported(enc)
+                        && Arrays.equals(DIGITS.getBytes(StandardCharsets.US_ASCII), DIGITS.getBytes(Charset.forName(enc))));
     }
 
     /**
@@ -0,0 +1,221 @@
+/*
+j8583 A Java implementation of the ISO8583 protocol
+Copyright (C) 2007 Enrique Zamudio Lopez
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+*/
+package com.solab.iso8583;
+
+import com.solab.iso8583.parse.FieldParseInfo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.text.ParseException;
+
+import static com.solab.iso8583.IsoType.VARIABLE_LENGTH_VAR_TYPES;
+
+/**
+ * Keeps the position of the fields of a lazily parsed message inside the original buffer,
+ * so that each one is only decoded the first time it's requested from the message. Fields
+ * that are never requested can be written back out exactly as they were received.
+ */
+final class LazyFieldIndex {
+
+    private final byte[] buf;
+    private final boolean binaryFields;
+    private final boolean forceStringEncoding;
+    private final String encoding;
+    /** Field numbers, in ascending order. */
+    private final int[] fields;
+    /** Start and end offsets of each field's data (including length headers) in the buffer. */
+    private final int[] starts;
+    private final int[] ends;
+    /** The parser for each field; null once the field has been decoded or removed. */
+    private final FieldParseInfo[] parsers;
+    private final CustomField<?>[] decoders;
+    private int count;
+    private int remaining;
+
+    /**
+     * Creates an index over the specified buffer, with room for the specified number of fields.
+     *
+     * @param buf                 the buffer the message was parsed from
+     * @param capacity            the maximum number of fields that will be added
+     * @param binaryFields        whether the fields were encoded in binary
+     * @param forceStringEncoding whether variable-length fields were decoded as strings
+     * @param encoding            the character encoding of the message
+     */
+    LazyFieldIndex(byte[] buf, int capacity, boolean binaryFields, boolean forceStringEncoding,
+                   String encoding) {
+        this.buf = buf;
+        this.binaryFields = binaryFields;
+        this.forceStringEncoding = forceStringEncoding;
+        this.encoding = encoding;
+        fields = new int[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        parsers = new FieldParseInfo[capacity];
+        decoders = new CustomField<?>[capacity];
+    }
+
+    /**
+     * Adds a field to the index. Fields must be added in ascending order.
+     *
+     * @param field   the field number
+     * @param parser  the parser to decode the field with
+     * @param decoder the custom field decoder, if any
+     * @param start   the offset in the buffer where the field starts
+     * @param end     the offset in the buffer right after the field
+     */
+    void add(int field, FieldParseInfo parser, CustomField<?> decoder, int start, int end) {
+        fields[count] = field;
+        parsers[count] = parser;
+        decoders[count] = decoder;
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+        remaining++;
+    }
+
+    /**
+     * Returns true if the specified field is in the index and hasn't been decoded yet.
+     *
+     * @param field the field number
+     * @return the boolean
+     */
+    boolean contains(int field) {
+        return indexOf(field) >= 0;
+    }
+
+    /**
+     * Sets the bits of the fields that haven't been decoded yet in the specified bitmap.
+     *
+     * @param bitmap the bitmap words
+     */
+    void markFields(long[] bitmap) {
+        for (int k = 0; k < count; k++) {
+            if (parsers[k] != null) {
+                bitmap[Bitmap.word(fields[k])] |= Bitmap.bit(fields[k]);
+            }
+        }
+    }
+
+    /**
+     * Returns true if there are no fields left to decode.
+     *
+     * @return the boolean
+     */
+    boolean isEmpty() {
+        return remaining == 0;
+    }
+
+    /**
+     * Removes the field from the index, without decoding it.
+     *
+     * @param field the field number
+     */
+    void remove(int field) {
+        int k = indexOf(field);
+        if (k >= 0) {
+            parsers[k] = null;
+            decoders[k] = null;
+            remaining--;
+        }
+    }
+
+    /**
+     * Decodes the specified field and removes it from the index.
+     *
+     * @param field the field number
+     * @return the decoded value, or null if the field is not in the index
+     * @throws ParseException               if the field data is invalid
+     * @throws UnsupportedEncodingException if the encoding is not supported
+     */
+    IsoValue<?> decode(int field) throws ParseException, UnsupportedEncodingException {
+        int k = indexOf(field);
+        if (k < 0) {
+            return null;
+        }
+        FieldParseInfo fpi = parsers[k];
+        IsoValue<?> val = binaryFields && !(forceStringEncoding && VARIABLE_LENGTH_VAR_TYPES.contains(fpi.getType())) ?
+                fpi.parseBinary(field, buf, starts[k], decoders[k])
+                : fpi.parse(field, buf, starts[k], decoders[k]);
+        parsers[k] = null;
+        decoders[k] = null;
+        remaining--;
+        return val;
+    }
+
+    /**
+     * Writes the raw data of the specified field to the stream, if it's still in the index
+     * and the message is going to be encoded the same way it was parsed.
+     *
+     * @param field               the field number
+     * @param outs                the stream to write to
+     * @param binary              whether the message is written with binary fields
+     * @param forceString         whether the message is written with string encoding
+     * @param enc                 the character encoding of the message
+     * @return true if the field was written, false if it has to be decoded and encoded again
+     * @throws IOException if the stream can't be written to
+     */
+    boolean writeRaw(int field, OutputStream outs, boolean binary, boolean forceString, String enc)
+            throws IOException {
+        if (binary != binaryFields || forceString != forceStringEncoding || !encoding.equals(enc)) {
+            return false;
+        }
+        int k = indexOf(field);
+        if (k < 0) {
+            return false;
+        }
+        outs.write(buf, starts[k], ends[k] - starts[k]);
+        return true;
+    }
+
+    /**
+     * Returns the number of bytes that {@link #writeRaw} would write for the specified field,
+     * or -1 if it would not write it.
+     *
+     * @param field               the field number
+     * @param binary              whether the message is written with binary fields
+     * @param forceString         whether the message is written with string encoding
+     * @param enc                 the character encoding of the message
+     * @return the size of the raw data, or -1
+     */
+    int rawSize(int field, boolean binary, boolean forceString, String enc) {
+        if (binary != binaryFields || forceString != forceStringEncoding || !encoding.equals(enc)) {
+            return -1;
+        }
+        int k = indexOf(field);
+        return k < 0 ? -1 : ends[k] - starts[k];
+    }
+
+    private int indexOf(int field) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (fields[mid] < field) {
+                lo = mid + 1;
+            } else if (fields[mid] > field) {
+                hi = mid - 1;
+            } else {
+                return parsers[mid] == null ? -1 : mid;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -21,30 +21,23 @@ package com.solab.iso8583;
 import com.solab.iso8583.parse.ConfigParser;
 import com.solab.iso8583.parse.DateTimeParseInfo;
 import com.solab.iso8583.parse.FieldParseInfo;
-import com.solab.iso8583.util.HexCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
+import java.text.ParsePosition;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 
-import static com.solab.iso8583.IsoMessage.MAX_AMOUNT_OF_FIELDS;
-import static com.solab.iso8583.IsoMessage.PRIMARY_BITMAP_SIZE;
-import static com.solab.iso8583.IsoMessage.START_OF_PRIMARY_BITMAP_FIELDS;
-import static com.solab.iso8583.IsoMessage.START_OF_SECONDARY_BITMAP_FIELDS;
-import static com.solab.iso8583.IsoMessage.START_OF_TERTIARY_BITMAP_FIELDS;
-import static com.solab.iso8583.IsoType.VARIABLE_LENGTH_VAR_TYPES;
-
 /**
  * This class is used to create messages, either from scratch or from an existing String or byte
  * buffer. It can be configured to put default values on newly created messages, and also to know
@@ -117,12 +110,22 @@ public class MessageFactory<T extends IsoMessage> {
     private boolean forceStringEncoding;
     /* Flag specifying that variable length fields have the length header encoded in hexadecimal format */
     private boolean variableLengthFieldsInHex;
+    /** Flag specifying that fields are only decoded when they're requested from parsed messages. */
+    private boolean lazyParsing;
+    /** Flag specifying that new and parsed messages store only the fields that are present. */
+    private boolean compactStorage;
     private String encoding = System.getProperty("file.encoding");
     /** Field numbers propagated to every message created/parsed by this factory, to be
      * masked by their no-arg {@link IsoMessage#debugString()}. Empty by default. */
     private Set<Integer> sensitiveFields = Set.of();
     /** UNSAFE, NOT PCI DSS COMPLIANT: see {@link #setUnsafeNonPciDssCompliantRawMessageLoggingEnabled(boolean)}. */
     private boolean unsafeNonPciDssCompliantRawMessageLoggingEnabled;
+    /** Messages returned with {@link #release(IsoMessage)}, to be used again; null when pooling is disabled. */
+    private volatile MessagePool<T> pool;
+    /** The configuration used to create and parse messages; null when it has to be taken again. */
+    private volatile MessageFactorySnapshot<T> snapshot;
+    /** Guards taking and discarding the snapshot. */
+    private final Object snapshotLock = new Object();
 
     /**
      * Is force string encoding boolean.
@@ -146,6 +149,7 @@ public class MessageFactory<T extends IsoMessage> {
                 parser.setForceStringDecoding(flag);
             }
         }
+        changed();
     }
 
     /**
@@ -170,6 +174,53 @@ public class MessageFactory<T extends IsoMessage> {
                 parser.setForceHexadecimalLength(flag);
             }
         }
+        changed();
+    }
+
+    /**
+     * Returns true if the factory is set to parse messages lazily.
+     *
+     * @return the boolean
+     */
+    public boolean isUseLazyParsing() {
+        return lazyParsing;
+    }
+
+    /**
+     * Tells the factory to parse messages lazily: parseMessage only reads the bitmap and the
+     * length of each field, and the values are decoded from the original buffer the first time
+     * they're requested from the message. Fields that are never requested are written back out
+     * as they were received, as long as the message is encoded the same way it was parsed.
+     * The buffer passed to parseMessage must not be modified while the parsed message is in use.
+     * Default is false.
+     *
+     * @param flag the flag
+     */
+    public void setUseLazyParsing(boolean flag) {
+        lazyParsing = flag;
+        changed();
+    }
+
+    /**
+     * Returns true if the messages created and parsed by the factory use compact storage.
+     *
+     * @return the boolean
+     */
+    public boolean isCompactStorage() {
+        return compactStorage;
+    }
+
+    /**
+     * Sets whether the messages created and parsed by the factory store only the fields that
+     * are present, so that their size depends on the number of fields they actually have
+     * instead of the maximum number of fields (see {@link IsoMessage#setCompactStorage(boolean)}).
+     * Default is false.
+     *
+     * @param flag the flag
+     */
+    public void setCompactStorage(boolean flag) {
+        compactStorage = flag;
+        changed();
     }
 
     /**
@@ -190,6 +241,7 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public void setUseBinaryBitmap(boolean flag) {
         binBitmap = flag;
+        changed();
     }
 
     /**
@@ -222,14 +274,12 @@ public class MessageFactory<T extends IsoMessage> {
         if (!typeTemplates.isEmpty()) {
             for (T tmpl : typeTemplates.values()) {
                 tmpl.setCharacterEncoding(encoding);
-                for (int i = 2; i <= MAX_AMOUNT_OF_FIELDS; i++) {
-                    IsoValue<?> v = tmpl.getField(i);
-                    if (v != null) {
-                        v.setCharacterEncoding(encoding);
-                    }
+                for (int i = tmpl.nextSetField(2); i > 0; i = tmpl.nextSetField(i + 1)) {
+                    tmpl.getField(i).setCharacterEncoding(encoding);
                 }
             }
         }
+        changed();
     }
 
     /**
@@ -257,6 +307,7 @@ public class MessageFactory<T extends IsoMessage> {
             throw new IllegalArgumentException("Cannot set null sensitiveFields.");
         }
         sensitiveFields = Set.copyOf(value);
+        changed();
     }
 
     /**
@@ -284,6 +335,7 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public void setUnsafeNonPciDssCompliantRawMessageLoggingEnabled(boolean flag) {
         unsafeNonPciDssCompliantRawMessageLoggingEnabled = flag;
+        changed();
     }
 
     /**
@@ -303,6 +355,7 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public void setForceSecondaryBitmap(boolean flag) {
         forceb2 = flag;
+        changed();
     }
 
     /**
@@ -312,6 +365,7 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public void setUseTertiaryBitmap(boolean flag) {
         useTertiaryBitmap = flag;
+        changed();
     }
 
     /**
@@ -344,6 +398,7 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public void setIgnoreLastMissingField(boolean flag) {
         ignoreLast = flag;
+        changed();
     }
 
     /**
@@ -354,6 +409,7 @@ public class MessageFactory<T extends IsoMessage> {
     @SuppressWarnings("rawtypes")
     public void setCustomFields(Map<Integer, CustomField> value) {
         customFields = value;
+        changed();
     }
 
     /**
@@ -364,6 +420,7 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public void setCustomField(int index, CustomField<?> value) {
         customFields.put(index, value);
+        changed();
     }
 
     /**
@@ -426,6 +483,7 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public void setUseBinaryMessages(boolean flag) {
         binaryHeader = binaryFields = flag;
+        changed();
     }
 
     /**
@@ -444,6 +502,7 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public void setBinaryHeader(boolean flag) {
         binaryHeader = flag;
+        changed();
     }
 
     /**
@@ -462,6 +521,7 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public void setBinaryFields(boolean flag) {
         binaryFields = flag;
+        changed();
     }
 
 
@@ -484,61 +544,76 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public void setEtx(int value) {
         etx = value;
+        changed();
+    }
+
+    /**
+     * Sets the maximum number of released messages that are kept to be used again by
+     * {@link #acquire(int)}. Pooling is disabled by default, which is the same as zero. The messages currently in
+     * the pool are discarded.
+     *
+     * @param size the size of the pool
+     */
+    public void setMessagePoolSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The pool size cannot be negative");
+        }
+        pool = size == 0 ? null : new MessagePool<>(size);
+    }
+
+    /**
+     * Returns the maximum number of released messages that are kept to be used again.
+     *
+     * @return the size of the pool
+     */
+    public int getMessagePoolSize() {
+        final MessagePool<T> p = pool;
+        return p == null ? 0 : p.size();
     }
 
     /**
      * Creates a new message of the specified type, with optional trace and date values as well
      * as any other values specified in a message template. If the factory is set to use binary
-     * messages, then the returned message will be written using binary coding.
+     * messages, then the returned message will be written using binary coding. The values from the
+     * template are not copied but shared; a value is only copied when it's requested with
+     * {@link IsoMessage#getField(int)}, so that it can be modified in that message alone.
      *
      * @param type The message type, for example 0x200, 0x400, etc.
      * @return the t
      */
     public T newMessage(int type) {
-        T m;
-        if (binIsoHeaders.get(type) != null) {
-            m = createIsoMessageWithBinaryHeader(binIsoHeaders.get(type));
-        } else {
-            m = createIsoMessage(isoHeaders.get(type));
-        }
-        m.setType(type);
-        m.setEtx(etx);
-        m.setBinaryHeader(isBinaryHeader());
-        m.setBinaryFields(isBinaryFields());
-        m.setForceSecondaryBitmap(forceb2);
-        m.setBinaryBitmap(binBitmap);
-        m.setCharacterEncoding(encoding);
-        m.setForceStringEncoding(forceStringEncoding);
-        m.setEncodeVariableLengthFieldsInHex(variableLengthFieldsInHex);
-        m.setSensitiveFields(sensitiveFields);
-
-        //Copy the values from the template
-        IsoMessage templ = typeTemplates.get(type);
-        if (templ != null) {
-            for (int i = 2; i <= MAX_AMOUNT_OF_FIELDS; i++) {
-                if (templ.hasField(i)) {
-                    //We could detect here if there's a custom object with a CustomField,
-                    //but we can't copy the value so there's no point.
-                    m.setField(i, new IsoValue<>(templ.getField(i)));
-                }
-            }
-        }
-        if (traceGen != null) {
-            m.setValue(11, traceGen.nextTrace(), IsoType.NUMERIC, 6);
-        }
-        if (setDate) {
-            if (m.hasField(7)) {
-                //We may have a field with a timezone but no value
-                m.updateValue(7, new Date());
-            } else {
-                IsoValue<Date> now = new IsoValue<>(IsoType.DATE10, new Date());
-                if (DateTimeParseInfo.getDefaultTimeZone() != null) {
-                    now.setTimeZone(DateTimeParseInfo.getDefaultTimeZone());
-                }
-                m.setField(7, now);
-            }
+        return snapshot().newMessage(type);
+    }
+
+    /**
+     * Returns a message of the specified type exactly like {@link #newMessage(int)} would, but
+     * using a message that was previously released to the pool, if there is one. Once the message
+     * is no longer needed it should be given back with {@link #release(IsoMessage)}.
+     *
+     * @param type The message type, for example 0x200, 0x400, etc.
+     * @return the message
+     */
+    public T acquire(int type) {
+        final MessagePool<T> p = pool;
+        final T m = p == null ? null : p.poll();
+        return m == null ? newMessage(type) : snapshot().reuseMessage(m, type);
+    }
+
+    /**
+     * Resets a message and puts it in the pool, so that it can be returned again by
+     * {@link #acquire(int)}. The message must not be used after it's released, not even
+     * its fields if they were parsed lazily. Messages from any source can be released, not
+     * only the ones that were acquired; if the pool is full, the message is just discarded.
+     * Releasing a message that is already in the pool, or when pooling is disabled, has no effect.
+     *
+     * @param m the message
+     */
+    public void release(T m) {
+        final MessagePool<T> p = pool;
+        if (m != null && p != null && !m.pooled) {
+            m.reset();
+            p.offer(m);
         }
-        return m;
     }
 
     /**
@@ -556,48 +631,16 @@ public class MessageFactory<T extends IsoMessage> {
      * Creates a message to respond to a request. Increments the message type by 16,
      * sets all fields from the template if there is one,
      * and either copies all values from the request or only the ones already in the template,
-     * depending on the value of copyAllFields flag.
+     * depending on the value of copyAllFields flag. The values from the template and the request
+     * are not copied but shared; either message copies a value when it's requested with
+     * {@link IsoMessage#getField(int)}, so that it can be modified without affecting the other one.
      *
      * @param request       An ISO8583 message with a request type (ending in 00).
      * @param copyAllFields If true, copies all fields from the request to the response,                      overwriting any values already set from the template; otherwise                      it only overwrites values for existing fields from the template.                      If the template for a response does not exist, then all fields from                      the request are copied even in this flag is false.
      * @return the t
      */
     public T createResponse(T request, boolean copyAllFields) {
-        T resp = createIsoMessage(isoHeaders.get(request.getType() + 16));
-        resp.setCharacterEncoding(request.getCharacterEncoding());
-        resp.setBinaryHeader(request.isBinaryHeader());
-        resp.setBinaryFields(request.isBinaryFields());
-        resp.setBinaryBitmap(request.isBinaryBitmap());
-        resp.setType(request.getType() + 16);
-        resp.setEtx(etx);
-        resp.setForceSecondaryBitmap(forceb2);
-        resp.setEncodeVariableLengthFieldsInHex(request.isEncodeVariableLengthFieldsInHex());
-        resp.setSensitiveFields(request.getSensitiveFields());
-        //Copy the values from the template or the request (request has preference)
-        IsoMessage templ = typeTemplates.get(resp.getType());
-        if (templ == null) {
-            for (int i = 2; i <= MAX_AMOUNT_OF_FIELDS; i++) {
-                if (request.hasField(i)) {
-                    resp.setField(i, new IsoValue<>(request.getField(i)));
-                }
-            }
-        } else if (copyAllFields) {
-            for (int i = 2; i <= MAX_AMOUNT_OF_FIELDS; i++) {
-                if (request.hasField(i)) {
-                    resp.setField(i, new IsoValue<>(request.getField(i)));
-                } else if (templ.hasField(i)) {
-                    resp.setField(i, new IsoValue<>(templ.getField(i)));
-                }
-            }
-        } else {
-            for (int i = 2; i <= MAX_AMOUNT_OF_FIELDS; i++) {
-                if (templ.hasField(i)) {
-                    IsoMessage srcmsg = request.hasField(i) ? request : templ;
-                    resp.setField(i, new IsoValue<>(srcmsg.getField(i)));
-                }
-            }
-        }
-        return resp;
+        return snapshot().createResponse(request, copyAllFields);
     }
 
     /**
@@ -616,11 +659,13 @@ public class MessageFactory<T extends IsoMessage> {
             FieldParseInfo fpi = guide.get(field);
             if (fpi instanceof DateTimeParseInfo) {
                 ((DateTimeParseInfo) fpi).setTimeZone(tz);
+                changed();
                 return;
             }
         }
         log.warn("Field {} for message type {} is not for dates, cannot set timezone",
                 field, messageType);
+        changed();
     }
 
     /**
@@ -651,281 +696,95 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public T parseMessage(byte[] buf, int isoHeaderLength, boolean binaryIsoHeader)
             throws ParseException, UnsupportedEncodingException {
-        final int minlength = isoHeaderLength + (binaryHeader ? 2 : 4) + (binBitmap || binaryHeader ? 8 : 16);
-        if (buf.length < minlength) {
-            throw new ParseException("Insufficient buffer length, needs to be at least " + minlength, 0);
-        }
-        final T m;
-        // parse the header
-        if (binaryIsoHeader && isoHeaderLength > 0) {
-            byte[] _bih = new byte[isoHeaderLength];
-            System.arraycopy(buf, 0, _bih, 0, isoHeaderLength);
-            m = createIsoMessageWithBinaryHeader(_bih);
-        } else {
-            m = createIsoMessage(isoHeaderLength > 0 ?
-                    new String(buf, 0, isoHeaderLength, encoding) : null);
-        }
-        m.setCharacterEncoding(encoding);
-        final int type;
-        if (binaryHeader) {
-            type = ((buf[isoHeaderLength] & 0xff) << 8) | (buf[isoHeaderLength + 1] & 0xff);
-        } else if (forceStringEncoding) {
-            type = Integer.parseInt(new String(buf, isoHeaderLength, 4, encoding), 16);
-        } else {
-            type = ((buf[isoHeaderLength] - 48) << 12)
-                    | ((buf[isoHeaderLength + 1] - 48) << 8)
-                    | ((buf[isoHeaderLength + 2] - 48) << 4)
-                    | (buf[isoHeaderLength + 3] - 48);
-        }
-        m.setType(type);
-        //Parse the bitmap (primary first)
-        final BitSet bs = new BitSet(PRIMARY_BITMAP_SIZE);
-        int pos = 0;
-        if (binaryHeader || binBitmap) {
-            pos = isoHeaderLength + (binaryHeader ? 2 : 4);
-            final byte[] primaryBitmap = new byte[8];
-            System.arraycopy(buf, pos, primaryBitmap, 0, primaryBitmap.length);
-            updateBitSetFromBinaryBitmap(bs, primaryBitmap, START_OF_PRIMARY_BITMAP_FIELDS - 1); // field x can be found at bitmap position x-1
-            pos += primaryBitmap.length;
-            //Check for secondary bitmap and parse if necessary
-            if (bs.get(0)) {
-                if (buf.length < minlength + 8) {
-                    throw new ParseException("Insufficient length for secondary bitmap", minlength);
-                }
-                final byte[] secondaryBitmap = new byte[8];
-                System.arraycopy(buf, pos, secondaryBitmap, 0, primaryBitmap.length);
-                updateBitSetFromBinaryBitmap(bs, secondaryBitmap, 64);
-                pos += secondaryBitmap.length;
-            }
-        } else {
-            //ASCII parsing
-            try {
-                final byte[] primaryBitmap = new byte[16];
-                int primaryBitmapStart = isoHeaderLength + 4;
-                if (forceStringEncoding) {
-                    byte[] _bb = new String(buf, primaryBitmapStart, 16, encoding).getBytes();
-                    System.arraycopy(_bb, 0, primaryBitmap, 0, primaryBitmap.length);
-                } else {
-                    System.arraycopy(buf, primaryBitmapStart, primaryBitmap, 0, 16);
-                }
-                updateBitSetFromAsciiBitMap(bs, primaryBitmap, START_OF_PRIMARY_BITMAP_FIELDS - 1, primaryBitmapStart); // field x can be found at position x-1
-                //Check for secondary bitmap and parse it if necessary
-                if (bs.get(0)) {
-                    int secondaryBitmapStart = primaryBitmapStart + primaryBitmap.length;
-                    final byte[] secondaryBitmap = new byte[16];
-                    if (buf.length < minlength + secondaryBitmap.length) {
-                        throw new ParseException("Insufficient length for secondary bitmap", minlength);
-                    }
-                    if (forceStringEncoding) {
-                        byte[] _bb = new String(buf, secondaryBitmapStart, secondaryBitmap.length, encoding).getBytes();
-                        System.arraycopy(_bb, 0, secondaryBitmap, 0, secondaryBitmap.length);
-                    } else {
-                        System.arraycopy(buf, secondaryBitmapStart, secondaryBitmap, 0, 16);
-                    }
-                    updateBitSetFromAsciiBitMap(bs, secondaryBitmap, START_OF_SECONDARY_BITMAP_FIELDS - 1, secondaryBitmapStart); // field x can be found at position x-1
-                    pos = minlength + secondaryBitmap.length; // end of bitmap
-                } else {
-                    pos = minlength; // end of bitmap
-                }
-            } catch (NumberFormatException ex) {
-                ParseException _e = new ParseException("Invalid ISO8583 bitmap", pos);
-                _e.initCause(ex);
-                throw _e;
-            }
-        }
-        //Parse each field
-        Map<Integer, FieldParseInfo> parseGuide = parseMap.get(type);
-        List<Integer> index = parseOrder.get(type);
-        if (index == null) {
-            // Do not log or embed the raw message buffer here by default: it may contain
-            // sensitive cardholder data (PAN, track data, PIN blocks) and this is an error
-            // path that is more likely than most to end up in aggregated/centralized logs.
-            // See setUnsafeNonPciDssCompliantRawMessageLoggingEnabled(boolean) for an opt-in,
-            // hex-encoded exception for development/debugging purposes only.
-            if (unsafeNonPciDssCompliantRawMessageLoggingEnabled) {
-                log.error("ISO8583 MessageFactory has no parsing guide for message type {} (buffer length {}), raw message (hex): {}",
-                        String.format("%04x", type), buf.length, HexCodec.hexEncode(buf, 0, buf.length));
-            } else {
-                log.error("ISO8583 MessageFactory has no parsing guide for message type {} (buffer length {})",
-                        String.format("%04x", type), buf.length);
-            }
-            throw new ParseException(String.format(
-                    "ISO8583 MessageFactory has no parsing guide for message type %04x", type), 0);
-        }
-        //First we check if the message contains fields not specified in the parsing template
-        assertAllFieldsPresentHaveParsingGuides(type, bs, index);
-        //Now we parse each field
-        if (binaryFields) {
-            for (Integer i : index) {
-                FieldParseInfo fpi = parseGuide.get(i);
-                if (bs.get(i - 1)) {
-                    if (ignoreLast && pos >= buf.length && i.intValue() == index.get(index.size() - 1)) {
-                        log.warn("Field {} is not really in the message even though it's in the bitmap", i);
-                        bs.clear(i - 1);
-                    } else {
-                        CustomField<?> decoder = fpi.getDecoder();
-                        if (decoder == null) {
-                            decoder = getCustomField(i);
-                        }
-                        IsoValue<?> val = (VARIABLE_LENGTH_VAR_TYPES.contains(fpi.getType()) && forceStringEncoding) ?
-                                fpi.parse(i, buf, pos, decoder)
-                                : fpi.parseBinary(i, buf, pos, decoder);
-
-                        if (useTertiaryBitmap && i == IsoMessage.INDEX_OF_TERTIARY_BITMAP) {
-                            final byte[] tertiaryBitmap = (byte[]) val.getValue();
-                            updateBitSetFromBinaryBitmap(bs, tertiaryBitmap, START_OF_TERTIARY_BITMAP_FIELDS - 1); // field x can be found at bitmap position x-1
-                            assertAllFieldsPresentHaveParsingGuides(type, bs, index); // check again for the new fields added to the bitmap
-                        }
-
-                        m.setField(i, val);
-                        if (val != null) {
-                            if (val.getType() == IsoType.NUMERIC || val.getType() == IsoType.DATE10
-                                    || val.getType() == IsoType.DATE4
-                                    || val.getType() == IsoType.DATE12
-                                    || val.getType() == IsoType.DATE14
-                                    || val.getType() == IsoType.DATE6
-                                    || val.getType() == IsoType.DATE_EXP
-                                    || val.getType() == IsoType.AMOUNT
-                                    || val.getType() == IsoType.TIME
-                                    || val.getType() == IsoType.LLBINLENGTHNUM
-                                    || val.getType() == IsoType.LLLLBINLENGTHNUM) {
-                                pos += (val.getLength() / 2) + (val.getLength() % 2);
-                            } else if (val.getType() == IsoType.LLBCDBIN || val.getType() == IsoType.LLLBCDBIN || val.getType() == IsoType.LLLLBCDBIN || val.getType() == IsoType.LLLLBINLENGTHBIN) {
-                                pos += val.getLength() / 2 + ((val.getLength() % 2 == 0) ? 0 : 1);
-                            } else {
-                                pos += val.getLength();
-                            }
-
-                            if (VARIABLE_LENGTH_VAR_TYPES.contains(fpi.getType()) && forceStringEncoding) {
-                                if (val.getType() == IsoType.LLVAR) {
-                                    pos += 2;
-                                } else if (val.getType() == IsoType.LLLVAR) {
-                                    pos += 3;
-                                } else if (val.getType() == IsoType.LLLLVAR) {
-                                    pos += 4;
-                                }
-                            } else if (val.getType() == IsoType.LLVAR || val.getType() == IsoType.LLBIN || val.getType() == IsoType.LLBCDBIN || val.getType() == IsoType.LLBINLENGTHNUM || val.getType() == IsoType.LLBINLENGTHALPHANUM || val.getType() == IsoType.LLBINLENGTHBIN || val.getType() == IsoType.LLBCDLENGTHALPHANUM) {
-                                pos++;
-                            } else if (val.getType() == IsoType.LLLVAR
-                                    || val.getType() == IsoType.LLLBIN
-                                    || val.getType() == IsoType.LLLBCDBIN
-                                    || val.getType() == IsoType.LLLLVAR
-                                    || val.getType() == IsoType.LLLLBIN
-                                    || val.getType() == IsoType.LLLLBCDBIN
-                                    || val.getType() == IsoType.LLLLBINLENGTHNUM
-                                    || val.getType() == IsoType.LLLLBINLENGTHBIN
-                                    || val.getType() == IsoType.LLLLBINLENGTHALPHANUM) {
-                                pos += 2;
-                            }
-                        }
-                    }
-                }
-            }
-        } else {
-            for (Integer i : index) {
-                FieldParseInfo fpi = parseGuide.get(i);
-                if (bs.get(i - 1)) {
-                    if (ignoreLast && pos >= buf.length && i.intValue() == index.get(index.size() - 1)) {
-                        log.warn("Field {} is not really in the message even though it's in the bitmap", i);
-                        bs.clear(i - 1);
-                    } else {
-                        CustomField<?> decoder = fpi.getDecoder();
-                        if (decoder == null) {
-                            decoder = getCustomField(i);
-                        }
-                        IsoValue<?> val = fpi.parse(i, buf, pos, decoder);
-                        if (useTertiaryBitmap && i == IsoMessage.INDEX_OF_TERTIARY_BITMAP) {
-                            final byte[] tertiaryBitmap = ((byte[]) val.getValue());
-                            updateBitSetFromBinaryBitmap(bs, tertiaryBitmap, START_OF_TERTIARY_BITMAP_FIELDS - 1); // field x can be found at position x-1
-                            assertAllFieldsPresentHaveParsingGuides(type, bs, index); // check again for the new fields added to the bitmap
-                        }
-                        m.setField(i, val);
-                        //To get the correct next position, we need to get the number of bytes, not chars
-                        pos += val.toString().getBytes(fpi.getCharacterEncoding()).length;
-                        if (val.getType() == IsoType.LLVAR || val.getType() == IsoType.LLBIN || val.getType() == IsoType.LLBCDBIN || val.getType() == IsoType.LLBCDLENGTHALPHANUM || val.getType() == IsoType.LLBINLENGTHNUM || val.getType() == IsoType.LLBINLENGTHALPHANUM || val.getType() == IsoType.LLBINLENGTHBIN) {
-                            pos += 2;
-                        } else if (val.getType() == IsoType.LLLVAR || val.getType() == IsoType.LLLBIN || val.getType() == IsoType.LLLBCDBIN) {
-                            pos += 3;
-                        } else if (val.getType() == IsoType.LLLLVAR || val.getType() == IsoType.LLLLBIN || val.getType() == IsoType.LLLLBCDBIN || val.getType() == IsoType.LLLLBINLENGTHBIN || val.getType() == IsoType.LLLLBINLENGTHALPHANUM) {
-                            pos += 4;
-                        }
-                    }
-                }
-            }
-        }
-        m.setBinaryHeader(binaryHeader);
-        m.setBinaryFields(binaryFields);
-        m.setBinaryBitmap(binBitmap);
-        m.setForceStringEncoding(forceStringEncoding);
-        m.setSensitiveFields(sensitiveFields);
-        return m;
-    }
-
-    private void assertAllFieldsPresentHaveParsingGuides(int messageType, BitSet bs, List<Integer> fieldsWithParseGuide) throws ParseException {
-        boolean abandon = false;
-        for (int i = 1; i < bs.length(); i++) {
-            if (bs.get(i) && !fieldsWithParseGuide.contains(i + 1)) {
-                log.warn("ISO8583 MessageFactory cannot parse field {}: unspecified in parsing guide for type {}",
-                        i + 1, Integer.toString(messageType, 16));
-                abandon = true;
-            }
-        }
-        if (abandon) {
-            throw new ParseException("ISO8583 MessageFactory cannot parse fields", 0);
-        }
+        return parseMessage(buf, 0, buf.length, isoHeaderLength, binaryIsoHeader);
     }
 
     /**
-     * fills the bitset representing the iso fields that are present based on the byteArray.
+     * Creates a new message instance from the contents of the buffer between its position and
+     * its limit, which must be a valid ISO8583 message; the position of the buffer is not
+     * changed. Heap buffers are parsed in place; the contents of direct buffers are copied
+     * to an array first. When the factory is set to parse lazily, the message keeps a
+     * reference to the array backing a heap buffer, so it must not be modified while the
+     * message is in use.
      *
-     * @param bitSet     - the bitset that is to be updated based on the bitmap
-     * @param bitmap     - the binary map representing the iso fields
-     * @param fieldIndex - which field is the bitmap representing (primary: 1(-64),secondary: 65(-128), tertiary: 129(-192))
-     **/
-    private void updateBitSetFromBinaryBitmap(BitSet bitSet, byte[] bitmap, int fieldIndex) {
-        for (byte value : bitmap) {
-            int bit = 0x80;
-            for (int b = 0; b < 8; b++) { // manual conversion of byte at position pos - pos+4 to int
-                bitSet.set(fieldIndex++, (value & bit) != 0);
-                bit >>= 1;
-            }
-        }
+     * @param buf             The buffer containing the message. Must not include the length header.
+     * @param isoHeaderLength The expected length of the ISO header, after which the message type and the rest of the message must come.
+     * @param binaryIsoHeader the binary iso header
+     * @return the t
+     * @throws ParseException               the parse exception
+     * @throws UnsupportedEncodingException the unsupported encoding exception
+     */
+    public T parseMessage(ByteBuffer buf, int isoHeaderLength, boolean binaryIsoHeader)
+            throws ParseException, UnsupportedEncodingException {
+        return snapshot().parseMessage(buf, isoHeaderLength, binaryIsoHeader);
     }
 
     /**
-     * fills the bitset representing the iso fields that are present based on the byteArray.
-     *
-     * @param bitSet                - the bitset that is to be updated based on the bitmap
-     * @param bitmap                - the binary map representing the iso fields
-     * @param fieldIndex            - the position on the combined bitmap (primary: 0(-63) representing fields 1-64,secondary: 64(-128), tertiary: 128(-191))
-     * @param originalMessageOffset - used to give the exact location in the message in case of error.
-     **/
-    private void updateBitSetFromAsciiBitMap(BitSet bitSet, byte[] bitmap, int fieldIndex, int originalMessageOffset) throws ParseException {
-        int i = 0;
-        try {
-            for (; i < bitmap.length; i++) {
-                if (bitmap[i] >= '0' && bitmap[i] <= '9') {
-                    bitSet.set(fieldIndex++, ((bitmap[i] - 48) & 8) > 0);
-                    bitSet.set(fieldIndex++, ((bitmap[i] - 48) & 4) > 0);
-                    bitSet.set(fieldIndex++, ((bitmap[i] - 48) & 2) > 0);
-                    bitSet.set(fieldIndex++, ((bitmap[i] - 48) & 1) > 0);
-                } else if (bitmap[i] >= 'A' && bitmap[i] <= 'F') {
-                    bitSet.set(fieldIndex++, ((bitmap[i] - 55) & 8) > 0);
-                    bitSet.set(fieldIndex++, ((bitmap[i] - 55) & 4) > 0);
-                    bitSet.set(fieldIndex++, ((bitmap[i] - 55) & 2) > 0);
-                    bitSet.set(fieldIndex++, ((bitmap[i] - 55) & 1) > 0);
-                } else if (bitmap[i] >= 'a' && bitmap[i] <= 'f') {
-                    bitSet.set(fieldIndex++, ((bitmap[i] - 87) & 8) > 0);
-                    bitSet.set(fieldIndex++, ((bitmap[i] - 87) & 4) > 0);
-                    bitSet.set(fieldIndex++, ((bitmap[i] - 87) & 2) > 0);
-                    bitSet.set(fieldIndex++, ((bitmap[i] - 87) & 1) > 0);
-                }
-            }
-        } catch (NumberFormatException ex) {
-            ParseException _e = new ParseException("Invalid ISO8583 bitmap", originalMessageOffset + i);
-            _e.initCause(ex);
-            throw _e;
-        }
+     * Creates a new message instance from the specified part of the buffer, which must contain
+     * a valid ISO8583 message. The fields are parsed in place, and the message can't use any
+     * data outside of that part of the buffer. If the factory is set to use binary messages
+     * then it will try to parse a binary message.
+     *
+     * @param buf             The byte buffer containing the message.
+     * @param offset          The position in the buffer where the message starts (including the ISO header, but not the length header).
+     * @param length          The length of the message, starting at the offset.
+     * @param isoHeaderLength The expected length of the ISO header, after which the message type and the rest of the message must come.
+     * @param binaryIsoHeader the binary iso header
+     * @return the t
+     * @throws ParseException               the parse exception
+     * @throws UnsupportedEncodingException the unsupported encoding exception
+     */
+    public T parseMessage(byte[] buf, int offset, int length, int isoHeaderLength, boolean binaryIsoHeader)
+            throws ParseException, UnsupportedEncodingException {
+        return parseMessage(buf, offset, length, isoHeaderLength, binaryIsoHeader, null, null);
+    }
+
+    /**
+     * Creates a new message instance from the specified part of the buffer, decoding only the
+     * requested fields; this is useful when only a few fields are needed to decide what to do
+     * with a message, for example to route it. The other fields present in the message are
+     * skipped using only their length headers, and parsing stops after the last requested field,
+     * so fields after it don't even need to be in the parsing guide. All fields before it do,
+     * since there's no other way to know their length.
+     *
+     * @param buf             The byte buffer containing the message.
+     * @param offset          The position in the buffer where the message starts (including the ISO header, but not the length header).
+     * @param length          The length of the message, starting at the offset.
+     * @param isoHeaderLength The expected length of the ISO header, after which the message type and the rest of the message must come.
+     * @param binaryIsoHeader the binary iso header
+     * @param fields          The numbers of the fields to decode; fields that are requested but not present in the message are ignored. If null, all fields are decoded.
+     * @param end             If not null, its index is set to the position in the buffer where parsing stopped: after the last requested field, or the end of the last field if all fields were decoded.
+     * @return the t
+     * @throws ParseException               the parse exception
+     * @throws UnsupportedEncodingException the unsupported encoding exception
+     */
+    public T parseMessage(byte[] buf, int offset, int length, int isoHeaderLength, boolean binaryIsoHeader,
+                          BitSet fields, ParsePosition end)
+            throws ParseException, UnsupportedEncodingException {
+        return snapshot().parseMessage(buf, offset, length, isoHeaderLength, binaryIsoHeader, fields, end);
+    }
+
+    /**
+     * Parses a message from the specified part of the buffer like
+     * {@link #parseMessage(byte[], int, int, int, boolean)}, but into an existing message instead of a
+     * new one, for example one obtained from {@link #acquire(int)}. The target is reset first, so
+     * nothing of its previous contents remains; if parsing fails it's left in an unspecified state,
+     * but it can still be released.
+     *
+     * @param target          The message to store the parsed data in.
+     * @param buf             The byte buffer containing the message.
+     * @param offset          The position in the buffer where the message starts (including the ISO header, but not the length header).
+     * @param length          The length of the message, starting at the offset.
+     * @param isoHeaderLength The expected length of the ISO header, after which the message type and the rest of the message must come.
+     * @param binaryIsoHeader the binary iso header
+     * @return the target message
+     * @throws ParseException               the parse exception
+     * @throws UnsupportedEncodingException the unsupported encoding exception
+     */
+    public T parseMessageInto(T target, byte[] buf, int offset, int length, int isoHeaderLength,
+                              boolean binaryIsoHeader)
+            throws ParseException, UnsupportedEncodingException {
+        return snapshot().parseMessageInto(target, buf, offset, length, isoHeaderLength, binaryIsoHeader);
     }
 
     /**
@@ -971,6 +830,7 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public void setAssignDate(boolean flag) {
         setDate = flag;
+        changed();
     }
 
     /**
@@ -990,6 +850,7 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public void setTraceNumberGenerator(TraceNumberGenerator value) {
         traceGen = value;
+        changed();
     }
 
     /**
@@ -1000,6 +861,7 @@ public class MessageFactory<T extends IsoMessage> {
     public void setIsoHeaders(Map<Integer, String> value) {
         isoHeaders.clear();
         isoHeaders.putAll(value);
+        changed();
     }
 
     /**
@@ -1015,6 +877,7 @@ public class MessageFactory<T extends IsoMessage> {
             isoHeaders.put(type, value);
             binIsoHeaders.remove(type);
         }
+        changed();
     }
 
     /**
@@ -1040,6 +903,7 @@ public class MessageFactory<T extends IsoMessage> {
             binIsoHeaders.put(type, value);
             isoHeaders.remove(type);
         }
+        changed();
     }
 
     /**
@@ -1062,6 +926,7 @@ public class MessageFactory<T extends IsoMessage> {
         if (templ != null) {
             typeTemplates.put(templ.getType(), templ);
         }
+        changed();
     }
 
     /**
@@ -1071,11 +936,13 @@ public class MessageFactory<T extends IsoMessage> {
      */
     public void removeMessageTemplate(int type) {
         typeTemplates.remove(type);
+        changed();
     }
 
     /**
      * Returns the template for the specified message type. This allows templates to be modified
-     * programmatically.
+     * programmatically; call {@link #compile()} after modifying it, so that the messages created
+     * afterwards see the changes.
      *
      * @param type the type
      * @return the message template
@@ -1086,7 +953,11 @@ public class MessageFactory<T extends IsoMessage> {
 
     /**
      * Invoke this method in case you want to freeze the configuration, making message and parsing
-     * templates, as well as iso headers and custom fields, immutable.
+     * templates, as well as iso headers and custom fields, immutable, and take the {@link #snapshot()}
+     * that creates and parses messages, where the headers, templates and parsing guides of each
+     * message type are looked up in arrays indexed by type instead of maps. The constant fields of the
+     * message templates are encoded once with the current character encoding and binary/string
+     * settings, so that the messages created from them don't need to encode those fields again.
      */
     public void freeze() {
         typeTemplates = Collections.unmodifiableMap(typeTemplates);
@@ -1095,6 +966,58 @@ public class MessageFactory<T extends IsoMessage> {
         isoHeaders = Collections.unmodifiableMap(isoHeaders);
         binIsoHeaders = Collections.unmodifiableMap(binIsoHeaders);
         customFields = Collections.unmodifiableMap(customFields);
+        compile();
+        for (T tmpl : typeTemplates.values()) {
+            tmpl.forEachField((i, v) -> v.preEncode(binaryFields, forceStringEncoding));
+        }
+    }
+
+    /**
+     * Compiles the parsing guides for the current settings, so that messages can be parsed
+     * without looking up the parser for each field, and takes a new {@link #snapshot()}. This is
+     * done automatically the first time a message is created or parsed, and again after changing
+     * any setting through the factory; call this method only if a parsing guide or one of its
+     * FieldParseInfo instances was modified directly after that.
+     * {@link #freeze()} also compiles all the parsing guides.
+     */
+    public void compile() {
+        synchronized (snapshotLock) {
+            snapshot = new MessageFactorySnapshot<>(this, parseMap, typeTemplates, isoHeaders, binIsoHeaders);
+        }
+    }
+
+    /**
+     * Returns an immutable snapshot of the current configuration, that creates and parses
+     * messages like this factory does now, and can be shared by any number of threads without
+     * synchronization. The factory itself uses the same snapshot until its configuration is
+     * changed, so to reconfigure it while other threads are using it, configure it again on one
+     * thread and then give the other threads the new snapshot, instead of the factory.
+     *
+     * @return the snapshot
+     */
+    public MessageFactorySnapshot<T> snapshot() {
+        MessageFactorySnapshot<T> s = snapshot;
+        if (s == null) {
+            synchronized (snapshotLock) {
+                s = snapshot;
+                if (s == null) {
+                    s = new MessageFactorySnapshot<>(this, parseMap, typeTemplates, isoHeaders, binIsoHeaders);
+                    snapshot = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Discards the snapshot of the configuration, so that a new one is taken with the changes.
+     * Called after every change; it waits for a snapshot that is being taken meanwhile, which
+     * might have missed the change, and discards it too.
+     */
+    private void changed() {
+        synchronized (snapshotLock) {
+            snapshot = null;
+        }
     }
 
     /**
@@ -1112,6 +1035,7 @@ public class MessageFactory<T extends IsoMessage> {
         log.trace(String.format("ISO8583 MessageFactory adding parse map for type %04x with fields %s",
                 type, index));
         parseOrder.put(type, index);
+        changed();
     }
 
 }
@@ -0,0 +1,563 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583;
+
+import com.solab.iso8583.parse.DateTimeParseInfo;
+import com.solab.iso8583.parse.FieldParseInfo;
+import com.solab.iso8583.util.Charsets;
+import com.solab.iso8583.util.HexCodec;
+import com.solab.iso8583.util.SingleByteCodec;
+import org.slf4j.Logger;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static com.solab.iso8583.IsoMessage.MAX_AMOUNT_OF_FIELDS;
+
+/**
+ * An immutable copy of the configuration of a {@link MessageFactory}, that creates and parses
+ * messages exactly like the factory did when the snapshot was taken. All its state is set in the
+ * constructor and kept in final fields, with the headers, templates and compiled parsing guides in
+ * tables indexed by message type, so a snapshot can be shared by any number of threads without
+ * synchronization, while the factory is being configured again to take a new one.
+ * <p>
+ * The snapshot keeps its own copies of the template values, and the messages it creates share
+ * them (see {@link IsoMessage#getField(int)}), just like responses share the values of their
+ * requests. The snapshot parses with its own copies of the FieldParseInfo instances, so changing the encoding
+ * or any other setting of the factory afterwards doesn't affect it. The CustomField instances
+ * are shared with the factory, so they must not be modified while the snapshot is in use.
+ * <p>
+ * To reconfigure, set up the factory (or a new one) and take another snapshot; the factory
+ * plays the part of the builder.
+ *
+ * @param <T> the type of messages
+ * @see MessageFactory#snapshot()
+ */
+public final class MessageFactorySnapshot<T extends IsoMessage> {
+
+    private final MessageFactory<T> factory;
+    private final Logger log;
+    private final TypeTable<ParsePlan> parsePlans;
+    private final TypeTable<Template> templates;
+    private final TypeTable<String> isoHeaders;
+    private final TypeTable<byte[]> binIsoHeaders;
+    private final TraceNumberGenerator traceGen;
+    private final boolean setDate;
+    private final boolean binaryHeader;
+    private final boolean binaryFields;
+    private final int etx;
+    private final boolean ignoreLast;
+    private final boolean useTertiaryBitmap;
+    private final boolean forceb2;
+    private final boolean binBitmap;
+    private final boolean forceStringEncoding;
+    private final boolean variableLengthFieldsInHex;
+    private final boolean lazyParsing;
+    private final boolean compactStorage;
+    private final String encoding;
+    /** The charset for the encoding; null if it's not supported. */
+    private final Charset charset;
+    /** Translation tables for single-byte encodings such as EBCDIC; null for other encodings. */
+    private final SingleByteCodec table;
+    private final Set<Integer> sensitiveFields;
+    private final boolean unsafeNonPciDssCompliantRawMessageLoggingEnabled;
+
+    /**
+     * Takes a snapshot of the configuration of a factory, compiling all its parsing guides.
+     *
+     * @param factory       the factory, used to create the message instances
+     * @param parseMap      the parsing guides of the factory
+     * @param typeTemplates the message templates of the factory
+     * @param isoHeaders    the ISO headers of the factory
+     * @param binIsoHeaders the binary ISO headers of the factory
+     */
+    MessageFactorySnapshot(MessageFactory<T> factory, Map<Integer, Map<Integer, FieldParseInfo>> parseMap,
+                           Map<Integer, T> typeTemplates, Map<Integer, String> isoHeaders,
+                           Map<Integer, byte[]> binIsoHeaders) {
+        this.factory = factory;
+        log = factory.log;
+        traceGen = factory.getTraceNumberGenerator();
+        setDate = factory.getAssignDate();
+        binaryHeader = factory.isBinaryHeader();
+        binaryFields = factory.isBinaryFields();
+        etx = factory.getEtx();
+        ignoreLast = factory.getIgnoreLastMissingField();
+        useTertiaryBitmap = factory.tertiaryBitmapIsUsed();
+        forceb2 = factory.isForceSecondaryBitmap();
+        binBitmap = factory.isUseBinaryBitmap();
+        forceStringEncoding = factory.isForceStringEncoding();
+        variableLengthFieldsInHex = factory.isVariableLengthFieldsInHex();
+        lazyParsing = factory.isUseLazyParsing();
+        compactStorage = factory.isCompactStorage();
+        encoding = factory.getCharacterEncoding();
+        charset = Charsets.lookup(encoding);
+        table = SingleByteCodec.forCharset(charset);
+        sensitiveFields = factory.getSensitiveFields();
+        unsafeNonPciDssCompliantRawMessageLoggingEnabled = factory.isUnsafeNonPciDssCompliantRawMessageLoggingEnabled();
+        final Map<Integer, ParsePlan> plans = new HashMap<>();
+        for (Map.Entry<Integer, Map<Integer, FieldParseInfo>> e : parseMap.entrySet()) {
+            plans.put(e.getKey(), new ParsePlan(e.getValue(), factory, binaryFields, forceStringEncoding));
+        }
+        parsePlans = new TypeTable<>(plans);
+        final Map<Integer, Template> tmpls = new HashMap<>();
+        for (Map.Entry<Integer, T> e : typeTemplates.entrySet()) {
+            tmpls.put(e.getKey(), new Template(e.getValue()));
+        }
+        templates = new TypeTable<>(tmpls);
+        this.isoHeaders = new TypeTable<>(isoHeaders);
+        this.binIsoHeaders = new TypeTable<>(binIsoHeaders);
+    }
+
+    /** The values of a message template, copied from the factory to be shared by the messages created from it. */
+    private static final class Template {
+        /** The field numbers, in ascending order. */
+        final int[] fields;
+        /** The value of each field, in the same order. */
+        final IsoValue<?>[] values;
+        /** The fields of the template, as a bitmap. */
+        final long[] bitmap = new long[Bitmap.WORDS];
+
+        Template(IsoMessage templ) {
+            int count = 0;
+            for (int i = templ.nextSetField(2); i > 0; i = templ.nextSetField(i + 1)) {
+                count++;
+            }
+            fields = new int[count];
+            values = new IsoValue<?>[count];
+            int k = 0;
+            for (int i = templ.nextSetField(2); i > 0; i = templ.nextSetField(i + 1)) {
+                fields[k] = i;
+                values[k++] = copy(templ.getField(i));
+                bitmap[Bitmap.word(i)] |= Bitmap.bit(i);
+            }
+        }
+
+        boolean hasField(int i) {
+            return (bitmap[Bitmap.word(i)] & Bitmap.bit(i)) != 0;
+        }
+    }
+
+    private static <V> IsoValue<V> copy(IsoValue<V> v) {
+        return new IsoValue<>(v);
+    }
+
+    /**
+     * Creates a new message of the specified type, like {@link MessageFactory#newMessage(int)}.
+     *
+     * @param type The message type, for example 0x200, 0x400, etc.
+     * @return the message
+     */
+    public T newMessage(int type) {
+        final byte[] bih = binIsoHeaders.get(type);
+        final T m = bih == null ? factory.createIsoMessage(isoHeaders.get(type))
+                : factory.createIsoMessageWithBinaryHeader(bih);
+        return initMessage(m, type);
+    }
+
+    /**
+     * Sets up a message that was reset, so that it's just like a new message of the specified type.
+     *
+     * @param m    the message
+     * @param type the message type
+     * @return the message
+     */
+    T reuseMessage(T m, int type) {
+        final byte[] bih = binIsoHeaders.get(type);
+        if (bih == null) {
+            m.setIsoHeader(isoHeaders.get(type));
+        } else {
+            m.setBinaryIsoHeader(bih);
+        }
+        return initMessage(m, type);
+    }
+
+    /** Sets up a new message with the settings of the factory and the fields from the template. */
+    private T initMessage(T m, int type) {
+        m.setCompactStorage(compactStorage);
+        m.setType(type);
+        m.setEtx(etx);
+        m.setBinaryHeader(binaryHeader);
+        m.setBinaryFields(binaryFields);
+        m.setForceSecondaryBitmap(forceb2);
+        m.setBinaryBitmap(binBitmap);
+        m.setCharacterEncoding(encoding);
+        m.setForceStringEncoding(forceStringEncoding);
+        m.setEncodeVariableLengthFieldsInHex(variableLengthFieldsInHex);
+        m.setSensitiveFields(sensitiveFields);
+
+        //Copy the values from the template
+        final Template templ = templates.get(type);
+        if (templ != null) {
+            for (int k = 0; k < templ.fields.length; k++) {
+                //We could detect here if there's a custom object with a CustomField,
+                //but we can't copy the value so there's no point.
+                m.setSharedField(templ.fields[k], templ.values[k]);
+            }
+        }
+        if (traceGen != null) {
+            m.setValue(11, traceGen.nextTrace(), IsoType.NUMERIC, 6);
+        }
+        if (setDate) {
+            if (m.hasField(7)) {
+                //We may have a field with a timezone but no value
+                m.updateValue(7, new Date());
+            } else {
+                IsoValue<Date> now = new IsoValue<>(IsoType.DATE10, new Date());
+                if (DateTimeParseInfo.getDefaultTimeZone() != null) {
+                    now.setTimeZone(DateTimeParseInfo.getDefaultTimeZone());
+                }
+                m.setField(7, now);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Creates a message to respond to a request, like {@link MessageFactory#createResponse(IsoMessage, boolean)}.
+     *
+     * @param request       An ISO8583 message with a request type (ending in 00).
+     * @param copyAllFields If true, copies all fields from the request to the response, overwriting any values already set from the template; otherwise it only overwrites values for existing fields from the template.
+     * @return the response
+     */
+    public T createResponse(T request, boolean copyAllFields) {
+        T resp = factory.createIsoMessage(isoHeaders.get(request.getType() + 16));
+        resp.setCompactStorage(compactStorage);
+        resp.setCharacterEncoding(request.getCharacterEncoding());
+        resp.setBinaryHeader(request.isBinaryHeader());
+        resp.setBinaryFields(request.isBinaryFields());
+        resp.setBinaryBitmap(request.isBinaryBitmap());
+        resp.setType(request.getType() + 16);
+        resp.setEtx(etx);
+        resp.setForceSecondaryBitmap(forceb2);
+        resp.setEncodeVariableLengthFieldsInHex(request.isEncodeVariableLengthFieldsInHex());
+        resp.setSensitiveFields(request.getSensitiveFields());
+        //Copy the values from the template or the request (request has preference)
+        final Template templ = templates.get(resp.getType());
+        if (templ == null) {
+            for (int i = request.nextSetField(2); i > 0; i = request.nextSetField(i + 1)) {
+                resp.setSharedField(i, request.shareField(i));
+            }
+        } else if (copyAllFields) {
+            for (int k = 0; k < templ.fields.length; k++) {
+                if (!request.hasField(templ.fields[k])) {
+                    resp.setSharedField(templ.fields[k], templ.values[k]);
+                }
+            }
+            for (int i = request.nextSetField(2); i > 0; i = request.nextSetField(i + 1)) {
+                resp.setSharedField(i, request.shareField(i));
+            }
+        } else {
+            for (int k = 0; k < templ.fields.length; k++) {
+                final int i = templ.fields[k];
+                resp.setSharedField(i, request.hasField(i) ? request.shareField(i) : templ.values[k]);
+            }
+        }
+        return resp;
+    }
+
+    /**
+     * Creates a new message instance from the contents of the buffer between its position and
+     * its limit, like {@link MessageFactory#parseMessage(ByteBuffer, int, boolean)}.
+     *
+     * @param buf             The buffer containing the message. Must not include the length header.
+     * @param isoHeaderLength The expected length of the ISO header, after which the message type and the rest of the message must come.
+     * @param binaryIsoHeader the binary iso header
+     * @return the message
+     * @throws ParseException               the parse exception
+     * @throws UnsupportedEncodingException the unsupported encoding exception
+     */
+    public T parseMessage(ByteBuffer buf, int isoHeaderLength, boolean binaryIsoHeader)
+            throws ParseException, UnsupportedEncodingException {
+        if (buf.hasArray()) {
+            return parseMessage(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining(),
+                    isoHeaderLength, binaryIsoHeader);
+        }
+        final byte[] data = new byte[buf.remaining()];
+        buf.duplicate().get(data);
+        return parseMessage(data, 0, data.length, isoHeaderLength, binaryIsoHeader);
+    }
+
+    /**
+     * Creates a new message instance from the specified part of the buffer, like
+     * {@link MessageFactory#parseMessage(byte[], int, int, int, boolean)}.
+     *
+     * @param buf             The byte buffer containing the message.
+     * @param offset          The position in the buffer where the message starts (including the ISO header, but not the length header).
+     * @param length          The length of the message, starting at the offset.
+     * @param isoHeaderLength The expected length of the ISO header, after which the message type and the rest of the message must come.
+     * @param binaryIsoHeader the binary iso header
+     * @return the message
+     * @throws ParseException               the parse exception
+     * @throws UnsupportedEncodingException the unsupported encoding exception
+     */
+    public T parseMessage(byte[] buf, int offset, int length, int isoHeaderLength, boolean binaryIsoHeader)
+            throws ParseException, UnsupportedEncodingException {
+        return parse(null, buf, offset, length, isoHeaderLength, binaryIsoHeader, null, null);
+    }
+
+    /**
+     * Creates a new message instance from the specified part of the buffer, decoding only the
+     * requested fields, like {@link MessageFactory#parseMessage(byte[], int, int, int, boolean, BitSet, ParsePosition)}.
+     *
+     * @param buf             The byte buffer containing the message.
+     * @param offset          The position in the buffer where the message starts (including the ISO header, but not the length header).
+     * @param length          The length of the message, starting at the offset.
+     * @param isoHeaderLength The expected length of the ISO header, after which the message type and the rest of the message must come.
+     * @param binaryIsoHeader the binary iso header
+     * @param fields          The numbers of the fields to decode. If null, all fields are decoded.
+     * @param end             If not null, its index is set to the position in the buffer where parsing stopped.
+     * @return the message
+     * @throws ParseException               the parse exception
+     * @throws UnsupportedEncodingException the unsupported encoding exception
+     */
+    public T parseMessage(byte[] buf, int offset, int length, int isoHeaderLength, boolean binaryIsoHeader,
+                          BitSet fields, ParsePosition end)
+            throws ParseException, UnsupportedEncodingException {
+        return parse(null, buf, offset, length, isoHeaderLength, binaryIsoHeader, fields, end);
+    }
+
+    /**
+     * Parses a message from the specified part of the buffer into an existing message, like
+     * {@link MessageFactory#parseMessageInto(IsoMessage, byte[], int, int, int, boolean)}.
+     *
+     * @param target          The message to store the parsed data in.
+     * @param buf             The byte buffer containing the message.
+     * @param offset          The position in the buffer where the message starts (including the ISO header, but not the length header).
+     * @param length          The length of the message, starting at the offset.
+     * @param isoHeaderLength The expected length of the ISO header, after which the message type and the rest of the message must come.
+     * @param binaryIsoHeader the binary iso header
+     * @return the target message
+     * @throws ParseException               the parse exception
+     * @throws UnsupportedEncodingException the unsupported encoding exception
+     */
+    public T parseMessageInto(T target, byte[] buf, int offset, int length, int isoHeaderLength,
+                              boolean binaryIsoHeader)
+            throws ParseException, UnsupportedEncodingException {
+        return parse(Objects.requireNonNull(target, "target"), buf, offset, length, isoHeaderLength,
+                binaryIsoHeader, null, null);
+    }
+
+    private T parse(T target, byte[] buf, int offset, int length, int isoHeaderLength, boolean binaryIsoHeader,
+                    BitSet fields, ParsePosition end)
+            throws ParseException, UnsupportedEncodingException {
+        Objects.checkFromIndexSize(offset, length, buf.length);
+        final int minlength = isoHeaderLength + (binaryHeader ? 2 : 4) + (binBitmap || binaryHeader ? 8 : 16);
+        if (length < minlength) {
+            throw new ParseException("Insufficient buffer length, needs to be at least " + minlength, 0);
+        }
+        final int start = offset + isoHeaderLength;
+        final int limit = offset + length;
+        final T m;
+        // parse the header
+        if (binaryIsoHeader && isoHeaderLength > 0) {
+            byte[] _bih = new byte[isoHeaderLength];
+            System.arraycopy(buf, offset, _bih, 0, isoHeaderLength);
+            if (target == null) {
+                m = factory.createIsoMessageWithBinaryHeader(_bih);
+            } else {
+                m = target;
+                m.reset();
+                m.setBinaryIsoHeader(_bih);
+            }
+        } else {
+            final String header = isoHeaderLength > 0 ? decode(buf, offset, isoHeaderLength) : null;
+            if (target == null) {
+                m = factory.createIsoMessage(header);
+            } else {
+                m = target;
+                m.reset();
+                m.setIsoHeader(header);
+            }
+        }
+        m.setCompactStorage(compactStorage);
+        m.setCharacterEncoding(encoding);
+        final int type;
+        if (binaryHeader) {
+            type = ((buf[start] & 0xff) << 8) | (buf[start + 1] & 0xff);
+        } else if (forceStringEncoding) {
+            final int digits = table == null ? -1 : table.parseDigits(buf, start, 4, 16);
+            type = digits >= 0 ? digits : Integer.parseInt(decode(buf, start, 4), 16);
+        } else {
+            type = ((buf[start] - 48) << 12)
+                    | ((buf[start + 1] - 48) << 8)
+                    | ((buf[start + 2] - 48) << 4)
+                    | (buf[start + 3] - 48);
+        }
+        m.setType(type);
+        //Parse the bitmap (primary first)
+        final long[] bitmap = new long[Bitmap.WORDS];
+        int pos;
+        if (binaryHeader || binBitmap) {
+            pos = start + (binaryHeader ? 2 : 4);
+            bitmap[0] = Bitmap.readBinary(buf, pos);
+            pos += 8;
+            //Check for secondary bitmap and parse if necessary
+            if ((bitmap[0] & Bitmap.FIRST_BIT) != 0) {
+                if (length < minlength + 8) {
+                    throw new ParseException("Insufficient length for secondary bitmap", minlength);
+                }
+                bitmap[1] = Bitmap.readBinary(buf, pos);
+                pos += 8;
+            }
+        } else {
+            //ASCII parsing
+            final int primaryBitmapStart = start + 4;
+            bitmap[0] = readAsciiBitmap(buf, primaryBitmapStart);
+            //Check for secondary bitmap and parse it if necessary
+            if ((bitmap[0] & Bitmap.FIRST_BIT) != 0) {
+                if (length < minlength + 16) {
+                    throw new ParseException("Insufficient length for secondary bitmap", minlength);
+                }
+                bitmap[1] = readAsciiBitmap(buf, primaryBitmapStart + 16);
+                pos = offset + minlength + 16; // end of bitmap
+            } else {
+                pos = offset + minlength; // end of bitmap
+            }
+        }
+        //Parse each field
+        final ParsePlan plan = parsePlans.get(type);
+        if (plan == null) {
+            // Do not log or embed the raw message buffer here by default: it may contain
+            // sensitive cardholder data (PAN, track data, PIN blocks) and this is an error
+            // path that is more likely than most to end up in aggregated/centralized logs.
+            // See setUnsafeNonPciDssCompliantRawMessageLoggingEnabled(boolean) for an opt-in,
+            // hex-encoded exception for development/debugging purposes only.
+            if (unsafeNonPciDssCompliantRawMessageLoggingEnabled) {
+                log.error("ISO8583 MessageFactory has no parsing guide for message type {} (buffer length {}), raw message (hex): {}",
+                        String.format("%04x", type), length, HexCodec.hexEncode(buf, offset, length));
+            } else {
+                log.error("ISO8583 MessageFactory has no parsing guide for message type {} (buffer length {})",
+                        String.format("%04x", type), length);
+            }
+            throw new ParseException(String.format(
+                    "ISO8583 MessageFactory has no parsing guide for message type %04x", type), 0);
+        }
+        //Fields after the last requested one are not even read
+        final int lastField = fields == null ? MAX_AMOUNT_OF_FIELDS : fields.length() - 1;
+        //First we check if the message contains fields not specified in the parsing template
+        assertAllFieldsPresentHaveParsingGuides(type, bitmap, plan, lastField);
+        final LazyFieldIndex lazy = lazyParsing ?
+                new LazyFieldIndex(buf, plan.fields.length, binaryFields, forceStringEncoding, encoding) : null;
+        //Now we parse each field; the parsers move the cursor to where the next one starts
+        final ParsePosition cursor = new ParsePosition(pos);
+        for (final int i : plan.fields) {
+            if (i > lastField) {
+                break;
+            }
+            if ((bitmap[Bitmap.word(i)] & Bitmap.bit(i)) == 0) {
+                continue;
+            }
+            if (ignoreLast && pos >= limit && i == plan.lastField) {
+                log.warn("Field {} is not really in the message even though it's in the bitmap", i);
+                continue;
+            }
+            final FieldParseInfo fpi = plan.parsers[i];
+            final CustomField<?> decoder = plan.decoders[i];
+            final boolean textField = plan.textFields[i];
+            final boolean tertiaryBitmap = useTertiaryBitmap && i == IsoMessage.INDEX_OF_TERTIARY_BITMAP;
+            final boolean requested = fields == null || fields.get(i);
+            if (!requested && !tertiaryBitmap) {
+                pos += textField ? fpi.measure(i, buf, pos, limit) : fpi.measureBinary(i, buf, pos, limit);
+                continue;
+            }
+            if (lazy != null && !tertiaryBitmap) {
+                final int span = textField ? fpi.measure(i, buf, pos, limit) : fpi.measureBinary(i, buf, pos, limit);
+                lazy.add(i, fpi, decoder, pos, pos + span);
+                pos += span;
+                continue;
+            }
+            cursor.setIndex(pos);
+            final IsoValue<?> val = textField ?
+                    fpi.parse(i, buf, cursor, limit, decoder)
+                    : fpi.parseBinary(i, buf, cursor, limit, decoder);
+            if (tertiaryBitmap) {
+                bitmap[2] = Bitmap.readBinary((byte[]) val.getValue(), 0);
+                assertAllFieldsPresentHaveParsingGuides(type, bitmap, plan, lastField); // check again for the new fields added to the bitmap
+            }
+            if (requested) {
+                m.setField(i, val);
+            }
+            pos = cursor.getIndex();
+        }
+        m.setBinaryHeader(binaryHeader);
+        m.setBinaryFields(binaryFields);
+        m.setBinaryBitmap(binBitmap);
+        m.setForceStringEncoding(forceStringEncoding);
+        m.setSensitiveFields(sensitiveFields);
+        if (lazy != null && !lazy.isEmpty()) {
+            m.setLazyFields(lazy);
+        }
+        if (end != null) {
+            end.setIndex(pos);
+        }
+        return m;
+    }
+
+    /** Reads 64 bits of a bitmap encoded as hex digits. */
+    private long readAsciiBitmap(byte[] buf, int pos) throws ParseException, UnsupportedEncodingException {
+        if (forceStringEncoding && table != null) {
+            final byte[] hex = new byte[16];
+            table.toAscii(buf, pos, hex, 0, 16);
+            return Bitmap.readHex(hex, 0);
+        } else if (forceStringEncoding) {
+            return Bitmap.readHex(decode(buf, pos, 16).getBytes(), 0);
+        }
+        return Bitmap.readHex(buf, pos);
+    }
+
+    /** Decodes text with the character encoding of the factory. */
+    private String decode(byte[] buf, int pos, int len) throws UnsupportedEncodingException {
+        if (table != null) {
+            return table.decode(buf, pos, len);
+        }
+        return charset == null ? new String(buf, pos, len, encoding) : new String(buf, pos, len, charset);
+    }
+
+    private void assertAllFieldsPresentHaveParsingGuides(int messageType, long[] bitmap, ParsePlan plan,
+                                                         int lastField) throws ParseException {
+        boolean abandon = false;
+        for (int w = 0; w < Bitmap.WORDS; w++) {
+            //The first bit of the primary bitmap only indicates the secondary bitmap
+            long missing = bitmap[w] & ~plan.bitmap[w] & Bitmap.upTo(w, lastField);
+            if (w == 0) {
+                missing &= ~Bitmap.FIRST_BIT;
+            }
+            while (missing != 0) {
+                final int field = (w << 6) + Long.numberOfLeadingZeros(missing) + 1;
+                log.warn("ISO8583 MessageFactory cannot parse field {}: unspecified in parsing guide for type {}",
+                        field, Integer.toString(messageType, 16));
+                abandon = true;
+                missing &= ~Bitmap.bit(field);
+            }
+        }
+        if (abandon) {
+            throw new ParseException("ISO8583 MessageFactory cannot parse fields", 0);
+        }
+    }
+
+}
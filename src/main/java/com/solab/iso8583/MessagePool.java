@@ -0,0 +1,87 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded pool of messages that can be used again, shared by all threads without locking.
+ * Messages are kept in a fixed number of slots that are claimed and filled with atomic operations,
+ * so taking and returning messages doesn't allocate anything. When the pool is empty a new
+ * message has to be created, and when it's full the returned message is left to the garbage collector.
+ *
+ * @param <T> the type of messages
+ */
+final class MessagePool<T extends IsoMessage> {
+
+    private final AtomicReferenceArray<T> slots;
+
+    MessagePool(int size) {
+        slots = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Returns the size of the pool.
+     *
+     * @return the size
+     */
+    int size() {
+        return slots.length();
+    }
+
+    /**
+     * Takes a message out of the pool.
+     *
+     * @return a message, or null if the pool is empty
+     */
+    T poll() {
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                final T m = slots.getAndSet(i, null);
+                if (m != null) {
+                    m.pooled = false;
+                    return m;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Puts a message in the pool, unless it's already there; a message that was released twice
+     * would otherwise be handed out to two different callers.
+     *
+     * @param m the message
+     * @return false if the pool is full or the message was already in it
+     */
+    boolean offer(T m) {
+        if (m.pooled) {
+            return false;
+        }
+        m.pooled = true;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, m)) {
+                return true;
+            }
+        }
+        m.pooled = false;
+        return false;
+    }
+
+}
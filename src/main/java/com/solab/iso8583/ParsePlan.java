@@ -0,0 +1,90 @@
+/*
+j8583 A Java implementation of the ISO8583 protocol
+Copyright (C) 2007 Enrique Zamudio Lopez
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+*/
+package com.solab.iso8583;
+
+import com.solab.iso8583.parse.FieldParseInfo;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static com.solab.iso8583.IsoMessage.MAX_AMOUNT_OF_FIELDS;
+import static com.solab.iso8583.IsoType.VARIABLE_LENGTH_VAR_TYPES;
+
+/**
+ * A parsing guide compiled for one message type, so that the MessageFactory can parse
+ * messages of that type without looking up parsers or custom fields in maps. Everything
+ * is stored in arrays indexed by field number.
+ * <p>
+ * A plan is only valid for the settings of the factory at the time it was compiled
+ * (binary fields and string encoding); the factory compiles a new one when those change.
+ * The plan keeps its own copies of the parsers, so the settings that the factory passes down
+ * to them later (encoding, string decoding, hex lengths, time zones) don't affect it.
+ */
+final class ParsePlan {
+
+    /** The field numbers in the guide, in ascending order. */
+    final int[] fields;
+    /** The last field in the guide, or 0 if the guide is empty. */
+    final int lastField;
+    /** The parser for each field number, or null if the field is not in the guide. */
+    final FieldParseInfo[] parsers;
+    /** The decoder for each field number: the parser's own, or the factory's custom field. */
+    final CustomField<?>[] decoders;
+    /** Whether each field is parsed as text (always in text messages, some in binary messages). */
+    final boolean[] textFields;
+    /** The fields in the guide, as a bitmap, to check at once that a message can be parsed. */
+    final long[] bitmap = new long[Bitmap.WORDS];
+
+    /**
+     * Compiles the specified parsing guide.
+     *
+     * @param guide               the parsing guide, keyed by field number
+     * @param factory             the factory, to get custom fields from
+     * @param binaryFields        whether the fields are encoded in binary
+     * @param forceStringEncoding whether variable-length fields are decoded as strings
+     */
+    ParsePlan(Map<Integer, FieldParseInfo> guide, MessageFactory<?> factory,
+              boolean binaryFields, boolean forceStringEncoding) {
+        final int size = MAX_AMOUNT_OF_FIELDS + 1;
+        parsers = new FieldParseInfo[size];
+        decoders = new CustomField<?>[size];
+        textFields = new boolean[size];
+        int[] nums = new int[guide.size()];
+        int count = 0;
+        for (Map.Entry<Integer, FieldParseInfo> e : guide.entrySet()) {
+            final int i = e.getKey();
+            if (i < 1 || i > MAX_AMOUNT_OF_FIELDS) {
+                //Can't be in a bitmap, so it will never be parsed
+                continue;
+            }
+            final FieldParseInfo fpi = e.getValue();
+            nums[count++] = i;
+            bitmap[Bitmap.word(i)] |= Bitmap.bit(i);
+            //A copy, so that changing the settings of the factory doesn't affect the plan
+            parsers[i] = fpi.copy();
+            decoders[i] = fpi.getDecoder() == null ? factory.getCustomField(i) : fpi.getDecoder();
+            textFields[i] = !binaryFields
+                    || forceStringEncoding && VARIABLE_LENGTH_VAR_TYPES.contains(fpi.getType());
+        }
+        fields = Arrays.copyOf(nums, count);
+        Arrays.sort(fields);
+        lastField = count == 0 ? 0 : fields[count - 1];
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583;
+
+import com.solab.iso8583.parse.ConfigParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Holds the configuration of a MessageFactory, read from an XML file, and reloads it when the file
+ * changes without interrupting the threads that create and parse messages with it.
+ * <p>
+ * Every time the file is loaded, a new MessageFactory is created and configured from the file,
+ * then frozen, and its {@link MessageFactorySnapshot} replaces the current one in a single volatile
+ * write. Threads should call {@link #get()} for each message (or batch of messages) they handle:
+ * calls that are already using the previous snapshot finish with it, and the next ones get the new
+ * one. Before a new configuration is used, the sample messages given to {@link #addSample} are
+ * parsed with it; if any of them can't be parsed, or the file is not valid, the current
+ * configuration is kept.
+ * <p>
+ * Settings that are not in the file, such as custom fields or the character encoding, are set up
+ * by the supplier of new factories, which is called for every load.
+ *
+ * @param <T> the type of messages
+ */
+public class ReloadableMessageFactory<T extends IsoMessage> implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReloadableMessageFactory.class);
+
+    private final Path config;
+    private final Supplier<MessageFactory<T>> factories;
+    private final List<Sample> samples = new CopyOnWriteArrayList<>();
+    private volatile MessageFactorySnapshot<T> current;
+    private WatchService watcher;
+
+    /** A message that every new configuration must be able to parse. */
+    private record Sample(byte[] message, int isoHeaderLength, boolean binaryIsoHeader) {
+    }
+
+    /**
+     * Creates a holder with the configuration read from the specified file.
+     *
+     * @param config    the XML configuration file
+     * @param factories creates the factories to be configured from the file, with any other settings they need
+     * @throws IOException if the file can't be read or is not valid
+     */
+    public ReloadableMessageFactory(Path config, Supplier<MessageFactory<T>> factories) throws IOException {
+        this.config = config.toAbsolutePath();
+        this.factories = factories;
+        current = load();
+    }
+
+    /**
+     * Returns the current configuration.
+     *
+     * @return the snapshot of the configuration
+     */
+    public MessageFactorySnapshot<T> get() {
+        return current;
+    }
+
+    /**
+     * Adds a message that must be parsed successfully with every new configuration before it's used.
+     *
+     * @param message         the message, without a length header
+     * @param isoHeaderLength the length of the ISO header of the message
+     * @param binaryIsoHeader whether the ISO header is binary
+     */
+    public void addSample(byte[] message, int isoHeaderLength, boolean binaryIsoHeader) {
+        samples.add(new Sample(message.clone(), isoHeaderLength, binaryIsoHeader));
+    }
+
+    /**
+     * Reads the configuration file again, checks it with the sample messages and, if everything
+     * is correct, replaces the current configuration.
+     *
+     * @throws IOException if the file can't be read or is not valid, or a sample message can't be parsed
+     */
+    public synchronized void reload() throws IOException {
+        final MessageFactorySnapshot<T> snapshot = load();
+        for (int i = 0; i < samples.size(); i++) {
+            final Sample s = samples.get(i);
+            try {
+                final IsoMessage m = snapshot.parseMessage(s.message, 0, s.message.length,
+                        s.isoHeaderLength, s.binaryIsoHeader);
+                //Decode fields that were left for later by a lazy parse
+                m.forEachField((field, value) -> {});
+            } catch (Exception ex) {
+                throw new IOException("Sample message " + i + " cannot be parsed with the new configuration", ex);
+            }
+        }
+        current = snapshot;
+    }
+
+    /** Creates a new factory with the configuration from the file and returns its snapshot. */
+    private MessageFactorySnapshot<T> load() throws IOException {
+        final MessageFactory<T> mfact = factories.get();
+        ConfigParser.configureFromUrl(mfact, config.toUri().toURL(), true);
+        //Now re-set some properties that need to be propagated down to the recently assigned objects
+        mfact.setCharacterEncoding(mfact.getCharacterEncoding());
+        mfact.setForceStringEncoding(mfact.isForceStringEncoding());
+        mfact.freeze();
+        return mfact.snapshot();
+    }
+
+    /**
+     * Starts watching the configuration file, reloading it on a background thread every time it's
+     * created or modified. Failed reloads are logged, and the current configuration is kept until
+     * the file changes again. Does nothing if the file is already being watched.
+     *
+     * @throws IOException if the directory of the file can't be watched
+     */
+    public synchronized void watch() throws IOException {
+        if (watcher != null) {
+            return;
+        }
+        watcher = config.getFileSystem().newWatchService();
+        config.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        final WatchService ws = watcher;
+        final Thread t = new Thread(() -> watch(ws), "j8583-config-" + config.getFileName());
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void watch(WatchService ws) {
+        try {
+            while (true) {
+                final WatchKey key = ws.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= config.getFileName().equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    try {
+                        reload();
+                        log.info("ISO8583 configuration reloaded from {}", config);
+                    } catch (IOException ex) {
+                        log.error("ISO8583 cannot reload configuration from {}, keeping the current one", config, ex);
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ex) {
+            //Stopped by close()
+        }
+    }
+
+    /**
+     * Stops watching the configuration file. The current configuration can still be used.
+     *
+     * @throws IOException if the watch service can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583;
+
+import java.util.Map;
+
+/**
+ * An immutable table of values keyed by message type, stored in arrays so that looking up a type
+ * takes two array accesses, without boxing the type or hashing it. Message types take up to 16
+ * bits, so the table is split in pages of 256 types, and only the pages with values are created.
+ *
+ * @param <V> the type of values
+ */
+final class TypeTable<V> {
+
+    private final Object[][] pages = new Object[256][];
+
+    /**
+     * Creates a table with the values from the map. Keys that can't be message types are ignored.
+     *
+     * @param values the values keyed by message type
+     */
+    TypeTable(Map<Integer, ? extends V> values) {
+        for (Map.Entry<Integer, ? extends V> e : values.entrySet()) {
+            final int type = e.getKey();
+            if ((type & ~0xffff) != 0 || e.getValue() == null) {
+                continue;
+            }
+            Object[] page = pages[type >>> 8];
+            if (page == null) {
+                page = new Object[256];
+                pages[type >>> 8] = page;
+            }
+            page[type & 0xff] = e.getValue();
+        }
+    }
+
+    /**
+     * Returns the value for a message type.
+     *
+     * @param type the message type
+     * @return the value, or null if there's none
+     */
+    @SuppressWarnings("unchecked")
+    V get(int type) {
+        if ((type & ~0xffff) != 0) {
+            return null;
+        }
+        final Object[] page = pages[type >>> 8];
+        return page == null ? null : (V) page[type & 0xff];
+    }
+
+}
@@ -30,6 +30,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
+import java.text.ParsePosition;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -158,26 +159,15 @@ public class CompositeField implements CustomBinaryField<CompositeField> {
     public CompositeField decodeBinaryField(byte[] buf, int offset, int length) {
         @SuppressWarnings("rawtypes")
         List<IsoValue> vals = new ArrayList<>(parsers.size());
-        int pos = offset;
+        final ParsePosition pos = new ParsePosition(offset);
         try {
             for (FieldParseInfo fpi : parsers) {
-                IsoValue<?> v = fpi.parseBinary(0, buf, pos, fpi.getDecoder());
+                final int start = pos.getIndex();
+                IsoValue<?> v = fpi.parseBinary(0, buf, pos, offset + length, fpi.getDecoder());
                 if (v != null) {
-                    if (v.getType() == IsoType.NUMERIC || v.getType() == IsoType.DATE10
-                            || v.getType() == IsoType.DATE4 || v.getType() == IsoType.DATE_EXP
-                            || v.getType() == IsoType.AMOUNT || v.getType() == IsoType.TIME
-                            || v.getType() == IsoType.DATE12 || v.getType() == IsoType.DATE14) {
-                        pos += (v.getLength() / 2) + (v.getLength() % 2);
-                    } else {
-                        pos += v.getLength();
-                    }
-                    if (v.getType() == IsoType.LLVAR || v.getType() == IsoType.LLBIN || v.getType() == IsoType.LLBCDLENGTHALPHANUM || v.getType() == IsoType.LLBCDBIN || v.getType() == IsoType.LLBINLENGTHNUM || v.getType() == IsoType.LLLLBINLENGTHNUM || v.getType() == IsoType.LLBINLENGTHALPHANUM || v.getType() == IsoType.LLLLBINLENGTHALPHANUM || v.getType() == IsoType.LLBINLENGTHBIN || v.getType() == IsoType.LLLLBINLENGTHBIN) {
-                        pos++;
-                    } else if (v.getType() == IsoType.LLLVAR || v.getType() == IsoType.LLLBIN || v.getType() == IsoType.LLLBCDBIN
-                            || v.getType() == IsoType.LLLLVAR || v.getType() == IsoType.LLLLBIN || v.getType() == IsoType.LLLLBCDBIN) {
-                        pos+=2;
-                    }
                     vals.add(v);
+                } else {
+                    pos.setIndex(start);
                 }
             }
             final CompositeField f = new CompositeField();
@@ -194,20 +184,15 @@ public class CompositeField implements CustomBinaryField<CompositeField> {
         @SuppressWarnings("rawtypes")
         List<IsoValue> vals = new ArrayList<>(parsers.size());
         byte[] buf = value.getBytes();
-        int pos = 0;
+        final ParsePosition pos = new ParsePosition(0);
         try {
             for (FieldParseInfo fpi : parsers) {
-                IsoValue<?> v = fpi.parse(0, buf, pos, fpi.getDecoder());
+                final int start = pos.getIndex();
+                IsoValue<?> v = fpi.parse(0, buf, pos, buf.length, fpi.getDecoder());
                 if (v != null) {
-                    pos += v.toString().getBytes(fpi.getCharacterEncoding()).length;
-                    if (v.getType() == IsoType.LLVAR || v.getType() == IsoType.LLBIN || v.getType() == IsoType.LLBCDBIN || v.getType() == IsoType.LLBINLENGTHNUM || v.getType() == IsoType.LLLLBINLENGTHNUM || v.getType() == IsoType.LLBINLENGTHALPHANUM || v.getType() == IsoType.LLBINLENGTHBIN || v.getType() == IsoType.LLBCDLENGTHALPHANUM) {
-                        pos+=2;
-                    } else if (v.getType() == IsoType.LLLVAR || v.getType() == IsoType.LLLBIN || v.getType() == IsoType.LLLBCDBIN) {
-                        pos+=3;
-                    } else if (v.getType() == IsoType.LLLLBIN || v.getType() == IsoType.LLLLBCDBIN || v.getType() == IsoType.LLLLVAR  || v.getType() == IsoType.LLLLBINLENGTHBIN) {
-                        pos+=4;
-                    }
                     vals.add(v);
+                } else {
+                    pos.setIndex(start);
                 }
             }
             final CompositeField f = new CompositeField();
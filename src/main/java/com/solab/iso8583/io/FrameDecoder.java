@@ -0,0 +1,319 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583.io;
+
+import com.solab.iso8583.IsoMessage;
+import com.solab.iso8583.MessageFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * Reads messages from a stream or channel, framed the same way {@link IsoMessage#write(java.io.OutputStream, int)}
+ * and {@link IsoMessage#writeToBuffer(int)} write them: a binary length header of 0 to 4 bytes,
+ * the message, and the ETX character if the MessageFactory has one. Messages without a length
+ * header must end with an ETX.
+ * <p>
+ * The data is read into a buffer that is reused for all the messages, so several messages
+ * received in a single read, or a message received in several reads, don't need any additional
+ * copies; the only allocations per message are the ones made by the MessageFactory. If the factory
+ * parses messages lazily, each message gets a copy of its data, since it keeps a reference to it.
+ * <p>
+ * Instances are not thread-safe; use one for each connection.
+ *
+ * @param <T> the type parameter
+ */
+public class FrameDecoder<T extends IsoMessage> {
+
+    private final MessageFactory<T> factory;
+    private final int lengthBytes;
+    private final int isoHeaderLength;
+    private final boolean binaryIsoHeader;
+    private int maxFrameLength = 65536;
+    private byte[] buf = new byte[4096];
+    /** Wraps the buffer to read from channels; created again when the buffer grows. */
+    private ByteBuffer wrapper;
+    /** Start and end of the data that's been read but not decoded yet. */
+    private int start;
+    private int end;
+    /** Where to resume looking for the ETX, when messages have no length header. */
+    private int scan;
+    private boolean endOfStream;
+
+    /**
+     * Creates a decoder for messages without a binary ISO header.
+     *
+     * @param factory         the factory to parse the messages with
+     * @param lengthBytes     the size of the length header, from 0 to 4
+     * @param isoHeaderLength the length of the ISO header of the messages
+     */
+    public FrameDecoder(MessageFactory<T> factory, int lengthBytes, int isoHeaderLength) {
+        this(factory, lengthBytes, isoHeaderLength, false);
+    }
+
+    /**
+     * Creates a decoder.
+     *
+     * @param factory         the factory to parse the messages with
+     * @param lengthBytes     the size of the length header, from 0 to 4
+     * @param isoHeaderLength the length of the ISO header of the messages
+     * @param binaryIsoHeader whether the ISO header is binary
+     */
+    public FrameDecoder(MessageFactory<T> factory, int lengthBytes, int isoHeaderLength,
+                        boolean binaryIsoHeader) {
+        if (lengthBytes < 0 || lengthBytes > 4) {
+            throw new IllegalArgumentException("The length header can have at most 4 bytes");
+        }
+        if (lengthBytes == 0 && factory.getEtx() < 0) {
+            throw new IllegalArgumentException("Messages without a length header must end with an ETX");
+        }
+        this.factory = factory;
+        this.lengthBytes = lengthBytes;
+        this.isoHeaderLength = isoHeaderLength;
+        this.binaryIsoHeader = binaryIsoHeader;
+    }
+
+    /**
+     * Returns the maximum length of a message, including the ETX. Default is 65536.
+     *
+     * @return the max frame length
+     */
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    /**
+     * Sets the maximum length of a message, including the ETX. A length header with a greater
+     * value, or that many bytes without an ETX, cause an IOException, since there's no way to
+     * find the next message after that.
+     *
+     * @param value the value
+     */
+    public void setMaxFrameLength(int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Invalid max frame length " + value);
+        }
+        maxFrameLength = value;
+    }
+
+    /**
+     * Returns true if the last read from a channel reached the end of the stream.
+     *
+     * @return the boolean
+     */
+    public boolean isEndOfStream() {
+        return endOfStream;
+    }
+
+    /**
+     * Returns true if there is data in the buffer that hasn't been decoded yet.
+     *
+     * @return the boolean
+     */
+    public boolean hasBufferedData() {
+        return end > start;
+    }
+
+    /**
+     * Reads the next message from the stream, blocking until it's been read completely.
+     *
+     * @param ins the stream to read from
+     * @return the next message, or null if the stream ended after the previous one
+     * @throws EOFException   if the stream ends in the middle of a message
+     * @throws IOException    if the stream can't be read, or the framing is invalid
+     * @throws ParseException if the message can't be parsed; the decoder skips it, so the next
+     *                        message can still be read
+     */
+    public T read(InputStream ins) throws IOException, ParseException {
+        T m = nextMessage();
+        while (m == null) {
+            if (readFrom(ins) < 0) {
+                return endOfInput();
+            }
+            m = nextMessage();
+        }
+        return m;
+    }
+
+    /**
+     * Reads the next message from the channel. In blocking mode this waits until the message
+     * has been read completely; in non-blocking mode it returns null as soon as the channel has
+     * no more data available, and should be called again when the channel is readable.
+     *
+     * @param channel the channel to read from
+     * @return the next message, or null if there is no complete message yet or the channel
+     * reached the end of the stream (see {@link #isEndOfStream()})
+     * @throws EOFException   if the channel ends in the middle of a message
+     * @throws IOException    if the channel can't be read, or the framing is invalid
+     * @throws ParseException if the message can't be parsed; the decoder skips it, so the next
+     *                        message can still be read
+     */
+    public T read(ReadableByteChannel channel) throws IOException, ParseException {
+        T m = nextMessage();
+        while (m == null) {
+            final int n = readFrom(channel);
+            if (n < 0) {
+                return endOfInput();
+            } else if (n == 0) {
+                return null;
+            }
+            m = nextMessage();
+        }
+        return m;
+    }
+
+    /**
+     * Reads whatever data is available from the stream into the buffer, with a single call to
+     * its read method.
+     *
+     * @param ins the stream to read from
+     * @return the number of bytes read, or -1 at the end of the stream
+     * @throws IOException if the stream can't be read
+     */
+    public int readFrom(InputStream ins) throws IOException {
+        makeRoom();
+        final int n = ins.read(buf, end, buf.length - end);
+        if (n > 0) {
+            end += n;
+        }
+        return n;
+    }
+
+    /**
+     * Reads whatever data is available from the channel into the buffer, with a single call to
+     * its read method.
+     *
+     * @param channel the channel to read from
+     * @return the number of bytes read, or -1 at the end of the stream
+     * @throws IOException if the channel can't be read
+     */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        makeRoom();
+        if (wrapper == null) {
+            wrapper = ByteBuffer.wrap(buf);
+        }
+        wrapper.limit(buf.length).position(end);
+        final int n = channel.read(wrapper);
+        if (n > 0) {
+            end += n;
+        }
+        endOfStream = n < 0;
+        return n;
+    }
+
+    /**
+     * Decodes the next message from the data already in the buffer.
+     *
+     * @return the next message, or null if the buffer doesn't contain a whole message yet
+     * @throws IOException    if the framing is invalid
+     * @throws ParseException if the message can't be parsed; the decoder skips it, so the next
+     *                        message can still be read
+     */
+    public T nextMessage() throws IOException, ParseException {
+        final int etx = factory.getEtx();
+        final int pos;
+        final int length;
+        if (lengthBytes > 0) {
+            if (end - start < lengthBytes) {
+                return null;
+            }
+            int frame = 0;
+            for (int i = start; i < start + lengthBytes; i++) {
+                frame = (frame << 8) | (buf[i] & 0xff);
+            }
+            if (frame < 0 || frame > maxFrameLength) {
+                throw new IOException(String.format("Invalid message length %d", frame));
+            }
+            if (end - start < lengthBytes + frame) {
+                ensureCapacity(lengthBytes + frame);
+                return null;
+            }
+            pos = start + lengthBytes;
+            start = pos + frame;
+            if (etx > -1) {
+                if (frame == 0 || (buf[start - 1] & 0xff) != etx) {
+                    throw new ParseException("Message does not end with ETX", start - 1);
+                }
+                length = frame - 1;
+            } else {
+                length = frame;
+            }
+        } else {
+            int i = Math.max(start, scan);
+            while (i < end && (buf[i] & 0xff) != etx) {
+                i++;
+            }
+            if (i == end) {
+                if (end - start >= maxFrameLength) {
+                    throw new IOException(String.format("No ETX found in %d bytes", end - start));
+                }
+                scan = end;
+                return null;
+            }
+            pos = start;
+            length = i - start;
+            start = i + 1;
+        }
+        if (start == end) {
+            start = end = scan = 0;
+        }
+        if (factory.isUseLazyParsing()) {
+            return factory.parseMessage(Arrays.copyOfRange(buf, pos, pos + length), 0, length,
+                    isoHeaderLength, binaryIsoHeader);
+        }
+        return factory.parseMessage(buf, pos, length, isoHeaderLength, binaryIsoHeader);
+    }
+
+    private T endOfInput() throws EOFException {
+        if (end > start) {
+            throw new EOFException(String.format("Stream ended with %d bytes of an incomplete message",
+                    end - start));
+        }
+        return null;
+    }
+
+    /** Makes sure there is room in the buffer to read more data. */
+    private void makeRoom() {
+        if (end == buf.length) {
+            ensureCapacity(end - start + 1);
+        }
+    }
+
+    /** Makes sure the buffer can hold the specified number of bytes after the start. */
+    private void ensureCapacity(int size) {
+        if (start + size <= buf.length) {
+            return;
+        }
+        final byte[] dest = size > buf.length ? new byte[Math.max(size, buf.length * 2)] : buf;
+        System.arraycopy(buf, start, dest, 0, end - start);
+        if (dest != buf) {
+            buf = dest;
+            wrapper = null;
+        }
+        end -= start;
+        scan = Math.max(0, scan - start);
+        start = 0;
+    }
+
+}
@@ -20,6 +20,7 @@ package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
+import java.text.ParsePosition;
 
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
@@ -46,18 +47,26 @@ public abstract class AlphaNumericFieldParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos,
                              final CustomField<T> custom)
             throws ParseException, UnsupportedEncodingException {
+		return parse(field, buf, new ParsePosition(pos), buf.length, custom);
+	}
+
+    @Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final ParsePosition cursor,
+                             final int limit, final CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+		final int pos = cursor.getIndex();
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid ALPHA/NUM field %d position %d",
                     field, pos), pos);
-		} else if (pos+length > buf.length) {
+		} else if (pos+length > limit) {
 			throw new ParseException(String.format("Insufficient data for %s field %d of length %d, pos %d",
 				type, field, length, pos), pos);
 		}
         try {
-            String _v = new String(buf, pos, length, getCharacterEncoding());
-            if (_v.length() != length) {
-                _v = new String(buf, pos, buf.length-pos, getCharacterEncoding()).substring(0, length);
-            }
+            //With multi-byte encodings, find out how many bytes the characters take up first
+            final int span = textSpan(field, buf, pos, limit, length);
+            final String _v = decode(buf, pos, span);
+            cursor.setIndex(pos + span);
             if (custom == null) {
                 return new IsoValue<>(type, _v, length, null);
             } else {
@@ -72,4 +81,11 @@ public abstract class AlphaNumericFieldParseInfo extends FieldParseInfo {
         }
 	}
 
+    @Override
+    public int measure(final int field, final byte[] buf, final int pos, final int limit)
+            throws ParseException, UnsupportedEncodingException {
+        checkSpan(field, pos, limit, length);
+        return textSpan(field, buf, pos, limit, length);
+    }
+
 }
@@ -55,11 +55,11 @@ public class AlphaParseInfo extends AlphaNumericFieldParseInfo {
 		}
         try {
             if (custom == null) {
-                return new IsoValue<>(type, new String(buf, pos, length, getCharacterEncoding()), length, null);
+                return new IsoValue<>(type, decode(buf, pos, length), length, null);
             } else {
-                T decoded = custom.decodeField(new String(buf, pos, length, getCharacterEncoding()));
+                T decoded = custom.decodeField(decode(buf, pos, length));
                 return decoded == null ?
-                    new IsoValue<>(type, new String(buf, pos, length, getCharacterEncoding()), length, null) :
+                    new IsoValue<>(type, decode(buf, pos, length), length, null) :
                     new IsoValue<>(type, decoded, length, custom);
             }
         } catch (IndexOutOfBoundsException ex) {
@@ -69,4 +69,9 @@ public class AlphaParseInfo extends AlphaNumericFieldParseInfo {
         }
 	}
 
+    @Override
+    public int measureBinary(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+        return checkSpan(field, pos, limit, length);
+    }
+
 }
@@ -25,6 +25,7 @@ import java.text.ParseException;
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.util.NumericCodec;
 
 /**
  * This class is used to parse AMOUNT fields.
@@ -53,7 +54,13 @@ public class AmountParseInfo extends FieldParseInfo {
 			throw new ParseException(String.format("Insufficient data for AMOUNT field %d, pos %d",
                     field, pos), pos);
 		}
-		String c = new String(buf, pos, 12, getCharacterEncoding());
+		if (hasAsciiDigits()) {
+			final long cents = NumericCodec.readAscii(buf, pos, 12);
+			if (cents >= 0) {
+				return new IsoValue<>(type, BigDecimal.valueOf(cents, 2));
+			}
+		}
+		String c = decode(buf, pos, 12);
 		try {
 			return new IsoValue<>(type, new BigDecimal(c).movePointLeft(2));
 		} catch (NumberFormatException ex) {
@@ -90,4 +97,14 @@ public class AmountParseInfo extends FieldParseInfo {
 		}
 	}
 
+    @Override
+    public int measure(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+        return checkSpan(field, pos, limit, 12);
+    }
+
+    @Override
+    public int measureBinary(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+        return checkSpan(field, pos, limit, 6);
+    }
+
 }
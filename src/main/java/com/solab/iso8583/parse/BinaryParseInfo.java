@@ -56,7 +56,7 @@ public class BinaryParseInfo extends FieldParseInfo {
                     "Insufficient data for BINARY field %d of length %d, pos %d",
 				field, length, pos), pos);
 		}
-		byte[] binval = HexCodec.hexDecode(new String(buf, pos, length*2));
+		byte[] binval = HexCodec.hexDecode(buf, pos, length*2);
 		if (custom == null) {
 			return new IsoValue<>(type, binval, binval.length, null);
 		} else {
@@ -89,4 +89,14 @@ public class BinaryParseInfo extends FieldParseInfo {
 		}
 	}
 
+	@Override
+	public int measure(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+		return checkSpan(field, pos, limit, length * 2);
+	}
+
+	@Override
+	public int measureBinary(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+		return checkSpan(field, pos, limit, length);
+	}
+
 }
@@ -47,8 +47,6 @@ import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
-import static com.solab.iso8583.IsoMessage.MAX_AMOUNT_OF_FIELDS;
-
 /**
  * This class is used to parse a XML configuration file and configure
  * a MessageFactory with the values from it.
@@ -281,10 +279,8 @@ public class ConfigParser {
                 T m = (T)new IsoMessage();
                 m.setType(type);
                 m.setCharacterEncoding(mfact.getCharacterEncoding());
-                for (int i = 2; i <= MAX_AMOUNT_OF_FIELDS; i++) {
-                    if (tref.hasField(i)) {
-                        m.setField(i, new IsoValue<>(tref.getField(i)));
-                    }
+                for (int i = tref.nextSetField(2); i > 0; i = tref.nextSetField(i + 1)) {
+                    m.setField(i, new IsoValue<>(tref.getField(i)));
                 }
                 NodeList fields = elem.getElementsByTagName("field");
                 for (int j = 0; j < fields.getLength(); j++) {
@@ -498,6 +494,18 @@ public class ConfigParser {
      */
     protected static <T extends IsoMessage> void parse(
             MessageFactory<T> mfact, InputSource source) throws IOException {
+        parse(mfact, source, false);
+    }
+
+    /**
+     * Reads the XML from the stream and configures the message factory with its values.
+     *
+     * @param mfact  The message factory to be configured with the values read from the XML.
+     * @param source The InputSource containing the XML configuration.
+     * @param strict If true, an IOException is thrown if the XML can't be parsed; otherwise it's only logged.
+     */
+    private static <T extends IsoMessage> void parse(
+            MessageFactory<T> mfact, InputSource source, boolean strict) throws IOException {
 		final DocumentBuilderFactory docfact = DocumentBuilderFactory.newInstance();
 		DocumentBuilder docb = null;
 		Document doc = null;
@@ -533,6 +541,9 @@ public class ConfigParser {
 			});
 			doc = docb.parse(source);
 		} catch (ParserConfigurationException | SAXException ex) {
+			if (strict) {
+				throw new IOException("ISO8583 Cannot parse XML configuration", ex);
+			}
 			log.error("ISO8583 Cannot parse XML configuration", ex);
 			return;
 		}
@@ -572,8 +583,24 @@ public class ConfigParser {
      */
     public static <T extends IsoMessage> void configureFromUrl(
             MessageFactory<T> mfact, URL url) throws IOException {
+        configureFromUrl(mfact, url, false);
+	}
+
+    /**
+     * This method attempts to open a stream from the XML configuration in the specified URL and
+     * configure the message factory from that config. In strict mode, a file that is not valid
+     * XML causes an IOException, instead of being logged and leaving the factory as it was.
+     *
+     * @param <T>    the type parameter
+     * @param mfact  the mfact
+     * @param url    the url
+     * @param strict whether to throw an exception if the XML can't be parsed
+     * @throws IOException the io exception
+     */
+    public static <T extends IsoMessage> void configureFromUrl(
+            MessageFactory<T> mfact, URL url, boolean strict) throws IOException {
 		try (InputStream stream = url.openStream()) {
-			parse(mfact, new InputSource(stream));
+			parse(mfact, new InputSource(stream), strict);
 		}
 	}
 
@@ -20,13 +20,13 @@ package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
-import java.util.Calendar;
 import java.util.Date;
 
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
 import com.solab.iso8583.util.Bcd;
+import com.solab.iso8583.util.DateCodec;
 
 /**
  * This class is used to parse fields of type DATE10.
@@ -54,25 +54,10 @@ public class Date10ParseInfo extends DateTimeParseInfo {
 			throw new ParseException(String.format("Insufficient data for DATE10 field %d, pos %d",
                     field, pos), pos);
 		}
-		//A SimpleDateFormat in the case of dates won't help because of the missing data
-		//we have to use the current date for reference and change what comes in the buffer
-		Calendar cal = Calendar.getInstance();
-		//Set the month in the date
-        if (forceStringDecoding) {
-            cal.set(Calendar.MONTH, Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10)-1);
-            cal.set(Calendar.DATE, Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.HOUR_OF_DAY, Integer.parseInt(new String(buf, pos+4, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.MINUTE, Integer.parseInt(new String(buf, pos+6, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.SECOND, Integer.parseInt(new String(buf, pos+8, 2, getCharacterEncoding()), 10));
-        } else {
-            cal.set(Calendar.MONTH, ((buf[pos] - 48) * 10) + buf[pos + 1] - 49);
-            cal.set(Calendar.DATE, ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 48);
-            cal.set(Calendar.HOUR_OF_DAY, ((buf[pos + 4] - 48) * 10) + buf[pos + 5] - 48);
-            cal.set(Calendar.MINUTE, ((buf[pos + 6] - 48) * 10) + buf[pos + 7] - 48);
-            cal.set(Calendar.SECOND, ((buf[pos + 8] - 48) * 10) + buf[pos + 9] - 48);
-        }
-        cal.set(Calendar.MILLISECOND,0);
-        return createValue(cal, false);
+		//The year is not in the buffer, so we use the current one
+		return createValue(DateCodec.today().getYear(), parseDigits(buf, pos, 2),
+				parseDigits(buf, pos + 2, 2), parseDigits(buf, pos + 4, 2),
+				parseDigits(buf, pos + 6, 2), parseDigits(buf, pos + 8, 2), false);
 	}
 
 	@Override
@@ -92,17 +77,8 @@ public class Date10ParseInfo extends DateTimeParseInfo {
 		for (int i = pos; i < pos + tens.length; i++) {
 			tens[start++] = Bcd.parseBcdLength(buf[i]);
 		}
-		Calendar cal = Calendar.getInstance();
-		//A SimpleDateFormat in the case of dates won't help because of the missing data
-		//we have to use the current date for reference and change what comes in the buffer
-		//Set the month in the date
-		cal.set(Calendar.MONTH, tens[0] - 1);
-		cal.set(Calendar.DATE, tens[1]);
-		cal.set(Calendar.HOUR_OF_DAY, tens[2]);
-		cal.set(Calendar.MINUTE, tens[3]);
-		cal.set(Calendar.SECOND, tens[4]);
-		cal.set(Calendar.MILLISECOND,0);
-        return createValue(cal, false);
+		//The year is not in the buffer, so we use the current one
+		return createValue(DateCodec.today().getYear(), tens[0], tens[1], tens[2], tens[3], tens[4], false);
 	}
 
 }
@@ -20,13 +20,13 @@ package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
-import java.util.Calendar;
 import java.util.Date;
 
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
 import com.solab.iso8583.util.Bcd;
+import com.solab.iso8583.util.DateCodec;
 
 /**
  * This class is used to parse fields of type DATE4.
@@ -54,20 +54,10 @@ public class Date4ParseInfo extends DateTimeParseInfo {
 			throw new ParseException(String.format(
                     "Insufficient data for DATE4 field %d, pos %d", field, pos), pos);
 		}
-		Calendar cal = Calendar.getInstance();
-		cal.set(Calendar.HOUR, 0);
-		cal.set(Calendar.MINUTE, 0);
-		cal.set(Calendar.SECOND, 0);
-		cal.set(Calendar.MILLISECOND, 0);
-		//Set the month in the date
-        if (forceStringDecoding) {
-            cal.set(Calendar.MONTH, Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10)-1);
-            cal.set(Calendar.DATE, Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10));
-        } else {
-            cal.set(Calendar.MONTH, ((buf[pos] - 48) * 10) + buf[pos + 1] - 49);
-            cal.set(Calendar.DATE, ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 48);
-        }
-        return createValue(cal, true);
+		final DateCodec.Today today = DateCodec.today();
+		//The hour is 0 in the morning and 12 in the afternoon, as it's always been
+		return createValue(today.getYear(), parseDigits(buf, pos, 2), parseDigits(buf, pos + 2, 2),
+				today.isAfternoon() ? 12 : 0, 0, 0, true);
 	}
 
 	@Override
@@ -83,15 +73,8 @@ public class Date4ParseInfo extends DateTimeParseInfo {
 		for (int i = pos; i < pos + tens.length; i++) {
 			tens[start++] = Bcd.parseBcdLength(buf[i]);
 		}
-		Calendar cal = Calendar.getInstance();
-		cal.set(Calendar.HOUR, 0);
-		cal.set(Calendar.MINUTE, 0);
-		cal.set(Calendar.SECOND, 0);
-		//Set the month in the date
-		cal.set(Calendar.MONTH, tens[0] - 1);
-		cal.set(Calendar.DATE, tens[1]);
-		cal.set(Calendar.MILLISECOND,0);
-        return createValue(cal, true);
+		final DateCodec.Today today = DateCodec.today();
+		return createValue(today.getYear(), tens[0], tens[1], today.isAfternoon() ? 12 : 0, 0, 0, true);
 	}
 
 }
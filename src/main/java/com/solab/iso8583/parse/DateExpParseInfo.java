@@ -20,13 +20,13 @@ package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
-import java.util.Calendar;
 import java.util.Date;
 
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
 import com.solab.iso8583.util.Bcd;
+import com.solab.iso8583.util.DateCodec;
 
 /**
  * This class is used to parse fields of type DATE_EXP.
@@ -54,22 +54,11 @@ public class DateExpParseInfo extends DateTimeParseInfo {
 			throw new ParseException(String.format(
                     "Insufficient data for DATE_EXP field %d pos %d", field, pos), pos);
 		}
-		Calendar cal = Calendar.getInstance();
-		cal.set(Calendar.HOUR, 0);
-		cal.set(Calendar.MINUTE, 0);
-		cal.set(Calendar.SECOND, 0);
-		cal.set(Calendar.DATE, 1);
-		//Set the month in the date
-        if (forceStringDecoding) {
-            cal.set(Calendar.YEAR, cal.get(Calendar.YEAR) - (cal.get(Calendar.YEAR) % 100)
-                    + Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.MONTH, Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10)-1);
-        } else {
-            cal.set(Calendar.YEAR, cal.get(Calendar.YEAR) - (cal.get(Calendar.YEAR) % 100)
-                    + ((buf[pos] - 48) * 10) + buf[pos + 1] - 48);
-            cal.set(Calendar.MONTH, ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 49);
-        }
-        return createValue(cal, false);
+		final DateCodec.Today today = DateCodec.today();
+		//The century is taken from the current year
+		final int century = today.getYear() - (today.getYear() % 100);
+		return createValue(century + parseDigits(buf, pos, 2), parseDigits(buf, pos + 2, 2), 1,
+				today.isAfternoon() ? 12 : 0, 0, 0, false);
 	}
 
 	@Override
@@ -89,15 +78,8 @@ public class DateExpParseInfo extends DateTimeParseInfo {
 		for (int i = pos; i < pos + tens.length; i++) {
 			tens[start++] = Bcd.parseBcdLength(buf[i]);
 		}
-		Calendar cal = Calendar.getInstance();
-		cal.set(Calendar.HOUR, 0);
-		cal.set(Calendar.MINUTE, 0);
-		cal.set(Calendar.SECOND, 0);
-		cal.set(Calendar.DATE, 1);
-		//Set the month in the date
-		cal.set(Calendar.YEAR, cal.get(Calendar.YEAR)
-				- (cal.get(Calendar.YEAR) % 100) + tens[0]);
-		cal.set(Calendar.MONTH, tens[1] - 1);
-        return createValue(cal, false);
+		final DateCodec.Today today = DateCodec.today();
+		final int century = today.getYear() - (today.getYear() % 100);
+		return createValue(century + tens[0], tens[1], 1, today.isAfternoon() ? 12 : 0, 0, 0, false);
 	}
 }
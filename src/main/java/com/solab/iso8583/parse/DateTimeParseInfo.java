@@ -20,7 +20,13 @@ package com.solab.iso8583.parse;
 
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.util.DateCodec;
 
+import java.io.UnsupportedEncodingException;
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
@@ -130,4 +136,79 @@ public abstract class DateTimeParseInfo extends FieldParseInfo {
         }
 		return v;
     }
+
+    /**
+     * Creates the value for the specified local date and time, in the time zone of the parser
+     * (or the default time zone). Fields out of range are carried over, like in a lenient Calendar.
+     *
+     * @param year      the year
+     * @param month     the month, from 1 to 12
+     * @param day       the day of the month
+     * @param hour      the hour of the day
+     * @param minute    the minute
+     * @param second    the second
+     * @param adjusting whether to go back one year if the date is too far into the future
+     * @return the iso value
+     */
+    protected IsoValue<Date> createValue(int year, int month, int day, int hour, int minute, int second,
+                                         boolean adjusting) {
+        final TimeZone zone = tz == null ? getDefaultTimeZone() : tz;
+        final ZoneId zoneId = zone == null ? ZoneId.systemDefault() : zone.toZoneId();
+        long then = DateCodec.toEpochMillis(year, month, day, hour, minute, second, zoneId);
+        if (adjusting) {
+            //We need to handle a small tolerance into the future (a couple of minutes)
+            long now = System.currentTimeMillis();
+            if (then > now && then - now > FUTURE_TOLERANCE) {
+                then = ZonedDateTime.ofInstant(Instant.ofEpochMilli(then), zoneId).minusYears(1)
+                        .toInstant().toEpochMilli();
+            }
+        }
+        IsoValue<Date> v = new IsoValue<>(type, new Date(then), null);
+        if (zone != null) {
+            v.setTimeZone(zone);
+        }
+        return v;
+    }
+
+    /**
+     * Parses a number of decimal digits from the buffer.
+     *
+     * @param buf   the buffer
+     * @param pos   the position of the first digit
+     * @param count the number of digits
+     * @return the number
+     * @throws UnsupportedEncodingException if the encoding is not supported
+     */
+    protected int parseDigits(byte[] buf, int pos, int count) throws UnsupportedEncodingException {
+        if (forceStringDecoding) {
+            return decodeDigits(buf, pos, count);
+        }
+        int v = 0;
+        for (int i = pos; i < pos + count; i++) {
+            v = v * 10 + buf[i] - 48;
+        }
+        return v;
+    }
+
+    /**
+     * Returns the year for a date with only two digits for the year: 00 to 50 are
+     * in the 2000s, 51 to 99 in the 1900s.
+     *
+     * @param yy the last two digits of the year
+     * @return the year
+     */
+    protected static int fullYear(int yy) {
+        return yy > 50 ? 1900 + yy : 2000 + yy;
+    }
+
+    @Override
+    public int measure(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+        return checkSpan(field, pos, limit, length);
+    }
+
+    @Override
+    public int measureBinary(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+        return checkSpan(field, pos, limit, (length / 2) + (length % 2));
+    }
+
 }
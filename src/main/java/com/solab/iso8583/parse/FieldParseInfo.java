@@ -19,18 +19,30 @@ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
 package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.text.ParsePosition;
 
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.util.Charsets;
+import com.solab.iso8583.util.NumericCodec;
+import com.solab.iso8583.util.SingleByteCodec;
 
 /**
  * This class is used to parse a field from a message buffer. There are concrete subclasses for each IsoType.
  *
  * @author Enrique Zamudio
  */
-public abstract class FieldParseInfo {
+public abstract class FieldParseInfo implements Cloneable {
+
+	private static final byte[] ASCII_DIGITS = "0123456789".getBytes(StandardCharsets.US_ASCII);
 
 	/**
 	 * The Type.
@@ -41,6 +53,13 @@ public abstract class FieldParseInfo {
 	 */
 	protected final int length;
 	private String encoding = System.getProperty("file.encoding");
+	/** The charset for the encoding, resolved when it's set; null if it's not supported. */
+	private Charset charset = Charsets.lookup(encoding);
+	private boolean singleByteEncoding = isSingleByte(charset);
+	private boolean utf8Encoding = StandardCharsets.UTF_8.equals(charset);
+	/** Translation tables for single-byte encodings such as EBCDIC; null for other encodings. */
+	private SingleByteCodec table = SingleByteCodec.forCharset(charset);
+	private boolean asciiDigits = hasAsciiDigits(charset);
 	/**
 	 * The Force string decoding.
 	 */
@@ -94,6 +113,11 @@ public abstract class FieldParseInfo {
 	 */
 	public void setCharacterEncoding(String value) {
 		encoding = value;
+		charset = Charsets.lookup(value);
+		singleByteEncoding = isSingleByte(charset);
+		utf8Encoding = StandardCharsets.UTF_8.equals(charset);
+		table = SingleByteCodec.forCharset(charset);
+		asciiDigits = hasAsciiDigits(charset);
 	}
 
 	/**
@@ -141,6 +165,20 @@ public abstract class FieldParseInfo {
          return decoder;
     }
 
+	/**
+	 * Returns a copy of this parser with the same settings, so that the settings of one of them
+	 * can be changed without affecting the other. The decoder is shared.
+	 *
+	 * @return the copy
+	 */
+	public FieldParseInfo copy() {
+		try {
+			return (FieldParseInfo) super.clone();
+		} catch (CloneNotSupportedException ex) {
+			throw new IllegalStateException("Cannot copy parser for " + type, ex);
+		}
+	}
+
 	/**
 	 * Parses the character data from the buffer and returns the
 	 * IsoValue with the correct data type in it.
@@ -175,6 +213,179 @@ public abstract class FieldParseInfo {
                                             CustomField<T> custom)
             throws ParseException, UnsupportedEncodingException;
 
+	/**
+	 * Parses the character data of the field starting at the index of the cursor, and moves the
+	 * cursor past it (length header included), so that it points to the next field. This is how
+	 * the MessageFactory parses each field in a single pass; the parsers included in the library
+	 * work out the span while they read the value, and don't read anything past the limit. The
+	 * default implementation, for other subclasses, calls {@link #measure(int, byte[], int, int)}
+	 * first, so that the field is only parsed with {@link #parse(int, byte[], int, CustomField)}
+	 * if it fits within the limit.
+	 *
+	 * @param <T>    the type parameter
+	 * @param field  The field index, useful for error reporting.
+	 * @param buf    The full ISO message buffer.
+	 * @param cursor The position of the field data, which is moved to the end of the field.
+	 * @param limit  The position where the message data ends; the field must not go past it.
+	 * @param custom A CustomField to decode the field.
+	 * @return the iso value
+	 * @throws ParseException               if the data is invalid or the message doesn't contain the whole field
+	 * @throws UnsupportedEncodingException the unsupported encoding exception
+	 */
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final ParsePosition cursor,
+								 final int limit, final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+		final int pos = cursor.getIndex();
+		final int span = measure(field, buf, pos, limit);
+		final IsoValue<?> v = parse(field, buf, pos, custom);
+		cursor.setIndex(pos + span);
+		return v;
+	}
+
+	/**
+	 * Parses the binary data of the field starting at the index of the cursor, and moves the
+	 * cursor past it, like {@link #parse(int, byte[], ParsePosition, int, CustomField)} does
+	 * for character data. The default implementation calls
+	 * {@link #measureBinary(int, byte[], int, int)} and then, if the field fits within the limit,
+	 * {@link #parseBinary(int, byte[], int, CustomField)}.
+	 *
+	 * @param <T>    the type parameter
+	 * @param field  The field index, useful for error reporting.
+	 * @param buf    The full ISO message buffer.
+	 * @param cursor The position of the field data, which is moved to the end of the field.
+	 * @param limit  The position where the message data ends; the field must not go past it.
+	 * @param custom A CustomField to decode the field.
+	 * @return the iso value
+	 * @throws ParseException               if the data is invalid or the message doesn't contain the whole field
+	 * @throws UnsupportedEncodingException the unsupported encoding exception
+	 */
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final ParsePosition cursor,
+									   final int limit, final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+		final int pos = cursor.getIndex();
+		final int span = measureBinary(field, buf, pos, limit);
+		final IsoValue<?> v = parseBinary(field, buf, pos, custom);
+		cursor.setIndex(pos + span);
+		return v;
+	}
+
+	/**
+	 * Returns the number of bytes taken up by the field starting at the specified position,
+	 * including its length header if any, when it's parsed as text. The MessageFactory uses it
+	 * to skip the fields that it doesn't parse, or parses lazily. The parsers included in the library
+	 * work this out without decoding the value; the default implementation, for other
+	 * subclasses, parses the value and encodes it again to count its bytes, so subclasses
+	 * should override it.
+	 *
+	 * @param field The field index, useful for error reporting.
+	 * @param buf   The full ISO message buffer.
+	 * @param pos   The starting position for the field data.
+	 * @param limit The position where the message data ends; the field must not go past it.
+	 * @return the number of bytes taken up by the field
+	 * @throws ParseException               if the message doesn't contain the whole field
+	 * @throws UnsupportedEncodingException the unsupported encoding exception
+	 */
+	public int measure(final int field, final byte[] buf, final int pos, final int limit)
+			throws ParseException, UnsupportedEncodingException {
+		final IsoValue<?> v = parse(field, buf, pos, null);
+		if (v == null) {
+			return 0;
+		}
+		final int header;
+		switch (type) {
+			case LLVAR:
+			case LLBIN:
+			case LLBCDBIN:
+			case LLBCDLENGTHALPHANUM:
+			case LLBINLENGTHNUM:
+			case LLBINLENGTHALPHANUM:
+			case LLBINLENGTHBIN:
+				header = 2;
+				break;
+			case LLLVAR:
+			case LLLBIN:
+			case LLLBCDBIN:
+				header = 3;
+				break;
+			case LLLLVAR:
+			case LLLLBIN:
+			case LLLLBCDBIN:
+			case LLLLBINLENGTHNUM:
+			case LLLLBINLENGTHBIN:
+			case LLLLBINLENGTHALPHANUM:
+				header = 4;
+				break;
+			default:
+				header = 0;
+		}
+		final String s = v.toString();
+		return checkSpan(field, pos, limit, header + (singleByteEncoding ? s.length() : encode(s).length));
+	}
+
+	/**
+	 * Returns the number of bytes taken up by the field starting at the specified position,
+	 * including its length header if any, when it's parsed as binary data. The parsers
+	 * included in the library work this out without decoding the value; the default
+	 * implementation, for other subclasses, parses the value to get its length, so subclasses
+	 * should override it.
+	 *
+	 * @param field The field index, useful for error reporting.
+	 * @param buf   The full ISO message buffer.
+	 * @param pos   The starting position for the field data.
+	 * @param limit The position where the message data ends; the field must not go past it.
+	 * @return the number of bytes taken up by the field
+	 * @throws ParseException               if the message doesn't contain the whole field
+	 * @throws UnsupportedEncodingException the unsupported encoding exception
+	 */
+	public int measureBinary(final int field, final byte[] buf, final int pos, final int limit)
+			throws ParseException, UnsupportedEncodingException {
+		final IsoValue<?> v = parseBinary(field, buf, pos, null);
+		if (v == null) {
+			return 0;
+		}
+		final int span;
+		switch (type) {
+			case NUMERIC:
+			case DATE10:
+			case DATE4:
+			case DATE12:
+			case DATE14:
+			case DATE6:
+			case DATE_EXP:
+			case AMOUNT:
+			case TIME:
+				span = v.getLength() / 2 + v.getLength() % 2;
+				break;
+			case LLBINLENGTHNUM:
+			case LLBCDBIN:
+				span = 1 + v.getLength() / 2 + v.getLength() % 2;
+				break;
+			case LLLBCDBIN:
+			case LLLLBCDBIN:
+			case LLLLBINLENGTHNUM:
+			case LLLLBINLENGTHBIN:
+				span = 2 + v.getLength() / 2 + v.getLength() % 2;
+				break;
+			case LLVAR:
+			case LLBIN:
+			case LLBINLENGTHALPHANUM:
+			case LLBINLENGTHBIN:
+			case LLBCDLENGTHALPHANUM:
+				span = 1 + v.getLength();
+				break;
+			case LLLVAR:
+			case LLLBIN:
+			case LLLLVAR:
+			case LLLLBIN:
+			case LLLLBINLENGTHALPHANUM:
+				span = 2 + v.getLength();
+				break;
+			default:
+				span = v.getLength();
+		}
+		return checkSpan(field, pos, limit, span);
+	}
+
 	/**
 	 * Returns a new FieldParseInfo instance that can parse the specified type.  
 	 *
@@ -255,25 +466,234 @@ public abstract class FieldParseInfo {
 	 * @param buf    the buf
 	 * @param pos    the pos
 	 * @param digits the digits
-	 * @return the int
+	 * @return the int, or -1 if the header is not a number
 	 * @throws UnsupportedEncodingException the unsupported encoding exception
 	 */
 	protected int decodeLength(byte[] buf, int pos, int digits) throws UnsupportedEncodingException {
         if (forceStringDecoding) {
-            return Integer.parseInt(new String(buf, pos, digits, encoding), 10);
-        } else {
-            switch(digits) {
-                case 2:
-                    return ((buf[pos] - 48) * 10) + (buf[pos + 1] - 48);
-                case 3:
-                    return ((buf[pos] - 48) * 100) + ((buf[pos + 1] - 48) * 10)
-                            + (buf[pos + 2] - 48);
-                case 4:
-                    return ((buf[pos] - 48) * 1000) + ((buf[pos + 1] - 48) * 100)
-                            + ((buf[pos + 2] - 48) * 10) + (buf[pos + 3] - 48);
-            }
+            return decodeDigits(buf, pos, digits);
+        } else if (digits >= 2 && digits <= 4) {
+            //-1 if the header has anything other than ASCII digits
+            return (int) NumericCodec.readAscii(buf, pos, digits);
         }
         return -1;
     }
 
+	/**
+	 * Creates the exception for a length header that could not be decoded, with the position of
+	 * the first byte in it that is not a digit as the error offset.
+	 *
+	 * @param field  the field index, for error reporting
+	 * @param buf    the buffer
+	 * @param pos    the position of the length header
+	 * @param digits the number of digits in the header
+	 * @return the exception
+	 */
+	ParseException invalidLength(final int field, final byte[] buf, final int pos, final int digits) {
+		//Without string decoding, the header is read as ASCII digits
+		final int bad = asciiDigits || !forceStringDecoding ? NumericCodec.indexOfNonDigit(buf, pos, digits) : -1;
+		final int offset = bad < 0 ? pos : bad;
+		return new ParseException(String.format("Invalid digit in %s length header, field %d pos %d",
+				type, field, offset), offset);
+	}
+
+	/**
+	 * Decodes a number from its digits with the character encoding of the parser. With
+	 * single-byte encodings the digits are read straight from the bytes.
+	 *
+	 * @param buf   the buffer
+	 * @param pos   the position of the first digit
+	 * @param count the number of digits
+	 * @return the number
+	 * @throws UnsupportedEncodingException if the encoding is not supported
+	 * @throws NumberFormatException        if the text is not a number
+	 */
+	protected int decodeDigits(byte[] buf, int pos, int count) throws UnsupportedEncodingException {
+		if (table != null && count < 8) {
+			final int v = table.parseDigits(buf, pos, count, 10);
+			if (v >= 0) {
+				return v;
+			}
+		}
+		return Integer.parseInt(decode(buf, pos, count), 10);
+	}
+
+	/**
+	 * Checks that the message contains the specified number of bytes at the specified position.
+	 *
+	 * @param field the field index, for error reporting
+	 * @param pos   the position of the field data
+	 * @param limit the position where the message data ends
+	 * @param span  the number of bytes taken up by the field
+	 * @return the span
+	 * @throws ParseException if the message is too short
+	 */
+	protected int checkSpan(final int field, final int pos, final int limit, final int span)
+			throws ParseException {
+		if (pos < 0) {
+			throw new ParseException(String.format("Invalid %s field %d position %d",
+					type, field, pos), pos);
+		} else if (span < 0) {
+			throw new ParseException(String.format("Invalid %s field %d length %d pos %d",
+					type, field, span, pos), pos);
+		} else if (pos + span > limit) {
+			throw new ParseException(String.format(
+					"Insufficient data for %s field %d, pos %d len %d", type, field, pos, span), pos);
+		}
+		return span;
+	}
+
+	/**
+	 * Returns the number of bytes taken up by the specified number of characters starting
+	 * at the specified position. Well-formed UTF-8 is measured by walking its code points;
+	 * with other multi-byte character encodings, or malformed input, the characters are
+	 * decoded the same way the parsers do (replacing invalid input) to count their bytes.
+	 *
+	 * @param field the field index, for error reporting
+	 * @param buf   the buffer
+	 * @param pos   the position of the text
+	 * @param limit the position where the message data ends
+	 * @param chars the number of characters, which must not be more than the bytes left
+	 * @return the number of bytes
+	 * @throws ParseException               if the message doesn't contain that many characters
+	 * @throws UnsupportedEncodingException if the encoding is not supported
+	 */
+	protected int textSpan(final int field, final byte[] buf, final int pos, final int limit,
+						   final int chars)
+			throws ParseException, UnsupportedEncodingException {
+		if (singleByteEncoding) {
+			return chars;
+		}
+		if (utf8Encoding) {
+			final int span = utf8Span(buf, pos, limit, chars);
+			if (span >= 0) {
+				return span;
+			}
+		}
+		if (charset == null) {
+			throw new UnsupportedEncodingException(encoding);
+		}
+		final CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		final ByteBuffer in = ByteBuffer.wrap(buf, pos, limit - pos);
+		final CharBuffer out = CharBuffer.allocate(chars);
+		decoder.decode(in, out, true);
+		if (out.hasRemaining()) {
+			throw new ParseException(String.format(
+					"Insufficient data for %s field %d, pos %d len %d", type, field, pos, chars), pos);
+		}
+		return in.position() - pos;
+	}
+
+	/**
+	 * Walks the code points of well-formed UTF-8 text to count the bytes taken up by
+	 * the specified number of characters, without decoding them. Characters outside the
+	 * BMP count as two, like the surrogate pairs they decode to.
+	 *
+	 * @return the number of bytes, or -1 if the text is malformed, a surrogate pair would be
+	 * split, or the data ends first; the decoder then takes care of those cases.
+	 */
+	static int utf8Span(final byte[] buf, final int pos, final int limit, final int chars) {
+		int i = pos;
+		int n = 0;
+		while (n < chars) {
+			if (i >= limit) {
+				return -1;
+			}
+			final int b = buf[i] & 0xff;
+			if (b < 0x80) {
+				i++;
+				n++;
+				continue;
+			}
+			//Size of the sequence and valid range of its second byte
+			final int size;
+			int min = 0x80;
+			int max = 0xbf;
+			if (b >= 0xc2 && b <= 0xdf) {
+				size = 2;
+			} else if (b >= 0xe0 && b <= 0xef) {
+				size = 3;
+				if (b == 0xe0) {
+					min = 0xa0;
+				} else if (b == 0xed) {
+					max = 0x9f;
+				}
+			} else if (b >= 0xf0 && b <= 0xf4) {
+				size = 4;
+				if (b == 0xf0) {
+					min = 0x90;
+				} else if (b == 0xf4) {
+					max = 0x8f;
+				}
+			} else {
+				return -1;
+			}
+			if (i + size > limit) {
+				return -1;
+			}
+			final int b1 = buf[i + 1] & 0xff;
+			if (b1 < min || b1 > max) {
+				return -1;
+			}
+			for (int k = 2; k < size; k++) {
+				if ((buf[i + k] & 0xc0) != 0x80) {
+					return -1;
+				}
+			}
+			n += size == 4 ? 2 : 1;
+			i += size;
+		}
+		return n == chars ? i - pos : -1;
+	}
+
+	/**
+	 * Decodes text from the buffer with the character encoding of the parser.
+	 *
+	 * @param buf the buffer
+	 * @param pos the position of the text
+	 * @param len the number of bytes to decode
+	 * @return the text
+	 * @throws UnsupportedEncodingException if the encoding is not supported
+	 */
+	protected String decode(byte[] buf, int pos, int len) throws UnsupportedEncodingException {
+		if (table != null) {
+			return table.decode(buf, pos, len);
+		}
+		return charset == null ? new String(buf, pos, len, encoding) : new String(buf, pos, len, charset);
+	}
+
+	/**
+	 * Encodes text with the character encoding of the parser.
+	 *
+	 * @param s the text
+	 * @return the bytes
+	 * @throws UnsupportedEncodingException if the encoding is not supported
+	 */
+	protected byte[] encode(String s) throws UnsupportedEncodingException {
+		if (table != null) {
+			return table.encode(s);
+		}
+		return charset == null ? s.getBytes(encoding) : s.getBytes(charset);
+	}
+
+	/**
+	 * Returns true if the character encoding of the parser writes digits as ASCII, so that they
+	 * can be read straight from the bytes.
+	 *
+	 * @return the boolean
+	 */
+	boolean hasAsciiDigits() {
+		return asciiDigits;
+	}
+
+	private static boolean hasAsciiDigits(Charset cs) {
+		return cs != null && "0123456789".equals(new String(ASCII_DIGITS, cs));
+	}
+
+	private static boolean isSingleByte(Charset cs) {
+		return cs != null && cs.canEncode() && cs.newEncoder().maxBytesPerChar() == 1.0f;
+	}
+
 }
@@ -20,6 +20,7 @@ package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
+import java.text.ParsePosition;
 
 import com.solab.iso8583.CustomBinaryField;
 import com.solab.iso8583.CustomField;
@@ -56,25 +57,32 @@ public class LlbinParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parse(final int field, final byte[] buf,
                              final int pos, final CustomField<T> custom)
             throws ParseException, UnsupportedEncodingException {
+		return parse(field, buf, new ParsePosition(pos), buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final ParsePosition cursor,
+                             final int limit, final CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+		final int pos = cursor.getIndex();
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid LLBIN field %d position %d",
                     field, pos), pos);
-		} else if (pos+2 > buf.length) {
+		} else if (pos+2 > limit) {
 			throw new ParseException(String.format("Insufficient LLBIN header field %d",
                     field), pos);
 		}
 		final int len = decodeLength(buf, pos, 2);
 		if (len < 0) {
-			throw new ParseException(String.format("Invalid LLBIN field %d length %d pos %d",
-                    field, len, pos), pos);
+			throw invalidLength(field, buf, pos, 2);
 		}
-		if (len+pos+2 > buf.length) {
+		if (len+pos+2 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for LLBIN field %d, pos %d (LEN states '%s')",
                     field, pos, new String(buf, pos, 2)), pos);
 		}
-		byte[] binval = len == 0 ? new byte[0] : HexCodec.hexDecode(
-                new String(buf, pos + 2, len));
+		cursor.setIndex(pos + 2 + len);
+		byte[] binval = len == 0 ? new byte[0] : HexCodec.hexDecode(buf, pos + 2, len);
 		if (custom == null) {
 			return new IsoValue<>(type, binval, binval.length, null);
         } else if (custom instanceof CustomBinaryField) {
@@ -104,10 +112,18 @@ public class LlbinParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf,
                                    final int pos, final CustomField<T> custom)
             throws ParseException {
+		return parseBinary(field, buf, new ParsePosition(pos), buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final ParsePosition cursor,
+                                   final int limit, final CustomField<T> custom)
+            throws ParseException {
+		final int pos = cursor.getIndex();
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin LLBIN field %d position %d",
                     field, pos), pos);
-		} else if (pos+1 > buf.length) {
+		} else if (pos+1 > limit) {
 			throw new ParseException(String.format("Insufficient bin LLBIN header field %d",
                     field), pos);
 		}
@@ -115,11 +131,12 @@ public class LlbinParseInfo extends FieldParseInfo {
 		if (l < 0) {
 			throw new ParseException(String.format("Invalid bin LLBIN length %d pos %d", l, pos), pos);
 		}
-		if (l+pos+1 > buf.length) {
+		if (l+pos+1 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLBIN field %d, pos %d: need %d, only %d available",
-                    field, pos, l, buf.length), pos);
+                    field, pos, l, limit), pos);
 		}
+		cursor.setIndex(pos + 1 + l);
 		byte[] _v = new byte[l];
 		System.arraycopy(buf, pos+1, _v, 0, l);
 		if (custom == null) {
@@ -161,4 +178,23 @@ public class LlbinParseInfo extends FieldParseInfo {
     protected int getFieldLength(final byte b) {
         return (((b & 0xf0) >> 4) * 10) + (b & 0x0f);
     }
+
+	@Override
+	public int measure(final int field, final byte[] buf, final int pos, final int limit)
+			throws ParseException, UnsupportedEncodingException {
+		checkSpan(field, pos, limit, 2);
+		final int len = decodeLength(buf, pos, 2);
+		if (len < 0) {
+			throw invalidLength(field, buf, pos, 2);
+		}
+		return checkSpan(field, pos, limit, len + 2);
+	}
+
+	@Override
+	public int measureBinary(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+		checkSpan(field, pos, limit, 1);
+		final int len = getLengthForBinaryParsing(buf[pos]);
+		return checkSpan(field, pos, limit, len < 0 ? len : len + 1);
+	}
+
 }
@@ -20,6 +20,7 @@ package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
+import java.text.ParsePosition;
 
 import com.solab.iso8583.CustomBinaryField;
 import com.solab.iso8583.CustomField;
@@ -56,23 +57,31 @@ public class LllbinParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parse(final int field, final byte[] buf,
                              final int pos, final CustomField<T> custom)
             throws ParseException, UnsupportedEncodingException {
+		return parse(field, buf, new ParsePosition(pos), buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final ParsePosition cursor,
+                             final int limit, final CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+		final int pos = cursor.getIndex();
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid LLLBIN field %d pos %d",
                     field, pos), pos);
-		} else if (pos+3 > buf.length) {
+		} else if (pos+3 > limit) {
 			throw new ParseException(String.format("Insufficient LLLBIN header field %d",
                     field), pos);
 		}
 		final int l = decodeLength(buf, pos, 3);
 		if (l < 0) {
-			throw new ParseException(String.format("Invalid LLLBIN length %d field %d pos %d",
-                    l, field, pos), pos);
-		} else if (l+pos+3 > buf.length) {
+			throw invalidLength(field, buf, pos, 3);
+		} else if (l+pos+3 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for LLLBIN field %d, pos %d len %d",
                     field, pos, l), pos);
 		}
-		byte[] binval = l == 0 ? new byte[0] : HexCodec.hexDecode(new String(buf, pos + 3, l));
+		cursor.setIndex(pos + 3 + l);
+		byte[] binval = l == 0 ? new byte[0] : HexCodec.hexDecode(buf, pos + 3, l);
 		if (custom == null) {
 			return new IsoValue<>(type, binval, binval.length, null);
         } else if (custom instanceof CustomBinaryField) {
@@ -104,10 +113,18 @@ public class LllbinParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf,
                                    final int pos, final CustomField<T> custom)
             throws ParseException {
+		return parseBinary(field, buf, new ParsePosition(pos), buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final ParsePosition cursor,
+                                   final int limit, final CustomField<T> custom)
+            throws ParseException {
+		final int pos = cursor.getIndex();
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin LLLBIN field %d pos %d",
                     field, pos), pos);
-		} else if (pos+2 > buf.length) {
+		} else if (pos+2 > limit) {
             throw new ParseException(String.format("Insufficient LLLBIN header field %d",
                              field), pos);
 		}
@@ -116,11 +133,12 @@ public class LllbinParseInfo extends FieldParseInfo {
             throw new ParseException(String.format("Invalid LLLBIN length %d field %d pos %d",
                              l, field, pos), pos);
 		}
-		if (l+pos+2 > buf.length) {
+		if (l+pos+2 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLLBIN field %d, pos %d requires %d, only %d available",
-                    field, pos, l, buf.length-pos+1), pos);
+                    field, pos, l, limit-pos+1), pos);
 		}
+		cursor.setIndex(pos + 2 + l);
 		byte[] _v = new byte[l];
 		System.arraycopy(buf, pos+2, _v, 0, l);
 		if (custom == null) {
@@ -161,4 +179,22 @@ public class LllbinParseInfo extends FieldParseInfo {
                 ((buf[pos] & 0x0f) * 100) + Bcd.parseBcdLength(buf[pos + 1]);
     }
 
+	@Override
+	public int measure(final int field, final byte[] buf, final int pos, final int limit)
+			throws ParseException, UnsupportedEncodingException {
+		checkSpan(field, pos, limit, 3);
+		final int len = decodeLength(buf, pos, 3);
+		if (len < 0) {
+			throw invalidLength(field, buf, pos, 3);
+		}
+		return checkSpan(field, pos, limit, len + 3);
+	}
+
+	@Override
+	public int measureBinary(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+		checkSpan(field, pos, limit, 2);
+		final int len = getLengthForBinaryParsing(buf, pos);
+		return checkSpan(field, pos, limit, len < 0 ? len : len + 2);
+	}
+
 }
@@ -27,6 +27,7 @@ import com.solab.iso8583.util.HexCodec;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
+import java.text.ParsePosition;
 
 /**
  * This class is used to parse fields of type LLLLBIN.
@@ -56,22 +57,30 @@ public class LlllbinParseInfo  extends FieldParseInfo {
 	public <T> IsoValue<?> parse(final int field, final byte[] buf,
                              final int pos, final CustomField<T> custom)
             throws ParseException, UnsupportedEncodingException {
+		return parse(field, buf, new ParsePosition(pos), buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final ParsePosition cursor,
+                             final int limit, final CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+		final int pos = cursor.getIndex();
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid LLLLBIN field %d pos %d",
                     field, pos), pos);
-		} else if (pos+4 > buf.length) {
+		} else if (pos+4 > limit) {
 			throw new ParseException(String.format("Insufficient LLLLBIN header field %d",
                     field), pos);
 		}
 		final int l = decodeLength(buf, pos, 4);
 		if (l < 0) {
-			throw new ParseException(String.format("Invalid LLLLBIN length %d field %d pos %d",
-                    l, field, pos), pos);
-		} else if (l+pos+4 > buf.length) {
+			throw invalidLength(field, buf, pos, 4);
+		} else if (l+pos+4 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for LLLLBIN field %d, pos %d", field, pos), pos);
 		}
-		byte[] binval = l == 0 ? new byte[0] : HexCodec.hexDecode(new String(buf, pos + 4, l));
+		cursor.setIndex(pos + 4 + l);
+		byte[] binval = l == 0 ? new byte[0] : HexCodec.hexDecode(buf, pos + 4, l);
 		if (custom == null) {
 			return new IsoValue<>(type, binval, binval.length, null);
         } else if (custom instanceof CustomBinaryField) {
@@ -101,10 +110,18 @@ public class LlllbinParseInfo  extends FieldParseInfo {
 	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf,
                                    final int pos, final CustomField<T> custom)
             throws ParseException {
+		return parseBinary(field, buf, new ParsePosition(pos), buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final ParsePosition cursor,
+                                   final int limit, final CustomField<T> custom)
+            throws ParseException {
+		final int pos = cursor.getIndex();
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin LLLLBIN field %d pos %d",
                     field, pos), pos);
-		} else if (pos+2 > buf.length) {
+		} else if (pos+2 > limit) {
             throw new ParseException(String.format("Insufficient LLLLBIN header field %d",
                              field), pos);
 		}
@@ -113,11 +130,12 @@ public class LlllbinParseInfo  extends FieldParseInfo {
             throw new ParseException(String.format("Invalid LLLLBIN length %d field %d pos %d",
                              l, field, pos), pos);
 		}
-		if (l+pos+2 > buf.length) {
+		if (l+pos+2 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLLLBIN field %d, pos %d requires %d, only %d available",
-                    field, pos, l, buf.length-pos+1), pos);
+                    field, pos, l, limit-pos+1), pos);
 		}
+		cursor.setIndex(pos + 2 + l);
 		byte[] _v = new byte[l];
 		System.arraycopy(buf, pos+2, _v, 0, l);
 		if (custom == null) {
@@ -157,4 +175,23 @@ public class LlllbinParseInfo  extends FieldParseInfo {
 				:
 				Bcd.parseBcdLength2bytes(buf, pos);
 	}
+
+	@Override
+	public int measure(final int field, final byte[] buf, final int pos, final int limit)
+			throws ParseException, UnsupportedEncodingException {
+		checkSpan(field, pos, limit, 4);
+		final int len = decodeLength(buf, pos, 4);
+		if (len < 0) {
+			throw invalidLength(field, buf, pos, 4);
+		}
+		return checkSpan(field, pos, limit, len + 4);
+	}
+
+	@Override
+	public int measureBinary(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+		checkSpan(field, pos, limit, 2);
+		final int len = getLengthForBinaryParsing(buf, pos);
+		return checkSpan(field, pos, limit, len < 0 ? len : len + 2);
+	}
+
 }
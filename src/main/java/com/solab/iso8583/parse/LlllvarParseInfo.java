@@ -25,6 +25,7 @@ import com.solab.iso8583.util.Bcd;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
+import java.text.ParsePosition;
 
 /**
  * Blabla.
@@ -54,36 +55,39 @@ public class LlllvarParseInfo  extends FieldParseInfo {
 	public <T> IsoValue<?> parse(final int field, final byte[] buf,
                              final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
+		return parse(field, buf, new ParsePosition(pos), buf.length, custom);
+	}
+
+    @Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final ParsePosition cursor,
+                             final int limit, final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+		final int pos = cursor.getIndex();
 		if (pos < 0) {
 			throw new ParseException(String.format(
 					"Invalid LLLLVAR field %d %d", field, pos), pos);
-		} else if (pos+4 > buf.length) {
+		} else if (pos+4 > limit) {
 			throw new ParseException(String.format(
 					"Insufficient data for LLLLVAR header, pos %d", pos), pos);
 		}
 		final int len = decodeLength(buf, pos, 4);
 		if (len < 0) {
-			throw new ParseException(String.format(
-                    "Invalid LLLLVAR length %d, field %d pos %d", len, field, pos), pos);
-		} else if (len+pos+4 > buf.length) {
+			throw invalidLength(field, buf, pos, 4);
+		} else if (len+pos+4 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for LLLLVAR field %d, pos %d", field, pos), pos);
 		}
-		String _v;
+		//With multi-byte encodings the characters can take up more bytes than the length says,
+		//so we find out how many bytes they take up before decoding exactly those
+		final int span = len == 0 ? 0 : textSpan(field, buf, pos + 4, limit, len);
+		final String _v;
         try {
-            _v = len == 0 ? "" : new String(buf, pos + 4, len, getCharacterEncoding());
+            _v = span == 0 ? "" : decode(buf, pos + 4, span);
         } catch (IndexOutOfBoundsException ex) {
             throw new ParseException(String.format(
                     "Insufficient data for LLLLVAR header, field %d pos %d", field, pos), pos);
         }
-		//This is new: if the String's length is different from the specified
-		// length in the buffer, there are probably some extended characters.
-		// So we create a String from the rest of the buffer, and then cut it to
-		// the specified length.
-		if (_v.length() != len) {
-			_v = new String(buf, pos + 4, buf.length-pos-4,
-					getCharacterEncoding()).substring(0, len);
-		}
+		cursor.setIndex(pos + 4 + span);
 		if (custom == null) {
 			return new IsoValue<>(type, _v, len, null);
 		} else {
@@ -97,10 +101,18 @@ public class LlllvarParseInfo  extends FieldParseInfo {
 	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf,
                                    final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
+		return parseBinary(field, buf, new ParsePosition(pos), buf.length, custom);
+	}
+
+    @Override
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final ParsePosition cursor,
+                                   final int limit, final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+		final int pos = cursor.getIndex();
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin LLLLVAR field %d pos %d",
                     field, pos), pos);
-		} else if (pos+2 > buf.length) {
+		} else if (pos+2 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLLLVAR header, field %d pos %d",
 					field, pos), pos);
@@ -110,19 +122,38 @@ public class LlllvarParseInfo  extends FieldParseInfo {
 			throw new ParseException(String.format(
                     "Invalid bin LLLLVAR length %d, field %d pos %d", len, field, pos), pos);
 		}
-		if (len+pos+2 > buf.length) {
+		if (len+pos+2 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLLLVAR field %d, pos %d", field, pos), pos);
 		}
+		cursor.setIndex(pos + 2 + len);
 		if (custom == null) {
-			return new IsoValue<>(type, new String(buf, pos + 2, len,
-					getCharacterEncoding()), null);
+			return new IsoValue<>(type, decode(buf, pos + 2, len), null);
 		} else {
-            T dec = custom.decodeField(new String(buf, pos + 2, len, getCharacterEncoding()));
+            T dec = custom.decodeField(decode(buf, pos + 2, len));
             return dec == null ? new IsoValue<>(type,
-					new String(buf, pos + 2, len, getCharacterEncoding()), null) :
+					decode(buf, pos + 2, len), null) :
                     new IsoValue<>(type, dec, custom);
 		}
 	}
 
+	@Override
+	public int measure(final int field, final byte[] buf, final int pos, final int limit)
+			throws ParseException, UnsupportedEncodingException {
+		checkSpan(field, pos, limit, 4);
+		final int len = decodeLength(buf, pos, 4);
+		if (len < 0) {
+			throw invalidLength(field, buf, pos, 4);
+		}
+		checkSpan(field, pos, limit, len + 4);
+		return textSpan(field, buf, pos + 4, limit, len) + 4;
+	}
+
+	@Override
+	public int measureBinary(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+		checkSpan(field, pos, limit, 2);
+		final int len = Bcd.parseBcdLength2bytes(buf, pos);
+		return checkSpan(field, pos, limit, len < 0 ? len : len + 2);
+	}
+
 }
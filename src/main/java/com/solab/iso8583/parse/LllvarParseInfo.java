@@ -20,6 +20,7 @@ package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
+import java.text.ParsePosition;
 
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
@@ -44,35 +45,39 @@ public class LllvarParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parse(final int field, final byte[] buf,
                              final int pos, final CustomField<T> custom)
 	throws ParseException, UnsupportedEncodingException {
+		return parse(field, buf, new ParsePosition(pos), buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final ParsePosition cursor,
+                             final int limit, final CustomField<T> custom)
+	throws ParseException, UnsupportedEncodingException {
+		final int pos = cursor.getIndex();
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid LLLVAR field %d pos %d",
                     field, pos), pos);
-		} else if (pos+3 > buf.length) {
+		} else if (pos+3 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for LLLVAR header field %d pos %d", field, pos), pos);
 		}
         final int len = decodeLength(buf, pos, 3);
 		if (len < 0) {
-            throw new ParseException(String.format("Invalid LLLVAR length %d(%s) field %d pos %d",
-                    len, new String(buf, pos, 3), field, pos), pos);
-		} else if (len+pos+3 > buf.length) {
+			throw invalidLength(field, buf, pos, 3);
+		} else if (len+pos+3 > limit) {
 			throw new ParseException(String.format("Insufficient data for LLLVAR field %d, pos %d len %d",
                     field, pos, len), pos);
 		}
-		String _v;
+		//With multi-byte encodings the characters can take up more bytes than the length says,
+		//so we find out how many bytes they take up before decoding exactly those
+		final int span = len == 0 ? 0 : textSpan(field, buf, pos + 3, limit, len);
+		final String _v;
         try {
-            _v = len == 0 ? "" : new String(buf, pos + 3, len, getCharacterEncoding());
+            _v = span == 0 ? "" : decode(buf, pos + 3, span);
         } catch (IndexOutOfBoundsException ex) {
             throw new ParseException(String.format(
                     "Insufficient data for LLLVAR header, field %d pos %d len %d", field, pos, len), pos);
         }
-		//This is new: if the String's length is different from the specified length in the
-		//buffer, there are probably some extended characters. So we create a String from
-		//the rest of the buffer, and then cut it to the specified length.
-		if (_v.length() != len) {
-			_v = new String(buf, pos + 3, buf.length-pos-3,
-					getCharacterEncoding()).substring(0, len);
-		}
+		cursor.setIndex(pos + 3 + span);
 		if (custom == null) {
 			return new IsoValue<>(type, _v, len, null);
 		} else {
@@ -86,9 +91,17 @@ public class LllvarParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf,
                                    final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
+		return parseBinary(field, buf, new ParsePosition(pos), buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final ParsePosition cursor,
+                                   final int limit, final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+		final int pos = cursor.getIndex();
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin LLLVAR field %d pos %d", field, pos), pos);
-		} else if (pos+2 > buf.length) {
+		} else if (pos+2 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLLVAR header, field %d pos %d", field, pos), pos);
 		}
@@ -96,21 +109,41 @@ public class LllvarParseInfo extends FieldParseInfo {
 		if (len < 0) {
 			throw new ParseException(String.format(
                     "Invalid bin LLLVAR length %d, field %d pos %d", len, field, pos), pos);
-		} else if (len+pos+2 > buf.length) {
+		} else if (len+pos+2 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLLVAR field %d, pos %d", field, pos), pos);
 		}
+		cursor.setIndex(pos + 2 + len);
 		if (custom == null) {
-			return new IsoValue<>(type, new String(buf, pos + 2, len, getCharacterEncoding()), null);
+			return new IsoValue<>(type, decode(buf, pos + 2, len), null);
 		} else {
 			IsoValue<T> v = new IsoValue<>(type, custom.decodeField(
-					new String(buf, pos + 2, len, getCharacterEncoding())), custom);
+					decode(buf, pos + 2, len)), custom);
 			if (v.getValue() == null) {
 				return new IsoValue<>(type,
-						new String(buf, pos + 2, len, getCharacterEncoding()), null);
+						decode(buf, pos + 2, len), null);
 			}
 			return v;
 		}
 	}
 
+	@Override
+	public int measure(final int field, final byte[] buf, final int pos, final int limit)
+			throws ParseException, UnsupportedEncodingException {
+		checkSpan(field, pos, limit, 3);
+		final int len = decodeLength(buf, pos, 3);
+		if (len < 0) {
+			throw invalidLength(field, buf, pos, 3);
+		}
+		checkSpan(field, pos, limit, len + 3);
+		return textSpan(field, buf, pos + 3, limit, len) + 3;
+	}
+
+	@Override
+	public int measureBinary(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+		checkSpan(field, pos, limit, 2);
+		final int len = ((buf[pos] & 0x0f) * 100) + Bcd.parseBcdLength(buf[pos + 1]);
+		return checkSpan(field, pos, limit, len < 0 ? len : len + 2);
+	}
+
 }
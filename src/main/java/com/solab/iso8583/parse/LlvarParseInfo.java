@@ -20,6 +20,7 @@ package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
+import java.text.ParsePosition;
 
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
@@ -54,38 +55,41 @@ public class LlvarParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parse(final int field, final byte[] buf,
                              final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
+		return parse(field, buf, new ParsePosition(pos), buf.length, custom);
+	}
+
+    @Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final ParsePosition cursor,
+                             final int limit, final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+		final int pos = cursor.getIndex();
 		if (pos < 0) {
 			throw new ParseException(String.format(
 					"Invalid LLVAR field %d %d", field, pos), pos);
-		} else if (pos+2 > buf.length) {
+		} else if (pos+2 > limit) {
 			throw new ParseException(String.format(
 					"Insufficient data for LLVAR header, pos %d", pos), pos);
 		}
 		final int len = decodeLength(buf, pos, 2);
 		if (len < 0) {
-			throw new ParseException(String.format(
-                    "Invalid LLVAR length %d, field %d pos %d", len, field, pos), pos);
-		} else if (len+pos+2 > buf.length) {
+			throw invalidLength(field, buf, pos, 2);
+		} else if (len+pos+2 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for LLVAR field %d, pos %d len %d",
                     field, pos, len), pos);
 		}
-		String _v;
+		//With multi-byte encodings the characters can take up more bytes than the length says,
+		//so we find out how many bytes they take up before decoding exactly those
+		final int span = len == 0 ? 0 : textSpan(field, buf, pos + 2, limit, len);
+		final String _v;
         try {
-            _v = len == 0 ? "" : new String(buf, pos + 2, len, getCharacterEncoding());
+            _v = span == 0 ? "" : decode(buf, pos + 2, span);
         } catch (IndexOutOfBoundsException ex) {
             throw new ParseException(String.format(
                     "Insufficient data for LLVAR header, field %d pos %d len %d",
                     field, pos, len), pos);
         }
-		//This is new: if the String's length is different from the specified
-		// length in the buffer, there are probably some extended characters.
-		// So we create a String from the rest of the buffer, and then cut it to
-		// the specified length.
-		if (_v.length() != len) {
-			_v = new String(buf, pos + 2, buf.length-pos-2,
-					getCharacterEncoding()).substring(0, len);
-		}
+		cursor.setIndex(pos + 2 + span);
 		if (custom == null) {
 			return new IsoValue<>(type, _v, len, null);
 		} else {
@@ -99,10 +103,18 @@ public class LlvarParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf,
                                    final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
+		return parseBinary(field, buf, new ParsePosition(pos), buf.length, custom);
+	}
+
+    @Override
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final ParsePosition cursor,
+                                   final int limit, final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+		final int pos = cursor.getIndex();
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin LLVAR field %d pos %d",
                     field, pos), pos);
-		} else if (pos+1 > buf.length) {
+		} else if (pos+1 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLVAR header, field %d pos %d",
 					field, pos), pos);
@@ -112,17 +124,17 @@ public class LlvarParseInfo extends FieldParseInfo {
 			throw new ParseException(String.format(
                     "Invalid bin LLVAR length %d, field %d pos %d", len, field, pos), pos);
 		}
-		if (len+pos+1 > buf.length) {
+		if (len+pos+1 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLVAR field %d, pos %d", field, pos), pos);
 		}
+		cursor.setIndex(pos + 1 + len);
 		if (custom == null) {
-			return new IsoValue<>(type, new String(buf, pos + 1, len,
-					getCharacterEncoding()), null);
+			return new IsoValue<>(type, decode(buf, pos + 1, len), null);
 		} else {
-            T dec = custom.decodeField(new String(buf, pos + 1, len, getCharacterEncoding()));
+            T dec = custom.decodeField(decode(buf, pos + 1, len));
             return dec == null ? new IsoValue<>(type,
-					new String(buf, pos + 1, len, getCharacterEncoding()), null) :
+					decode(buf, pos + 1, len), null) :
                     new IsoValue<>(type, dec, custom);
 		}
 	}
@@ -137,4 +149,23 @@ public class LlvarParseInfo extends FieldParseInfo {
 		return (((b & 0xf0) >> 4) * 10) + (b & 0x0f);
 	}
 
+	@Override
+	public int measure(final int field, final byte[] buf, final int pos, final int limit)
+			throws ParseException, UnsupportedEncodingException {
+		checkSpan(field, pos, limit, 2);
+		final int len = decodeLength(buf, pos, 2);
+		if (len < 0) {
+			throw invalidLength(field, buf, pos, 2);
+		}
+		checkSpan(field, pos, limit, len + 2);
+		return textSpan(field, buf, pos + 2, limit, len) + 2;
+	}
+
+	@Override
+	public int measureBinary(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+		checkSpan(field, pos, limit, 1);
+		final int len = getFieldLength(buf[pos]);
+		return checkSpan(field, pos, limit, len < 0 ? len : len + 1);
+	}
+
 }
@@ -18,13 +18,16 @@ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
 */
 package com.solab.iso8583.parse;
 
+import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
 import java.text.ParseException;
+import java.text.ParsePosition;
 
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
 import com.solab.iso8583.util.Bcd;
+import com.solab.iso8583.util.NumericCodec;
 
 /**
  * This class is used to parse NUMERIC fields.
@@ -42,6 +45,21 @@ public class NumericParseInfo extends AlphaNumericFieldParseInfo {
 		super(IsoType.NUMERIC, len);
 	}
 
+    @Override
+    public <T> IsoValue<?> parse(final int field, final byte[] buf, final ParsePosition cursor,
+                                 final int limit, final CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+        final int pos = cursor.getIndex();
+        if (hasAsciiDigits() && pos >= 0 && pos + length <= limit) {
+            final int bad = NumericCodec.indexOfNonDigit(buf, pos, length);
+            if (bad >= 0) {
+                throw new ParseException(String.format("Invalid digit in NUMERIC field %d pos %d",
+                        field, bad), bad);
+            }
+        }
+        return super.parse(field, buf, cursor, limit, custom);
+    }
+
     @Override
 	public <T> IsoValue<Number> parseBinary(final int field, final byte[] buf,
                                         final int pos, final CustomField<T> custom)
@@ -56,8 +74,13 @@ public class NumericParseInfo extends AlphaNumericFieldParseInfo {
 		}
 		//A long covers up to 18 digits
 		if (length < 19) {
-			return new IsoValue<Number>(IsoType.NUMERIC, Bcd.decodeToLong(buf, pos, length),
-                length, null);
+			final long v = NumericCodec.readBcd(buf, pos, length);
+			if (v < 0) {
+				final int bad = NumericCodec.indexOfNonBcd(buf, pos, (length / 2) + (length % 2));
+				throw new ParseException(String.format("Invalid BCD digit in NUMERIC field %d pos %d",
+                    field, bad), bad);
+			}
+			return new IsoValue<Number>(IsoType.NUMERIC, v, length, null);
 		} else {
 			//Use a BigInteger
             try {
@@ -71,4 +94,9 @@ public class NumericParseInfo extends AlphaNumericFieldParseInfo {
 		}
 	}
 
+    @Override
+    public int measureBinary(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+        return checkSpan(field, pos, limit, (length / 2) + (length % 2));
+    }
+
 }
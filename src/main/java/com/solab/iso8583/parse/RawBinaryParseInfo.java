@@ -41,4 +41,14 @@ public class RawBinaryParseInfo extends FieldParseInfo {
                     new IsoValue<>(type, dec, length, custom);
         }
     }
+
+    @Override
+    public int measure(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+        return checkSpan(field, pos, limit, length);
+    }
+
+    @Override
+    public int measureBinary(final int field, final byte[] buf, final int pos, final int limit) throws ParseException {
+        return checkSpan(field, pos, limit, length);
+    }
 }
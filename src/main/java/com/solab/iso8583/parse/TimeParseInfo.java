@@ -20,13 +20,14 @@ package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
-import java.util.Calendar;
+import java.time.ZoneId;
 import java.util.Date;
 
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
 import com.solab.iso8583.util.Bcd;
+import com.solab.iso8583.util.DateCodec;
 
 /**
  * This class is used to parse TIME fields.
@@ -54,17 +55,10 @@ public class TimeParseInfo extends DateTimeParseInfo {
 			throw new ParseException(String.format(
                     "Insufficient data for TIME field %d, pos %d", field, pos), pos);
 		}
-		Calendar cal = Calendar.getInstance();
-        if (forceStringDecoding) {
-            cal.set(Calendar.HOUR_OF_DAY, Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.MINUTE, Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.SECOND, Integer.parseInt(new String(buf, pos+4, 2, getCharacterEncoding()), 10));
-        } else {
-            cal.set(Calendar.HOUR_OF_DAY, ((buf[pos] - 48) * 10) + buf[pos + 1] - 48);
-            cal.set(Calendar.MINUTE, ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 48);
-            cal.set(Calendar.SECOND, ((buf[pos + 4] - 48) * 10) + buf[pos + 5] - 48);
-        }
-        return createValue(cal, false);
+		//The date is not in the buffer, so we use the current one
+		final DateCodec.Today today = DateCodec.today();
+		return createValue(today.getYear(), today.getMonth(), today.getDay(), parseDigits(buf, pos, 2),
+				parseDigits(buf, pos + 2, 2), parseDigits(buf, pos + 4, 2), false);
 	}
 
 	@Override
@@ -83,14 +77,9 @@ public class TimeParseInfo extends DateTimeParseInfo {
 		for (int i = pos; i < pos + 3; i++) {
 			tens[start++] = Bcd.parseBcdLength(buf[i]);
 		}
-		Calendar cal = Calendar.getInstance();
-		cal.set(Calendar.HOUR_OF_DAY, tens[0]);
-		cal.set(Calendar.MINUTE, tens[1]);
-		cal.set(Calendar.SECOND, tens[2]);
-        if (tz != null) {
-            cal.setTimeZone(tz);
-        }
-		return new IsoValue<Date>(type, cal.getTime(), null);
+		final DateCodec.Today today = DateCodec.today();
+		return new IsoValue<Date>(type, new Date(DateCodec.toEpochMillis(today.getYear(), today.getMonth(),
+				today.getDay(), tens[0], tens[1], tens[2], tz == null ? ZoneId.systemDefault() : tz.toZoneId())), null);
 	}
 
 }
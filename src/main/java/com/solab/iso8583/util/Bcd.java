@@ -44,15 +44,7 @@ public final class Bcd {
         if (length > 18) {
             throw new IndexOutOfBoundsException("Buffer too big to decode as long");
         }
-        long l = 0;
-        long power = 1L;
-        for (int i = pos + (length / 2) + (length % 2) - 1; i >= pos; i--) {
-            l += (buf[i] & 0x0f) * power;
-            power *= 10L;
-            l += ((buf[i] & 0xf0) >> 4) * power;
-            power *= 10L;
-        }
-        return l;
+        return NumericCodec.bcd(buf, pos, (length / 2) + (length % 2), false);
     }
 
     /**
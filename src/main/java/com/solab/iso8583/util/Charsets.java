@@ -0,0 +1,59 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583.util;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves character encoding names to Charset instances once, so that text can be encoded and
+ * decoded with the Charset itself instead of looking up its name every time. Decoding and
+ * encoding with the Charset of US-ASCII or ISO-8859-1 just copies the bytes, without creating
+ * a decoder or encoder.
+ */
+public final class Charsets {
+
+    private static final Map<String, Charset> CHARSETS = new ConcurrentHashMap<>();
+
+    private Charsets(){}
+
+    /**
+     * Returns the charset with the specified name.
+     *
+     * @param encoding the name of the character encoding
+     * @return the charset, or null if the name is null or the encoding is not supported
+     */
+    public static Charset lookup(String encoding) {
+        if (encoding == null) {
+            return null;
+        }
+        Charset cs = CHARSETS.get(encoding);
+        if (cs == null) {
+            try {
+                cs = Charset.forName(encoding);
+            } catch (IllegalArgumentException ex) {
+                return null;
+            }
+            CHARSETS.put(encoding, cs);
+        }
+        return cs;
+    }
+
+}
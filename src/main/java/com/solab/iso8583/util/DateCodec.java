@@ -0,0 +1,240 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583.util;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * Routines to convert the date and time fields of a message to and from epoch milliseconds,
+ * using integer arithmetic instead of a Calendar or a date format. Like a lenient Calendar, values out of
+ * range are carried over to the next unit (for example, February 30th is March 2nd).
+ * <p>
+ * Many date types don't include the year, so they need the current date as a reference;
+ * that is computed at most once per second and shared by all threads.
+ */
+public final class DateCodec {
+
+    private static volatile Today today;
+
+    private DateCodec(){}
+
+    /**
+     * Returns the number of days from 1970-01-01 to the specified date.
+     *
+     * @param year  the year
+     * @param month the month, from 1 to 12
+     * @param day   the day of the month
+     * @return the epoch day
+     */
+    public static long epochDay(int year, int month, int day) {
+        long y = year + Math.floorDiv(month - 1, 12);
+        final int m = Math.floorMod(month - 1, 12) + 1;
+        if (m <= 2) {
+            y--;
+        }
+        //Days since 0000-03-01, in 400 year eras of 146097 days
+        final long era = Math.floorDiv(y, 400);
+        final long yoe = y - era * 400;
+        final long doy = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5 + day - 1;
+        final long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * Returns the number of days in the specified month.
+     *
+     * @param year  the year
+     * @param month the month, from 1 to 12
+     * @return the length of the month
+     */
+    public static int monthLength(int year, int month) {
+        if (month == 2) {
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Converts a local date and time in the specified time zone to epoch milliseconds.
+     * Local times that are skipped by a daylight saving transition are moved forward,
+     * and local times that happen twice use the earlier offset.
+     *
+     * @param year   the year
+     * @param month  the month, from 1 to 12
+     * @param day    the day of the month
+     * @param hour   the hour of the day, from 0 to 23
+     * @param minute the minute
+     * @param second the second
+     * @param zone   the time zone
+     * @return the epoch millis
+     */
+    public static long toEpochMillis(int year, int month, int day, int hour, int minute, int second,
+                                     ZoneId zone) {
+        final long local = epochDay(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+        final ZoneRules rules = zone.getRules();
+        final ZoneOffset offset = rules.isFixedOffset() ? rules.getOffset(Instant.EPOCH)
+                : rules.getOffset(LocalDateTime.ofEpochSecond(local, 0, ZoneOffset.UTC));
+        return (local - offset.getTotalSeconds()) * 1000L;
+    }
+
+    /**
+     * Writes the local date and time of an instant in the specified time zone as ASCII
+     * digits, following a pattern made up of the letters used by SimpleDateFormat:
+     * {@code yyyy} or {@code yy} for the year, {@code MM} for the month, {@code dd} for
+     * the day, {@code HH} for the hour of the day, {@code mm} for the minutes and
+     * {@code ss} for the seconds.
+     *
+     * @param millis  the epoch millis
+     * @param zone    the time zone
+     * @param pattern the pattern
+     * @param dest    the array to write the digits to
+     * @param pos     the position of the first digit
+     * @return the position after the last digit
+     */
+    public static int writeDigits(long millis, ZoneId zone, String pattern, byte[] dest, int pos) {
+        final long epochSecond = Math.floorDiv(millis, 1000);
+        final ZoneRules rules = zone.getRules();
+        final ZoneOffset offset = rules.isFixedOffset() ? rules.getOffset(Instant.EPOCH)
+                : rules.getOffset(Instant.ofEpochSecond(epochSecond));
+        final long local = epochSecond + offset.getTotalSeconds();
+        final int secondOfDay = (int) Math.floorMod(local, 86400L);
+        //Civil date from the epoch day, in 400 year eras starting on March 1st
+        final long z = Math.floorDiv(local, 86400L) + 719468;
+        final long era = Math.floorDiv(z, 146097);
+        final long doe = z - era * 146097;
+        final long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        final long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        final long mp = (5 * doy + 2) / 153;
+        final int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        final int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        final int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+        int i = 0;
+        while (i < pattern.length()) {
+            final char c = pattern.charAt(i);
+            int n = 1;
+            while (i + n < pattern.length() && pattern.charAt(i + n) == c) {
+                n++;
+            }
+            final int value;
+            if (c == 'y') {
+                value = n == 2 ? Math.floorMod(year, 100) : year;
+            } else if (c == 'M') {
+                value = month;
+            } else if (c == 'd') {
+                value = day;
+            } else if (c == 'H') {
+                value = secondOfDay / 3600;
+            } else if (c == 'm') {
+                value = (secondOfDay / 60) % 60;
+            } else if (c == 's') {
+                value = secondOfDay % 60;
+            } else {
+                throw new IllegalArgumentException("Invalid date pattern " + pattern);
+            }
+            int v = value;
+            for (int k = pos + n - 1; k >= pos; k--) {
+                dest[k] = (byte) ('0' + v % 10);
+                v /= 10;
+            }
+            pos += n;
+            i += n;
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the current date in the default time zone. The value may be up to a second old.
+     *
+     * @return the date
+     */
+    public static Today today() {
+        final long now = System.currentTimeMillis();
+        final ZoneId zone = ZoneId.systemDefault();
+        Today t = today;
+        if (t == null || now >= t.expires || now < t.expires - 1000 || !zone.equals(t.zone)) {
+            t = new Today(now, zone);
+            today = t;
+        }
+        return t;
+    }
+
+    /**
+     * The current date, as a reference for the date types that don't include all of its fields.
+     */
+    public static final class Today {
+        private final ZoneId zone;
+        private final long expires;
+        private final int year;
+        private final int month;
+        private final int day;
+        private final boolean afternoon;
+
+        private Today(long now, ZoneId zone) {
+            this.zone = zone;
+            //Valid until the end of the current second
+            expires = now - Math.floorMod(now, 1000) + 1000;
+            final LocalDateTime ldt = LocalDateTime.ofInstant(Instant.ofEpochMilli(now), zone);
+            year = ldt.getYear();
+            month = ldt.getMonthValue();
+            day = ldt.getDayOfMonth();
+            afternoon = ldt.getHour() >= 12;
+        }
+
+        /**
+         * Returns the year.
+         *
+         * @return the year
+         */
+        public int getYear() {
+            return year;
+        }
+
+        /**
+         * Returns the month, from 1 to 12.
+         *
+         * @return the month
+         */
+        public int getMonth() {
+            return month;
+        }
+
+        /**
+         * Returns the day of the month.
+         *
+         * @return the day
+         */
+        public int getDay() {
+            return day;
+        }
+
+        /**
+         * Returns true if the current time is after noon.
+         *
+         * @return the boolean
+         */
+        public boolean isAfternoon() {
+            return afternoon;
+        }
+    }
+
+}
@@ -18,6 +18,8 @@
  */
 package com.solab.iso8583.util;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Utility class to perform HEX encoding/decoding of values.
  *
@@ -29,6 +31,18 @@ public final class HexCodec {
      * The Hex.
      */
     static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    /** The ASCII hex digits. */
+    private static final byte[] HEX_BYTES = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    /** The value of each byte as a hex digit; other bytes keep their own value, the same as
+     * {@link #hexDecode(String)} does with other characters. */
+    private static final byte[] NIBBLES = new byte[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            final int d = b < 128 ? Character.digit(b, 16) : -1;
+            NIBBLES[b] = (byte) (d < 0 ? b : d);
+        }
+    }
 
     private HexCodec(){}
 
@@ -56,6 +70,24 @@ public final class HexCodec {
 		return new String(chars);
 	}
 
+    /**
+     * Encodes bytes as ASCII hex digits into the specified array, without creating a String.
+     *
+     * @param buffer the bytes to encode
+     * @param start  the position of the first byte to encode
+     * @param length the number of bytes to encode
+     * @param dest   the array to write the digits to, which needs room for twice the length
+     * @param pos    the position of the first digit
+     * @return the position after the last digit
+     */
+    public static int hexEncode(byte[] buffer, int start, int length, byte[] dest, int pos) {
+        for (int i = start; i < start + length; i++) {
+            dest[pos++] = HEX_BYTES[(buffer[i] & 0xf0) >> 4];
+            dest[pos++] = HEX_BYTES[buffer[i] & 0x0f];
+        }
+        return pos;
+    }
+
     /**
      * Hex decode byte [ ].
      *
@@ -102,4 +134,40 @@ public final class HexCodec {
 		return buf;
 	}
 
+    /**
+     * Decodes ASCII hex digits straight from a byte array, without creating a String.
+     * Like {@link #hexDecode(String)}, an odd number of digits is decoded as if it had a leading zero.
+     *
+     * @param buf the array with the digits
+     * @param pos the position of the first digit
+     * @param len the number of digits
+     * @return the decoded bytes
+     */
+    public static byte[] hexDecode(byte[] buf, int pos, int len) {
+        final byte[] dest = new byte[(len / 2) + (len % 2)];
+        hexDecode(buf, pos, len, dest, 0);
+        return dest;
+    }
+
+    /**
+     * Decodes ASCII hex digits from a byte array into another one.
+     *
+     * @param buf  the array with the digits
+     * @param pos  the position of the first digit
+     * @param len  the number of digits
+     * @param dest the array to write the decoded bytes to
+     * @param dpos the position of the first decoded byte
+     * @return the position after the last decoded byte
+     */
+    public static int hexDecode(byte[] buf, int pos, int len, byte[] dest, int dpos) {
+        int i = pos;
+        if (len % 2 != 0) {
+            dest[dpos++] = NIBBLES[buf[i++] & 0xff];
+        }
+        for (; i < pos + len; i += 2) {
+            dest[dpos++] = (byte) ((NIBBLES[buf[i] & 0xff] << 4) | NIBBLES[buf[i + 1] & 0xff]);
+        }
+        return dpos;
+    }
+
 }
@@ -0,0 +1,244 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Routines to write non-negative numbers as a fixed number of decimal digits, zero-filled
+ * to the left, either as ASCII characters or as BCD, straight into a byte array, and to read
+ * them back. Digits are read eight bytes at a time where possible: each word is validated
+ * and converted with a few mask and multiply operations instead of a loop over its bytes.
+ */
+public final class NumericCodec {
+
+    private static final long[] POWERS = new long[19];
+    /** Reads 8 bytes of an array as a big-endian long, so the first digit ends up in the highest byte. */
+    private static final VarHandle WORDS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final long ZEROS = 0x3030303030303030L;
+    private static final long HIGH_NIBBLES = 0xf0f0f0f0f0f0f0f0L;
+    private static final long LOW_NIBBLES = 0x0f0f0f0f0f0f0f0fL;
+    private static final long LOW_BYTES = 0x00ff00ff00ff00ffL;
+    private static final long LOW_SHORTS = 0x0000ffff0000ffffL;
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+    }
+
+    private NumericCodec(){}
+
+    /**
+     * Returns true if the value is not negative and can be written with the specified
+     * number of digits.
+     *
+     * @param value  the value
+     * @param digits the number of digits
+     * @return the boolean
+     */
+    public static boolean fits(long value, int digits) {
+        return value >= 0 && (digits >= POWERS.length || value < POWERS[digits]);
+    }
+
+    /**
+     * Writes the value as ASCII digits, zero-filled to the left.
+     *
+     * @param value  the value; must not be negative
+     * @param digits the number of digits to write
+     * @param dest   the array to write the digits to
+     * @param pos    the position of the first digit
+     * @return the position after the last digit
+     * @throws IllegalArgumentException if the value doesn't fit in that many digits
+     */
+    public static int writeAscii(long value, int digits, byte[] dest, int pos) {
+        if (!fits(value, digits)) {
+            throw new IllegalArgumentException("Numeric value does not fit in " + digits + " digits: " + value);
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            dest[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+
+    /**
+     * Writes the value as BCD, zero-filled to the left. When the number of digits is odd,
+     * the first nibble is 0.
+     *
+     * @param value  the value; must not be negative
+     * @param digits the number of digits to write
+     * @param dest   the array to write the BCD data to
+     * @param pos    the position of the first byte
+     * @return the position after the last byte
+     * @throws IllegalArgumentException if the value doesn't fit in that many digits
+     */
+    public static int writeBcd(long value, int digits, byte[] dest, int pos) {
+        if (!fits(value, digits)) {
+            throw new IllegalArgumentException("Numeric value does not fit in " + digits + " digits: " + value);
+        }
+        final int end = pos + (digits / 2) + (digits % 2);
+        for (int i = end - 1; i >= pos; i--) {
+            final int lo = (int) (value % 10);
+            value /= 10;
+            dest[i] = (byte) (((value % 10) << 4) | lo);
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Reads a number written as ASCII digits.
+     *
+     * @param buf    the array with the digits
+     * @param pos    the position of the first digit
+     * @param digits the number of digits, up to 18
+     * @return the number, or -1 if any of the bytes is not an ASCII digit
+     * @throws IllegalArgumentException if there are more than 18 digits
+     */
+    public static long readAscii(byte[] buf, int pos, int digits) {
+        checkDigits(digits);
+        final int end = pos + digits;
+        int i = pos;
+        long v = 0;
+        for (; i < pos + (digits % 8); i++) {
+            final int d = buf[i] - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            v = v * 10 + d;
+        }
+        for (; i < end; i += 8) {
+            final long w = (long) WORDS.get(buf, i);
+            if (!isAscii(w)) {
+                return -1;
+            }
+            v = v * 100000000L + asciiWord(w);
+        }
+        return v;
+    }
+
+    /**
+     * Returns the position of the first byte that is not an ASCII digit.
+     *
+     * @param buf the array
+     * @param pos the position of the first byte to check
+     * @param len the number of bytes to check
+     * @return the position, or -1 if all of them are digits
+     */
+    public static int indexOfNonDigit(byte[] buf, int pos, int len) {
+        final int end = pos + len;
+        int i = pos;
+        while (i + 8 <= end && isAscii((long) WORDS.get(buf, i))) {
+            i += 8;
+        }
+        for (; i < end; i++) {
+            if (buf[i] < '0' || buf[i] > '9') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a number written as BCD, left-padded with a zero nibble if the number of digits is odd.
+     *
+     * @param buf    the array with the digits
+     * @param pos    the position of the first byte
+     * @param digits the number of digits, up to 18
+     * @return the number, or -1 if any of the nibbles is not a decimal digit
+     * @throws IllegalArgumentException if there are more than 18 digits
+     */
+    public static long readBcd(byte[] buf, int pos, int digits) {
+        checkDigits(digits);
+        return bcd(buf, pos, (digits / 2) + (digits % 2), true);
+    }
+
+    /**
+     * Returns the position of the first byte with a nibble that is not a decimal digit.
+     *
+     * @param buf the array
+     * @param pos the position of the first byte to check
+     * @param len the number of bytes to check
+     * @return the position, or -1 if all of them are BCD digits
+     */
+    public static int indexOfNonBcd(byte[] buf, int pos, int len) {
+        for (int i = pos; i < pos + len; i++) {
+            if ((buf[i] & 0xf0) > 0x90 || (buf[i] & 0x0f) > 9) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Converts the bytes of a BCD number. Without validation, nibbles over 9 are added with their
+     * value, the same as the number is computed nibble by nibble.
+     */
+    static long bcd(byte[] buf, int pos, int len, boolean validate) {
+        final int end = pos + len;
+        int i = pos;
+        long v = 0;
+        for (; i < pos + (len % 8); i++) {
+            final int hi = (buf[i] & 0xf0) >> 4;
+            final int lo = buf[i] & 0x0f;
+            if (validate && (hi > 9 || lo > 9)) {
+                return -1;
+            }
+            v = v * 100 + hi * 10 + lo;
+        }
+        for (; i < end; i += 8) {
+            final long w = (long) WORDS.get(buf, i);
+            if (validate && (w & 0x8888888888888888L & ((w & 0x4444444444444444L) << 1
+                    | (w & 0x2222222222222222L) << 2)) != 0) {
+                return -1;
+            }
+            //Combine pairs of nibbles, then bytes, shorts and ints, each lane still fitting its width
+            long d = ((w >>> 4) & LOW_NIBBLES) * 10 + (w & LOW_NIBBLES);
+            d = ((d >>> 8) & LOW_BYTES) * 100 + (d & LOW_BYTES);
+            d = ((d >>> 16) & LOW_SHORTS) * 10000 + (d & LOW_SHORTS);
+            v = v * 10000000000000000L + (d >>> 32) * 100000000L + (d & 0xffffffffL);
+        }
+        return v;
+    }
+
+    /** Returns true if the 8 bytes of the word are ASCII digits. */
+    private static boolean isAscii(long w) {
+        //Adding 6 to a digit keeps its high nibble at 3, adding it to : through ? doesn't
+        return (w & HIGH_NIBBLES) == ZEROS && ((w + 0x0606060606060606L) & HIGH_NIBBLES) == ZEROS;
+    }
+
+    /** Converts 8 ASCII digits to their value. */
+    private static long asciiWord(long w) {
+        long d = w - ZEROS;
+        d = ((d >>> 8) & LOW_BYTES) * 10 + (d & LOW_BYTES);
+        d = ((d >>> 16) & LOW_SHORTS) * 100 + (d & LOW_SHORTS);
+        return (d >>> 32) * 10000 + (d & 0xffffffffL);
+    }
+
+    private static void checkDigits(int digits) {
+        if (digits > 18) {
+            throw new IllegalArgumentException("Too many digits to read as long: " + digits);
+        }
+    }
+
+}
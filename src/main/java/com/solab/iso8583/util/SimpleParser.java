@@ -19,7 +19,6 @@
 package com.solab.iso8583.util;
 
 import com.solab.iso8583.IsoMessage;
-import com.solab.iso8583.IsoValue;
 import com.solab.iso8583.MessageFactory;
 import com.solab.iso8583.parse.ConfigParser;
 
@@ -77,14 +76,11 @@ public class SimpleParser {
             if (m != null) {
                 System.out.printf("Message type: %04x%n", m.getType());
                 System.out.println("FIELD TYPE    VALUE");
-                for (int i = 2; i <= 128; i++) {
-                    IsoValue<?> f = m.getField(i);
-                    if (f != null) {
-                        System.out.printf("%5d %-7s (%4d) [", i, f.getType(), f.getLength());
-                        System.out.print(f.toString());
-                        System.out.println(']');
-                    }
-                }
+                m.forEachField((i, f) -> {
+                    System.out.printf("%5d %-7s (%4d) [", i, f.getType(), f.getLength());
+                    System.out.print(f.toString());
+                    System.out.println(']');
+                });
             }
             line = getMessage();
         }
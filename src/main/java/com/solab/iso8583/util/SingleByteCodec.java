@@ -0,0 +1,177 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583.util;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Translates text in a single-byte character encoding, such as the EBCDIC code pages used by
+ * IBM hosts (Cp1047, Cp037, etc), through 256-entry tables that are built once per charset.
+ * This avoids creating a decoder or encoder for every field, and allows digits to be read
+ * and written straight from the bytes, like they are with ASCII.
+ */
+public final class SingleByteCodec {
+
+    private static final Map<Charset, SingleByteCodec> CODECS = new ConcurrentHashMap<>();
+    /** Stored for the charsets that can't be translated through tables. */
+    private static final SingleByteCodec NONE = new SingleByteCodec(null, null, null);
+
+    private final Charset charset;
+    /** The character for each byte. */
+    private final char[] chars;
+    /** The byte for each character up to 255, or the replacement byte if it can't be encoded. */
+    private final byte[] bytes;
+    /** The value of each byte as a hex digit, or -1 if it's not a digit. */
+    private final byte[] digits = new byte[256];
+
+    private SingleByteCodec(Charset charset, char[] chars, byte[] bytes) {
+        this.charset = charset;
+        this.chars = chars;
+        this.bytes = bytes;
+        for (int b = 0; chars != null && b < 256; b++) {
+            digits[b] = (byte) Character.digit(chars[b] < 128 ? chars[b] : -1, 16);
+        }
+    }
+
+    /**
+     * Returns the codec for the specified charset.
+     *
+     * @param cs the charset
+     * @return the codec, or null if the charset is null or doesn't encode every character as
+     * one byte. US-ASCII and ISO-8859-1 have no codec, since the JDK already copies their bytes.
+     */
+    public static SingleByteCodec forCharset(Charset cs) {
+        if (cs == null) {
+            return null;
+        }
+        final SingleByteCodec codec = CODECS.computeIfAbsent(cs, SingleByteCodec::create);
+        return codec == NONE ? null : codec;
+    }
+
+    private static SingleByteCodec create(Charset cs) {
+        if (StandardCharsets.US_ASCII.equals(cs) || StandardCharsets.ISO_8859_1.equals(cs)
+                || !cs.canEncode() || cs.newEncoder().maxBytesPerChar() != 1.0f
+                || cs.newDecoder().maxCharsPerByte() != 1.0f) {
+            return NONE;
+        }
+        final byte[] all = new byte[256];
+        final char[] latin = new char[256];
+        for (int i = 0; i < 256; i++) {
+            all[i] = (byte) i;
+            latin[i] = (char) i;
+        }
+        final char[] chars = new String(all, cs).toCharArray();
+        final byte[] bytes = new String(latin).getBytes(cs);
+        if (chars.length != 256 || bytes.length != 256) {
+            return NONE;
+        }
+        return new SingleByteCodec(cs, chars, bytes);
+    }
+
+    /**
+     * Decodes text from the buffer.
+     *
+     * @param buf the buffer
+     * @param pos the position of the text
+     * @param len the number of bytes
+     * @return the text
+     */
+    public String decode(byte[] buf, int pos, int len) {
+        final char[] c = new char[len];
+        for (int i = 0; i < len; i++) {
+            c[i] = chars[buf[pos + i] & 0xff];
+        }
+        return new String(c);
+    }
+
+    /**
+     * Encodes text; characters that can't be encoded are replaced, the same as
+     * {@link String#getBytes(Charset)} does.
+     *
+     * @param s the text
+     * @return the bytes
+     */
+    public byte[] encode(String s) {
+        final int len = s.length();
+        final byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) {
+            final char c = s.charAt(i);
+            if (c > 255) {
+                //Some single-byte charsets have characters beyond Latin-1
+                return s.getBytes(charset);
+            }
+            b[i] = bytes[c];
+        }
+        return b;
+    }
+
+    /**
+     * Translates ASCII text, such as digits or a hex bitmap, to this encoding, in place.
+     *
+     * @param buf the buffer with the ASCII text
+     * @param pos the position of the text
+     * @param len the number of bytes
+     */
+    public void fromAscii(byte[] buf, int pos, int len) {
+        for (int i = pos; i < pos + len; i++) {
+            buf[i] = bytes[buf[i] & 0x7f];
+        }
+    }
+
+    /**
+     * Translates text in this encoding to ASCII. Characters outside ASCII are translated as '?'.
+     *
+     * @param src  the buffer with the text
+     * @param pos  the position of the text
+     * @param dest the buffer to write the ASCII text to
+     * @param dpos the position to write to
+     * @param len  the number of bytes
+     */
+    public void toAscii(byte[] src, int pos, byte[] dest, int dpos, int len) {
+        for (int i = 0; i < len; i++) {
+            final char c = chars[src[pos + i] & 0xff];
+            dest[dpos + i] = (byte) (c < 128 ? c : '?');
+        }
+    }
+
+    /**
+     * Reads a number from its digits in the buffer.
+     *
+     * @param buf   the buffer
+     * @param pos   the position of the first digit
+     * @param len   the number of digits, which must not be more than 7
+     * @param radix 10 or 16
+     * @return the number, or -1 if any of the bytes is not a digit in that radix
+     */
+    public int parseDigits(byte[] buf, int pos, int len, int radix) {
+        int v = 0;
+        for (int i = pos; i < pos + len; i++) {
+            final int d = digits[buf[i] & 0xff];
+            if (d < 0 || d >= radix) {
+                return -1;
+            }
+            v = v * radix + d;
+        }
+        return v;
+    }
+
+}
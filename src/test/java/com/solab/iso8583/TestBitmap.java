@@ -0,0 +1,89 @@
+package com.solab.iso8583;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/** Tests that the bitmap follows the fields set in a message. */
+class TestBitmap {
+
+	private String asciiBitmap(IsoMessage m) {
+		final String data = new String(m.writeData(), StandardCharsets.US_ASCII);
+		return data.substring(4, m.hasAnyField(65, 70, 100, 128) ? 36 : 20);
+	}
+
+	@Test
+	void testFieldChanges() {
+		IsoMessage m = new IsoMessage();
+		m.setType(0x200);
+		m.setValue(2, "1", IsoType.LLVAR, 0);
+		m.setValue(64, "X", IsoType.ALPHA, 1);
+		Assertions.assertEquals("4000000000000001", asciiBitmap(m));
+		m.setValue(65, "Y", IsoType.ALPHA, 1);
+		m.setValue(128, "Z", IsoType.ALPHA, 1);
+		Assertions.assertEquals("C0000000000000018000000000000001", asciiBitmap(m));
+		m.removeFields(65, 128);
+		Assertions.assertEquals("4000000000000001", asciiBitmap(m));
+		m.setValue(2, null, IsoType.LLVAR, 0);
+		m.setField(64, null);
+		Assertions.assertEquals("0000000000000000", asciiBitmap(m));
+		Assertions.assertFalse(m.hasField(0));
+		Assertions.assertFalse(m.hasField(1));
+	}
+
+	@Test
+	void testFieldIteration() {
+		IsoMessage m = new IsoMessage();
+		Assertions.assertEquals(-1, m.nextSetField(2));
+		final int[] present = { 2, 63, 64, 65, 127, 128, 129, 191, 192 };
+		for (int f : present) {
+			m.setValue(f, "X", IsoType.ALPHA, 1);
+		}
+		final List<Integer> visited = new ArrayList<>();
+		m.forEachField((i, v) -> {
+			Assertions.assertSame(m.getField(i), v);
+			visited.add(i);
+		});
+		Assertions.assertEquals(Arrays.stream(present).boxed().toList(), visited);
+		Assertions.assertEquals(2, m.nextSetField(0));
+		Assertions.assertEquals(63, m.nextSetField(3));
+		Assertions.assertEquals(129, m.nextSetField(129));
+		Assertions.assertEquals(191, m.nextSetField(130));
+		Assertions.assertEquals(-1, m.nextSetField(193));
+		m.removeFields(191, 192);
+		Assertions.assertEquals(-1, m.nextSetField(130));
+	}
+
+	@Test
+	void testBitSets() {
+		IsoMessage m = new IsoMessage();
+		m.setValue(3, "1", IsoType.ALPHA, 1);
+		m.setValue(100, "1", IsoType.ALPHA, 1);
+		m.setValue(130, "1", IsoType.ALPHA, 1);
+		final BitSet bs = m.createBitmapBitSet();
+		Assertions.assertEquals(128, bs.size());
+		Assertions.assertEquals("{0, 2, 99}", bs.toString());
+		Assertions.assertEquals("{1}", m.createTertiaryBitSet().toString());
+	}
+
+	@Test
+	void testParseBitmap() throws Exception {
+		MessageFactory<IsoMessage> mf = new MessageFactory<>();
+		mf.setConfigPath("config.xml");
+		final byte[] buf = mf.newMessage(0x200).writeData();
+		final int hlen = mf.getIsoHeader(0x200).length();
+		IsoMessage m = mf.parseMessage(buf, hlen);
+		Assertions.assertArrayEquals(buf, m.writeData());
+		buf[hlen + 6] = 'G';
+		Assertions.assertThrows(ParseException.class, () -> mf.parseMessage(buf, hlen));
+		buf[hlen + 6] = 'a';
+		Assertions.assertThrows(ParseException.class, () -> mf.parseMessage(buf, hlen), "Field 9 has no parsing guide");
+	}
+
+}
@@ -0,0 +1,117 @@
+package com.solab.iso8583;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+/** Tests that messages with compact storage behave the same as the ones with full storage. */
+class TestCompactStorage {
+
+	private MessageFactory<IsoMessage> mf;
+
+	@BeforeEach
+	void init() throws IOException {
+		mf = new MessageFactory<>();
+		mf.setCharacterEncoding("UTF-8");
+		mf.setCustomField(48, new CustomField48());
+		mf.setConfigPath("config.xml");
+	}
+
+	private IsoMessage fill(IsoMessage m) {
+		m.setValue(102, "ABC", IsoType.LLVAR, 0);
+		m.setValue(41, "TERMINAL", IsoType.ALPHA, 16);
+		m.setValue(4, 12345, IsoType.AMOUNT, 0);
+		m.setValue(3, "650000", IsoType.NUMERIC, 6);
+		m.setValue(32, "XYZ", IsoType.LLVAR, 0);
+		return m;
+	}
+
+	private static void assertSameFields(IsoMessage expected, IsoMessage m) {
+		for (int i = 2; i <= IsoMessage.MAX_AMOUNT_OF_FIELDS; i++) {
+			Assertions.assertEquals(expected.hasField(i), m.hasField(i), "field " + i);
+			if (expected.hasField(i)) {
+				Assertions.assertEquals(expected.getField(i).toString(), m.getField(i).toString(), "field " + i);
+			} else {
+				Assertions.assertNull(m.getField(i), "field " + i);
+			}
+		}
+		Assertions.assertArrayEquals(expected.writeData(), m.writeData());
+	}
+
+	@Test
+	void testSetAndRemove() {
+		IsoMessage full = fill(mf.newMessage(0x200));
+		mf.setCompactStorage(true);
+		Assertions.assertTrue(mf.isCompactStorage());
+		IsoMessage compact = fill(mf.newMessage(0x200));
+		Assertions.assertTrue(compact.isCompactStorage());
+		assertSameFields(full, compact);
+		//Replace, remove and add fields in different positions
+		full.setValue(41, "OTHER", IsoType.ALPHA, 16);
+		compact.setValue(41, "OTHER", IsoType.ALPHA, 16);
+		full.removeFields(4, 102, 11);
+		compact.removeFields(4, 102, 11);
+		assertSameFields(full, compact);
+		full.setValue(2, "1234", IsoType.LLVAR, 0);
+		compact.setValue(2, "1234", IsoType.LLVAR, 0);
+		full.setValue(192, "END", IsoType.LLVAR, 0);
+		compact.setValue(192, "END", IsoType.LLVAR, 0);
+		assertSameFields(full, compact);
+		compact.reset();
+		Assertions.assertTrue(compact.isCompactStorage());
+		Assertions.assertArrayEquals(new IsoMessage().writeData(), compact.writeData());
+	}
+
+	@Test
+	void testChangeStorage() {
+		IsoMessage full = fill(mf.newMessage(0x200));
+		IsoMessage m = fill(mf.newMessage(0x200));
+		m.setCompactStorage(true);
+		assertSameFields(full, m);
+		m.setCompactStorage(false);
+		Assertions.assertFalse(m.isCompactStorage());
+		assertSameFields(full, m);
+		IsoMessage empty = new IsoMessage();
+		empty.setCompactStorage(true);
+		Assertions.assertNull(empty.getField(3));
+		empty.setCompactStorage(false);
+		Assertions.assertNull(empty.getField(3));
+	}
+
+	@Test
+	void testParseAndRespond() throws ParseException, IOException {
+		final byte[] buf = fill(mf.newMessage(0x200)).writeData();
+		final int hlen = mf.getIsoHeader(0x200).length();
+		IsoMessage full = mf.parseMessage(buf, hlen);
+		mf.setCompactStorage(true);
+		IsoMessage compact = mf.parseMessage(buf, hlen);
+		Assertions.assertTrue(compact.isCompactStorage());
+		assertSameFields(full, compact);
+		mf.setCompactStorage(false);
+		IsoMessage fullResp = mf.createResponse(full);
+		mf.setCompactStorage(true);
+		IsoMessage compactResp = mf.createResponse(compact);
+		Assertions.assertTrue(compactResp.isCompactStorage());
+		assertSameFields(fullResp, compactResp);
+	}
+
+	@Test
+	void testLazyParsing() throws ParseException, IOException {
+		final byte[] buf = fill(mf.newMessage(0x200)).writeData();
+		final int hlen = mf.getIsoHeader(0x200).length();
+		IsoMessage full = mf.parseMessage(buf, hlen);
+		mf.setCompactStorage(true);
+		mf.setUseLazyParsing(true);
+		IsoMessage compact = mf.parseMessage(buf, hlen);
+		//Decode fields out of order, set others among the undecoded ones
+		Assertions.assertEquals((Object) full.getObjectValue(41), compact.getObjectValue(41));
+		compact.setValue(5, 1, IsoType.AMOUNT, 0);
+		full.setValue(5, 1, IsoType.AMOUNT, 0);
+		Assertions.assertArrayEquals(full.writeData(), compact.writeData());
+		assertSameFields(full, compact);
+	}
+
+}
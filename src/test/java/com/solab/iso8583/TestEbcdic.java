@@ -176,4 +176,36 @@ class TestEbcdic {
         Assertions.assertEquals("800", iso.getObjectValue(39));
     }
 
+    @Test
+    void testMessageRoundTrip() throws IOException, ParseException {
+        final IsoMessage msg = new IsoMessage();
+        msg.setCharacterEncoding("Cp1047");
+        msg.setForceStringEncoding(true);
+        msg.setType(0x200);
+        msg.setValue(3, 650000, IsoType.NUMERIC, 6);
+        msg.setValue(4, new BigDecimal("1234.56"), IsoType.AMOUNT, 0);
+        msg.setValue(41, "TERM \u00f1", IsoType.ALPHA, 8);
+        msg.setValue(63, "Testing, testing, 123", IsoType.LLLVAR, 0);
+        final byte[] enc = msg.writeData();
+        final String ascii = "0200" + "3000000000800002" + "650000" + "000000123456" + "TERM \u00f1  "
+                + "021Testing, testing, 123";
+        Assertions.assertArrayEquals(ascii.getBytes("Cp1047"), enc);
+        Assertions.assertEquals(enc.length, msg.encodedSize(0));
+        MessageFactory<IsoMessage> mf = new MessageFactory<>();
+        HashMap<Integer, FieldParseInfo> pmap = new HashMap<>();
+        pmap.put(3, new NumericParseInfo(6));
+        pmap.put(4, new AmountParseInfo());
+        pmap.put(41, new AlphaParseInfo(8));
+        pmap.put(63, new LllvarParseInfo());
+        mf.setParseMap(0x200, pmap);
+        mf.setForceStringEncoding(true);
+        mf.setCharacterEncoding("Cp1047");
+        final IsoMessage m2 = mf.parseMessage(enc, 0);
+        Assertions.assertEquals(0x200, m2.getType());
+        Assertions.assertEquals("650000", m2.getObjectValue(3));
+        Assertions.assertEquals(new BigDecimal("1234.56"), m2.getObjectValue(4));
+        Assertions.assertEquals("TERM \u00f1  ", m2.getObjectValue(41));
+        Assertions.assertEquals("Testing, testing, 123", m2.getObjectValue(63));
+    }
+
 }
@@ -0,0 +1,135 @@
+package com.solab.iso8583;
+
+import com.solab.iso8583.parse.FieldParseInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Tests the immutable snapshots of the configuration of a MessageFactory. */
+class TestFactorySnapshot {
+
+	private MessageFactory<IsoMessage> mf;
+
+	@BeforeEach
+	void init() throws IOException {
+		mf = new MessageFactory<>();
+		mf.setCharacterEncoding("UTF-8");
+		mf.setCustomField(48, new CustomField48());
+		mf.setConfigPath("config.xml");
+	}
+
+	@Test
+	void testSameAsFactory() throws ParseException, IOException {
+		final MessageFactorySnapshot<IsoMessage> snap = mf.snapshot();
+		Assertions.assertSame(snap, mf.snapshot());
+		final IsoMessage m = snap.newMessage(0x200);
+		Assertions.assertArrayEquals(mf.newMessage(0x200).writeData(), m.writeData());
+		final byte[] buf = m.writeData();
+		final int hlen = mf.getIsoHeader(0x200).length();
+		Assertions.assertEquals(mf.parseMessage(buf, hlen).debugString(),
+				snap.parseMessage(buf, 0, buf.length, hlen, false).debugString());
+		Assertions.assertArrayEquals(mf.createResponse(m).writeData(), snap.createResponse(m, true).writeData());
+		//Changing any setting discards the snapshot
+		mf.setEtx(3);
+		Assertions.assertNotSame(snap, mf.snapshot());
+	}
+
+	@Test
+	void testReconfiguration() throws ParseException, IOException {
+		final MessageFactorySnapshot<IsoMessage> snap = mf.snapshot();
+		final byte[] buf = mf.newMessage(0x200).writeData();
+		final int hlen = mf.getIsoHeader(0x200).length();
+		final String parsed = snap.parseMessage(buf, 0, buf.length, hlen, false).debugString();
+		final String header = mf.getIsoHeader(0x200);
+		mf.setIsoHeader(0x200, "XYZ");
+		mf.removeMessageTemplate(0x200);
+		mf.setParseMap(0x200, new HashMap<>());
+		//The old snapshot still works like the factory used to
+		Assertions.assertEquals(header, snap.newMessage(0x200).getIsoHeader());
+		Assertions.assertTrue(snap.newMessage(0x200).hasField(3));
+		Assertions.assertEquals(parsed, snap.parseMessage(buf, 0, buf.length, hlen, false).debugString());
+		//And the factory uses the new configuration
+		Assertions.assertEquals("XYZ", mf.newMessage(0x200).getIsoHeader());
+		Assertions.assertFalse(mf.newMessage(0x200).hasField(3));
+		Assertions.assertThrows(ParseException.class, () -> mf.parseMessage(buf, hlen));
+	}
+
+	@Test
+	void testParserSettings() throws ParseException, IOException {
+		final IsoMessage m = mf.newMessage(0x200);
+		m.setValue(60, "ñandú", IsoType.LLLVAR, 0);
+		final byte[] buf = m.writeData();
+		final int hlen = mf.getIsoHeader(0x200).length();
+		final MessageFactorySnapshot<IsoMessage> snap = mf.snapshot();
+		mf.setCharacterEncoding("ISO-8859-1");
+		//The factory reads the text as one byte per character, so the following fields are off
+		Assertions.assertThrows(ParseException.class, () -> mf.parseMessage(buf, hlen));
+		mf.setForceStringEncoding(true);
+		mf.setVariableLengthFieldsInHex(true);
+		//The snapshot still parses with the settings it was taken with
+		Assertions.assertEquals("ñandú", snap.parseMessage(buf, 0, buf.length, hlen, false).getObjectValue(60));
+	}
+
+	@Test
+	void testUnknownTypes() {
+		final MessageFactorySnapshot<IsoMessage> snap = mf.snapshot();
+		final byte[] buf = "ISO0150000000000000000000000000".getBytes();
+		Assertions.assertThrows(ParseException.class, () -> snap.parseMessage(buf, 0, buf.length, 12, false));
+		Assertions.assertNull(snap.newMessage(0x10200).getIsoHeader());
+		Assertions.assertNull(snap.newMessage(-1).getIsoHeader());
+		Map<Integer, FieldParseInfo> guide = new HashMap<>();
+		guide.put(3, FieldParseInfo.getInstance(IsoType.NUMERIC, 6, "UTF-8"));
+		mf.setParseMap(0xffff, guide);
+		mf.setIsoHeader(0xffff, "LAST");
+		Assertions.assertEquals("LAST", mf.snapshot().newMessage(0xffff).getIsoHeader());
+	}
+
+	@Test
+	void testTypeTable() {
+		Map<Integer, String> values = new HashMap<>();
+		values.put(0, "zero");
+		values.put(0x200, "0200");
+		values.put(0xffff, "ffff");
+		values.put(0x10000, "too big");
+		values.put(-1, "negative");
+		TypeTable<String> table = new TypeTable<>(values);
+		Assertions.assertEquals("zero", table.get(0));
+		Assertions.assertEquals("0200", table.get(0x200));
+		Assertions.assertEquals("ffff", table.get(0xffff));
+		Assertions.assertNull(table.get(0x210));
+		Assertions.assertNull(table.get(0x1200));
+		Assertions.assertNull(table.get(0x10000));
+		Assertions.assertNull(table.get(-1));
+	}
+
+	@Test
+	void testSharedByThreads() throws Exception {
+		final MessageFactorySnapshot<IsoMessage> snap = mf.snapshot();
+		final byte[] buf = mf.newMessage(0x200).writeData();
+		final int hlen = mf.getIsoHeader(0x200).length();
+		final String expected = mf.parseMessage(buf, hlen).debugString();
+		final ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				results.add(pool.submit(() -> snap.parseMessage(buf, 0, buf.length, hlen, false).debugString()));
+			}
+			for (Future<String> f : results) {
+				Assertions.assertEquals(expected, f.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
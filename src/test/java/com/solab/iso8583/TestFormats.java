@@ -3,7 +3,10 @@ package com.solab.iso8583;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TimeZone;
 
@@ -49,6 +52,28 @@ class TestFormats {
         Assertions.assertEquals("19730126043456", IsoType.DATE14.format(date, gmt));
     }
 
+    @Test
+    void testDateFormatsLikeSimpleDateFormat() {
+        final IsoType[] types = { IsoType.DATE10, IsoType.DATE4, IsoType.DATE_EXP, IsoType.TIME,
+                IsoType.DATE12, IsoType.DATE14, IsoType.DATE6 };
+        final TimeZone[] zones = { TimeZone.getTimeZone("America/Mexico_City"),
+                TimeZone.getTimeZone("Europe/London"), TimeZone.getTimeZone("Asia/Kolkata") };
+        for (long t = -2000000000000L; t < 4000000000000L; t += 7777777777L) {
+            final Date d = new Date(t);
+            for (TimeZone tz : zones) {
+                for (IsoType type : types) {
+                    final SimpleDateFormat sdf = new SimpleDateFormat(type.getDatePattern());
+                    sdf.setTimeZone(tz);
+                    Assertions.assertEquals(sdf.format(d), type.format(d, tz), type + " " + t);
+                }
+            }
+        }
+        final byte[] buf = "xxxxxxxx".getBytes();
+        Assertions.assertEquals(6, IsoType.DATE4.format(date, TimeZone.getTimeZone("GMT"), buf, 2));
+        Assertions.assertEquals("xx0126xx", new String(buf));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> IsoType.NUMERIC.format(date, null));
+    }
+
     @Test
     void testNumericFormats() {
         Assertions.assertEquals("000123", IsoType.NUMERIC.format(123, 6));
@@ -56,6 +81,24 @@ class TestFormats {
         Assertions.assertEquals("000001234500", IsoType.AMOUNT.format(12345, 0));
         Assertions.assertEquals("000001234567", IsoType.AMOUNT.format(new BigDecimal("12345.67"), 0));
         Assertions.assertEquals("000000123456", IsoType.AMOUNT.format("1234.56", 0));
+        Assertions.assertEquals("-00123", IsoType.NUMERIC.format(-123, 6));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> IsoType.NUMERIC.format(1234567, 6));
+        final byte[] buf = "xxxxxxxxxxxxxx".getBytes();
+        Assertions.assertEquals(13, IsoType.AMOUNT.format(12345, 0, buf, 1));
+        Assertions.assertEquals("x000001234500x", new String(buf));
+    }
+
+    @Test
+    void testNumericWrite() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        new IsoValue<>(IsoType.NUMERIC, 123L, 5).write(bout, false, false);
+        new IsoValue<>(IsoType.AMOUNT, new BigDecimal("12345.67")).write(bout, false, false);
+        new IsoValue<>(IsoType.AMOUNT, 15).write(bout, false, false);
+        Assertions.assertEquals("00123000001234567000000001500", bout.toString());
+        bout.reset();
+        new IsoValue<>(IsoType.NUMERIC, 123L, 5).write(bout, true, false);
+        new IsoValue<>(IsoType.AMOUNT, new BigDecimal("12345.67")).write(bout, true, false);
+        Assertions.assertArrayEquals(new byte[]{ 0, 1, 0x23, 0, 0, 1, 0x23, 0x45, 0x67 }, bout.toByteArray());
     }
 
     @Test
@@ -6,11 +6,13 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import jakarta.xml.bind.DatatypeConverter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.ParseException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.TimeZone;
 
 /** These are very simple tests for creating and manipulating messages.
  *
@@ -129,6 +131,27 @@ class TestIsoMessage {
         Assertions.assertEquals(cf48_2.getValue2(), origv + 1000);
 	}
 
+    @Test
+    void testSharedValues() {
+        IsoMessage iso1 = mf.newMessage(0x200);
+        IsoMessage iso2 = mf.newMessage(0x200);
+        //Values taken from a message can be modified without affecting other messages
+        iso1.getField(3).setCharacterEncoding("ISO-8859-1");
+        iso1.getField(49).setTimeZone(TimeZone.getTimeZone("GMT+0100"));
+        Assertions.assertSame(iso1.getField(3), iso1.getField(3));
+        Assertions.assertEquals("ISO-8859-1", iso1.getField(3).getCharacterEncoding());
+        Assertions.assertEquals("UTF-8", iso2.getField(3).getCharacterEncoding());
+        Assertions.assertNotEquals(iso1.getField(49).getTimeZone(), iso2.getField(49).getTimeZone());
+        Assertions.assertEquals("UTF-8", mf.newMessage(0x200).getField(3).getCharacterEncoding());
+        //The same goes for the values a response shares with its request
+        iso2.setValue(11, 123, IsoType.NUMERIC, 6);
+        IsoMessage resp = mf.createResponse(iso2);
+        Assertions.assertSame(iso2.peekField(11), resp.peekField(11));
+        Assertions.assertSame(iso2.peekField(3), resp.peekField(3));
+        iso2.getField(11).setCharacterEncoding("ISO-8859-1");
+        Assertions.assertEquals("UTF-8", resp.getField(11).getCharacterEncoding());
+    }
+
     @Test
     void testSimpleFieldSetter() {
         IsoMessage iso = mf.newMessage(0x200);
@@ -221,6 +244,30 @@ class TestIsoMessage {
         Assertions.assertThrows(IllegalArgumentException.class, () -> mf.setSensitiveFields(null));
     }
 
+    @Test
+    void testFrozenTemplates() throws IOException {
+        final IsoMessage before = mf.newMessage(0x200);
+        before.setValue(41, "TERMINAL", IsoType.ALPHA, 8);
+        mf.freeze();
+        final IsoMessage after = mf.newMessage(0x200);
+        after.setValue(41, "TERMINAL", IsoType.ALPHA, 8);
+        Assertions.assertArrayEquals(before.writeData(), after.writeData());
+        Assertions.assertEquals(before.encodedSize(2), after.encodedSize(2));
+        //Pre-encoded fields are encoded again if they're written differently
+        before.setCharacterEncoding("ISO-8859-1");
+        after.setCharacterEncoding("ISO-8859-1");
+        before.setBinary(true);
+        after.setBinary(true);
+        Assertions.assertArrayEquals(before.writeData(), after.writeData());
+        final IsoMessage other = mf.newMessage(0x200);
+        other.setCharacterEncoding("UTF-16");
+        other.setField(43, new IsoValue<>(other.getField(43)));
+        Assertions.assertEquals(40, other.getField(43).getLength());
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        other.getField(43).write(bout, false, false);
+        Assertions.assertArrayEquals(other.getField(43).toString().getBytes("UTF-16"), bout.toByteArray());
+    }
+
     @Test
     void testUnsafeRawMessageLoggingFlagDefaultsToFalse() {
         Assertions.assertFalse(mf.isUnsafeNonPciDssCompliantRawMessageLoggingEnabled());
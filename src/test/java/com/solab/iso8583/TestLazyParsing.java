@@ -0,0 +1,143 @@
+package com.solab.iso8583;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Tests for the lazy parsing mode, where fields are only decoded when requested. */
+class TestLazyParsing {
+
+	private MessageFactory<IsoMessage> mf;
+	private final AtomicInteger decoded = new AtomicInteger();
+
+	@BeforeEach
+	void init() throws IOException {
+		mf = new MessageFactory<>();
+		mf.setCharacterEncoding("UTF-8");
+		mf.setCustomField(48, new CustomField48() {
+			@Override
+			public CustomField48 decodeField(String value) {
+				decoded.incrementAndGet();
+				return super.decodeField(value);
+			}
+		});
+		mf.setConfigPath("config.xml");
+	}
+
+	private void assertSameFields(IsoMessage expected, IsoMessage actual) {
+		Assertions.assertEquals(expected.getType(), actual.getType());
+		for (int i = 2; i <= IsoMessage.MAX_AMOUNT_OF_FIELDS; i++) {
+			Assertions.assertEquals(expected.hasField(i), actual.hasField(i), "Field " + i);
+			if (expected.hasField(i)) {
+				Assertions.assertEquals(expected.getField(i).getType(), actual.getField(i).getType(), "Field " + i);
+				Assertions.assertEquals(expected.getField(i).toString(), actual.getField(i).toString(), "Field " + i);
+			}
+		}
+	}
+
+	@Test
+	void testTextMessage() throws Exception {
+		final byte[] buf = mf.newMessage(0x200).writeData();
+		final int hlen = mf.getIsoHeader(0x200).length();
+		IsoMessage eager = mf.parseMessage(buf, hlen);
+		mf.setUseLazyParsing(true);
+		IsoMessage lazy = mf.parseMessage(buf, hlen);
+		Assertions.assertArrayEquals(buf, lazy.writeData());
+		assertSameFields(eager, lazy);
+		Assertions.assertArrayEquals(buf, lazy.writeData());
+	}
+
+	@Test
+	void testBinaryMessage() throws Exception {
+		mf.setUseBinaryMessages(true);
+		IsoMessage m = mf.newMessage(0x200);
+		m.setValue(61, "Only ASCII in binary messages", IsoType.LLLVAR, 0);
+		final byte[] buf = m.writeData();
+		final int hlen = mf.getIsoHeader(0x200).length();
+		IsoMessage eager = mf.parseMessage(buf, hlen);
+		mf.setUseLazyParsing(true);
+		IsoMessage lazy = mf.parseMessage(buf, hlen);
+		Assertions.assertArrayEquals(buf, lazy.writeData());
+		assertSameFields(eager, lazy);
+	}
+
+	@Test
+	void testExtendedCharacters() throws Exception {
+		final byte[] buf;
+		try (InputStream ins = getClass().getResourceAsStream("/parse1.txt")) {
+			buf = ins.readAllBytes();
+		}
+		final int hlen = mf.getIsoHeader(0x210).length();
+		IsoMessage eager = mf.parseMessage(buf, hlen);
+		mf.setUseLazyParsing(true);
+		IsoMessage lazy = mf.parseMessage(buf, hlen);
+		Assertions.assertArrayEquals(eager.writeData(), lazy.writeData());
+		assertSameFields(eager, lazy);
+	}
+
+	@Test
+	void testDecodeOnDemand() throws Exception {
+		final byte[] buf = mf.newMessage(0x200).writeData();
+		mf.setUseLazyParsing(true);
+		decoded.set(0);
+		IsoMessage m = mf.parseMessage(buf, mf.getIsoHeader(0x200).length());
+		Assertions.assertTrue(m.hasField(48));
+		Assertions.assertEquals(0, decoded.get());
+		Assertions.assertArrayEquals(buf, m.writeData());
+		Assertions.assertEquals(0, decoded.get());
+		CustomField48 cf = m.getObjectValue(48);
+		Assertions.assertEquals(42, cf.getValue2());
+		Assertions.assertEquals(1, decoded.get());
+		Assertions.assertSame(cf, m.getObjectValue(48));
+		Assertions.assertEquals(1, decoded.get());
+	}
+
+	@Test
+	void testModifyFields() throws Exception {
+		final byte[] buf = mf.newMessage(0x200).writeData();
+		final int hlen = mf.getIsoHeader(0x200).length();
+		mf.setUseLazyParsing(true);
+		IsoMessage m = mf.parseMessage(buf, hlen);
+		m.removeFields(35, 100);
+		m.setValue(102, "XYZ", IsoType.LLVAR, 0);
+		Assertions.assertFalse(m.hasField(35));
+		Assertions.assertFalse(m.hasField(100));
+		Assertions.assertNull(m.getField(35));
+
+		mf.setUseLazyParsing(false);
+		IsoMessage m2 = mf.parseMessage(m.writeData(), hlen);
+		Assertions.assertFalse(m2.hasField(35));
+		Assertions.assertFalse(m2.hasField(100));
+		Assertions.assertEquals("XYZ", m2.getObjectValue(102));
+		Assertions.assertEquals((String) m.getObjectValue(61), m2.getObjectValue(61));
+	}
+
+	@Test
+	void testReencode() throws Exception {
+		final byte[] buf = mf.newMessage(0x200).writeData();
+		final int hlen = mf.getIsoHeader(0x200).length();
+		IsoMessage eager = mf.parseMessage(buf, hlen);
+		eager.setBinaryFields(true);
+		mf.setUseLazyParsing(true);
+		IsoMessage lazy = mf.parseMessage(buf, hlen);
+		lazy.setBinaryFields(true);
+		Assertions.assertArrayEquals(eager.writeData(), lazy.writeData());
+	}
+
+	@Test
+	void testInvalidValue() throws Exception {
+		mf.setUseLazyParsing(true);
+		IsoMessage m = mf.parseMessage("060002000000000000000125213456".getBytes(), 0);
+		Assertions.assertTrue(m.hasField(7));
+		Assertions.assertEquals("0125213456", m.getField(7).toString());
+
+		IsoMessage bad = mf.parseMessage("0600100000000000000000000000AB00".getBytes(), 0);
+		Assertions.assertTrue(bad.hasField(4));
+		Assertions.assertThrows(IllegalStateException.class, () -> bad.getField(4));
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.solab.iso8583;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+/** Tests resetting messages and using them again through the pool of the factory. */
+class TestMessagePool {
+
+	private MessageFactory<IsoMessage> mf;
+
+	@BeforeEach
+	void init() throws IOException {
+		mf = new MessageFactory<>();
+		mf.setCharacterEncoding("UTF-8");
+		mf.setCustomField(48, new CustomField48());
+		mf.setConfigPath("config.xml");
+		mf.setEtx(3);
+		mf.setMessagePoolSize(64);
+	}
+
+	@Test
+	void testReset() {
+		IsoMessage m = mf.newMessage(0x200);
+		m.setValue(130, "ABC", IsoType.LLVAR, 0);
+		m.setBinary(true);
+		m.reset();
+		Assertions.assertEquals(0, m.getType());
+		Assertions.assertFalse(m.isBinaryHeader());
+		Assertions.assertNull(m.getIsoHeader());
+		for (int i = 2; i <= IsoMessage.MAX_AMOUNT_OF_FIELDS; i++) {
+			Assertions.assertFalse(m.hasField(i));
+			Assertions.assertNull(m.getField(i));
+		}
+		Assertions.assertArrayEquals(new IsoMessage().writeData(), m.writeData());
+	}
+
+	@Test
+	void testAcquireAndRelease() {
+		IsoMessage m = mf.acquire(0x200);
+		m.setValue(41, "TERMINAL", IsoType.ALPHA, 8);
+		mf.release(m);
+		IsoMessage again = mf.acquire(0x210);
+		Assertions.assertSame(m, again);
+		Assertions.assertFalse(again.hasField(41));
+		Assertions.assertArrayEquals(mf.newMessage(0x210).writeData(), again.writeData());
+		//The header of the new type is used
+		mf.release(again);
+		Assertions.assertEquals(mf.newMessage(0x200).getIsoHeader(), mf.acquire(0x200).getIsoHeader());
+	}
+
+	@Test
+	void testDisabledByDefault() {
+		MessageFactory<IsoMessage> plain = new MessageFactory<>();
+		Assertions.assertEquals(0, plain.getMessagePoolSize());
+		IsoMessage m = plain.acquire(0x200);
+		plain.release(m);
+		Assertions.assertNotSame(m, plain.acquire(0x200));
+	}
+
+	@Test
+	void testPoolSize() {
+		mf.setMessagePoolSize(1);
+		Assertions.assertEquals(1, mf.getMessagePoolSize());
+		IsoMessage m1 = mf.acquire(0x200);
+		IsoMessage m2 = mf.acquire(0x200);
+		mf.release(m1);
+		mf.release(m2);
+		Assertions.assertSame(m1, mf.acquire(0x200));
+		Assertions.assertNotSame(m2, mf.acquire(0x200));
+		mf.setMessagePoolSize(0);
+		mf.release(m1);
+		Assertions.assertNotSame(m1, mf.acquire(0x200));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> mf.setMessagePoolSize(-1));
+	}
+
+	@Test
+	void testReleaseTwice() {
+		IsoMessage m = mf.acquire(0x200);
+		mf.release(m);
+		mf.release(m);
+		IsoMessage m1 = mf.acquire(0x200);
+		IsoMessage m2 = mf.acquire(0x200);
+		Assertions.assertSame(m, m1);
+		Assertions.assertNotSame(m1, m2);
+		//It can be released again once it's been acquired
+		mf.release(m1);
+		Assertions.assertSame(m1, mf.acquire(0x200));
+	}
+
+	@Test
+	void testParseMessageInto() throws ParseException, IOException {
+		IsoMessage src = mf.newMessage(0x200);
+		src.setValue(4, 12345, IsoType.AMOUNT, 0);
+		final byte[] buf = src.writeData();
+		final int hlen = src.getIsoHeader().length();
+		IsoMessage expected = mf.parseMessage(buf, hlen);
+		IsoMessage target = mf.acquire(0x400);
+		target.setValue(70, "301", IsoType.NUMERIC, 3);
+		Assertions.assertSame(target, mf.parseMessageInto(target, buf, 0, buf.length, hlen, false));
+		Assertions.assertFalse(target.hasField(70));
+		Assertions.assertEquals(expected.getType(), target.getType());
+		Assertions.assertEquals(expected.getIsoHeader(), target.getIsoHeader());
+		Assertions.assertEquals(expected.debugString(), target.debugString());
+	}
+
+}
@@ -0,0 +1,138 @@
+package com.solab.iso8583;
+
+import com.solab.iso8583.parse.BinaryParseInfo;
+import com.solab.iso8583.parse.FieldParseInfo;
+import com.solab.iso8583.parse.LllvarParseInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Tests parsing messages that are only part of a larger buffer. */
+class TestParseOffsets {
+
+	private MessageFactory<IsoMessage> mf;
+	private byte[] msg;
+	private int hlen;
+
+	@BeforeEach
+	void init() throws IOException {
+		mf = new MessageFactory<>();
+		mf.setCharacterEncoding("UTF-8");
+		mf.setCustomField(48, new CustomField48());
+		mf.setConfigPath("config.xml");
+		msg = mf.newMessage(0x200).writeData();
+		hlen = mf.getIsoHeader(0x200).length();
+	}
+
+	/** Returns the message surrounded by some other data. */
+	private byte[] embed(byte[] data, int before, int after) {
+		final byte[] buf = new byte[before + data.length + after];
+		Arrays.fill(buf, (byte) '9');
+		System.arraycopy(data, 0, buf, before, data.length);
+		return buf;
+	}
+
+	@Test
+	void testOffsetAndLength() throws Exception {
+		final byte[] buf = embed(msg, 7, 11);
+		IsoMessage m = mf.parseMessage(buf, 7, msg.length, hlen, false);
+		Assertions.assertEquals(0x200, m.getType());
+		Assertions.assertEquals(mf.getIsoHeader(0x200), m.getIsoHeader());
+		Assertions.assertArrayEquals(msg, m.writeData());
+
+		mf.setUseLazyParsing(true);
+		m = mf.parseMessage(buf, 7, msg.length, hlen, false);
+		Assertions.assertArrayEquals(msg, m.writeData());
+	}
+
+	@Test
+	void testBinaryOffsetAndLength() throws Exception {
+		mf.setUseBinaryMessages(true);
+		IsoMessage orig = mf.newMessage(0x200);
+		orig.setValue(61, "Only ASCII in binary messages", IsoType.LLLVAR, 0);
+		final byte[] data = orig.writeData();
+		final byte[] buf = embed(data, 3, 5);
+		IsoMessage m = mf.parseMessage(buf, 3, data.length, hlen, false);
+		Assertions.assertArrayEquals(data, m.writeData());
+	}
+
+	@Test
+	void testFieldBeyondLength() {
+		final byte[] buf = embed(msg, 7, 11);
+		Assertions.assertThrows(ParseException.class,
+				() -> mf.parseMessage(buf, 7, msg.length - 1, hlen, false));
+		mf.setUseLazyParsing(true);
+		Assertions.assertThrows(ParseException.class,
+				() -> mf.parseMessage(buf, 7, msg.length - 1, hlen, false));
+		Assertions.assertThrows(IndexOutOfBoundsException.class,
+				() -> mf.parseMessage(buf, 7, buf.length, hlen, false));
+	}
+
+	@Test
+	void testNothingDecodedBeyondLength() throws Exception {
+		final MessageFactory<IsoMessage> factory = new MessageFactory<>();
+		final int[] decoded = new int[1];
+		final Map<Integer, FieldParseInfo> guide = new HashMap<>();
+		//A parser that relies on the default implementation to measure the field before parsing it
+		guide.put(41, new BinaryParseInfo(4) {
+			@Override
+			public <T> IsoValue<?> parse(int field, byte[] buf, int pos, CustomField<T> custom)
+					throws ParseException, UnsupportedEncodingException {
+				decoded[0]++;
+				return super.parse(field, buf, pos, custom);
+			}
+		});
+		guide.put(61, new LllvarParseInfo());
+		factory.setParseMap(0x200, guide);
+		factory.setCustomField(61, new CustomField<String>() {
+			@Override
+			public String decodeField(String value) {
+				decoded[0]++;
+				return value;
+			}
+			@Override
+			public String encodeField(String value) {
+				return value;
+			}
+		});
+		final IsoMessage m = factory.newMessage(0x200);
+		m.setValue(41, new byte[]{ 1, 2, 3, 4 }, IsoType.BINARY, 4);
+		m.setValue(61, "Data after the frame", IsoType.LLLVAR, 0);
+		final byte[] data = m.writeData();
+		final byte[] buf = embed(data, 0, 5);
+		Assertions.assertEquals(m.debugString(), factory.parseMessage(buf, 0, data.length, 0, false).debugString());
+		Assertions.assertEquals(2, decoded[0]);
+		//The buffer has enough data for the last field, but the frame doesn't
+		Assertions.assertThrows(ParseException.class, () -> factory.parseMessage(buf, 0, data.length - 3, 0, false));
+		Assertions.assertEquals(3, decoded[0]);
+		Assertions.assertThrows(ParseException.class, () -> factory.parseMessage(buf, 0, data.length - 26, 0, false));
+		Assertions.assertEquals(3, decoded[0]);
+	}
+
+	@Test
+	void testHeapByteBuffer() throws Exception {
+		final ByteBuffer buf = ByteBuffer.wrap(embed(msg, 7, 11), 2, msg.length + 12).slice();
+		buf.position(5).limit(5 + msg.length);
+		IsoMessage m = mf.parseMessage(buf, hlen, false);
+		Assertions.assertArrayEquals(msg, m.writeData());
+		Assertions.assertEquals(5, buf.position());
+	}
+
+	@Test
+	void testDirectByteBuffer() throws Exception {
+		final ByteBuffer buf = ByteBuffer.allocateDirect(msg.length + 20);
+		buf.put(embed(msg, 4, 16)).position(4).limit(4 + msg.length);
+		IsoMessage m = mf.parseMessage(buf, hlen, false);
+		Assertions.assertArrayEquals(msg, m.writeData());
+		Assertions.assertEquals(4, buf.position());
+	}
+
+}
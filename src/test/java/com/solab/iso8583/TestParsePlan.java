@@ -0,0 +1,77 @@
+package com.solab.iso8583;
+
+import com.solab.iso8583.parse.FieldParseInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Tests that the compiled parsing guides follow changes to the factory's configuration. */
+class TestParsePlan {
+
+	private MessageFactory<IsoMessage> mf;
+
+	@BeforeEach
+	void init() throws IOException {
+		mf = new MessageFactory<>();
+		mf.setCharacterEncoding("UTF-8");
+		mf.setCustomField(48, new CustomField48());
+		mf.setConfigPath("config.xml");
+	}
+
+	@Test
+	void testFrozenFactory() throws Exception {
+		final byte[] buf = mf.newMessage(0x200).writeData();
+		final int hlen = mf.getIsoHeader(0x200).length();
+		IsoMessage m1 = mf.parseMessage(buf, hlen);
+		mf.freeze();
+		IsoMessage m2 = mf.parseMessage(buf, hlen);
+		Assertions.assertArrayEquals(buf, m2.writeData());
+		for (int i = 2; i <= IsoMessage.MAX_AMOUNT_OF_FIELDS; i++) {
+			Assertions.assertEquals(m1.hasField(i), m2.hasField(i), "Field " + i);
+		}
+		Assertions.assertInstanceOf(CustomField48.class, m2.getObjectValue(48));
+	}
+
+	@Test
+	void testChangeSettings() throws Exception {
+		final int hlen = mf.getIsoHeader(0x200).length();
+		IsoMessage m = mf.newMessage(0x200);
+		m.setValue(61, "Only ASCII in binary messages", IsoType.LLLVAR, 0);
+		final byte[] text = m.writeData();
+		Assertions.assertArrayEquals(text, mf.parseMessage(text, hlen).writeData());
+		mf.setUseBinaryMessages(true);
+		m.setBinary(true);
+		final byte[] bin = m.writeData();
+		Assertions.assertArrayEquals(bin, mf.parseMessage(bin, hlen).writeData());
+		mf.setUseBinaryMessages(false);
+		Assertions.assertArrayEquals(text, mf.parseMessage(text, hlen).writeData());
+	}
+
+	@Test
+	void testChangeGuides() throws Exception {
+		final byte[] buf = "060002000000000000000125213456".getBytes();
+		Assertions.assertEquals(IsoType.DATE10, mf.parseMessage(buf, 0).getField(7).getType());
+
+		Map<Integer, FieldParseInfo> guide = new HashMap<>();
+		guide.put(7, FieldParseInfo.getInstance(IsoType.NUMERIC, 10, "UTF-8"));
+		mf.setParseMap(0x600, guide);
+		Assertions.assertEquals(IsoType.NUMERIC, mf.parseMessage(buf, 0).getField(7).getType());
+
+		mf.setCustomField(7, new CustomField<String>() {
+			@Override
+			public String decodeField(String value) {
+				return "x" + value;
+			}
+			@Override
+			public String encodeField(String value) {
+				return value.substring(1);
+			}
+		});
+		Assertions.assertEquals("x0125213456", mf.parseMessage(buf, 0).getObjectValue(7));
+	}
+
+}
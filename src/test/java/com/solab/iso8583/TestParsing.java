@@ -1,5 +1,8 @@
 package com.solab.iso8583;
 
+import com.solab.iso8583.parse.LlbinParseInfo;
+import com.solab.iso8583.parse.LllvarParseInfo;
+import com.solab.iso8583.parse.LlllvarParseInfo;
 import com.solab.iso8583.parse.NumericParseInfo;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -146,6 +149,34 @@ class TestParsing {
         Assertions.assertEquals(123456, val.getValue().intValue());
     }
 
+    @Test
+    void testInvalidDigits() throws ParseException, UnsupportedEncodingException {
+        NumericParseInfo npi = new NumericParseInfo(10);
+        npi.setCharacterEncoding("UTF-8");
+        Assertions.assertEquals("0123456789", npi.parse(0, "x0123456789".getBytes(), 1, null).getValue());
+        ParseException ex = Assertions.assertThrows(ParseException.class,
+                () -> npi.parse(0, "x01234567B9".getBytes(), 1, null));
+        Assertions.assertEquals(9, ex.getErrorOffset());
+        ex = Assertions.assertThrows(ParseException.class,
+                () -> npi.parseBinary(0, new byte[]{ 0x01, 0x23, 0x4f, 0x67, (byte) 0x89 }, 0, null));
+        Assertions.assertEquals(2, ex.getErrorOffset());
+        LllvarParseInfo lllvar = new LllvarParseInfo();
+        lllvar.setCharacterEncoding("UTF-8");
+        ex = Assertions.assertThrows(ParseException.class,
+                () -> lllvar.parse(7, "xx0:2ABCDEFGHIJKLMNOPQRSTUVWXYZ".getBytes(), 2, null));
+        Assertions.assertEquals(3, ex.getErrorOffset());
+        Assertions.assertTrue(ex.getMessage().contains("pos 3"), ex.getMessage());
+        ex = Assertions.assertThrows(ParseException.class,
+                () -> lllvar.measure(7, "xx0:2ABC".getBytes(), 2, 8));
+        Assertions.assertEquals(3, ex.getErrorOffset());
+        ex = Assertions.assertThrows(ParseException.class,
+                () -> new LlbinParseInfo().parse(7, "x1-ABCDEF".getBytes(), 1, null));
+        Assertions.assertEquals(2, ex.getErrorOffset());
+        ex = Assertions.assertThrows(ParseException.class,
+                () -> new LlllvarParseInfo().measure(7, "003 ABC".getBytes(), 0, 7));
+        Assertions.assertEquals(3, ex.getErrorOffset());
+    }
+
     @Test
     void testDates() throws ParseException, UnsupportedEncodingException {
 		com.solab.iso8583.parse.DateTimeParseInfo.setDefaultTimeZone(TimeZone.getTimeZone("GMT-0700"));
@@ -197,5 +228,25 @@ class TestParsing {
         Assertions.assertTrue(r.hasField(7));
         Assertions.assertTrue(m.getField(7) != r.getField(7));
         Assertions.assertEquals(TimeZone.getTimeZone("UTC"), r.getField(7).getTimeZone());
+        //The request's values can still be modified, without affecting the response
+        m.getField(7).setTimeZone(TimeZone.getTimeZone("GMT+0100"));
+        m.getField(7).setCharacterEncoding("ISO-8859-1");
+        Assertions.assertEquals(TimeZone.getTimeZone("UTC"), r.getField(7).getTimeZone());
     }
+
+	/** Fields after a variable-length field with multi-byte characters must be parsed from the right position. */
+	@Test
+	void testMultibyteFieldPositions() throws Exception {
+		final String text = "Niño € 😀 fin";
+		IsoMessage m = mf.newMessage(0x200);
+		m.setValue(60, text, IsoType.LLLVAR, 0);
+		m.setValue(100, "áéí", IsoType.LLVAR, 0);
+		final int hlen = mf.getIsoHeader(0x200).length();
+		IsoMessage p = mf.parseMessage(m.writeData(), hlen);
+		Assertions.assertEquals(text, p.getObjectValue(60));
+		Assertions.assertEquals(m.getObjectValue(61).toString(), p.getObjectValue(61));
+		Assertions.assertEquals("áéí", p.getObjectValue(100));
+		Assertions.assertEquals("ABCD", p.getObjectValue(102));
+	}
+
 }
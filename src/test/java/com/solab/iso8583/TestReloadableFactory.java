@@ -0,0 +1,92 @@
+package com.solab.iso8583;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/** Tests reloading the configuration of a factory from a file. */
+class TestReloadableFactory {
+
+	@TempDir
+	Path dir;
+
+	private static String config(String header, String terminal) {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<j8583-config>\n"
+				+ "<header type=\"0800\">" + header + "</header>\n"
+				+ "<template type=\"0800\">\n"
+				+ "<field num=\"3\" type=\"NUMERIC\" length=\"6\">990000</field>\n"
+				+ "<field num=\"41\" type=\"ALPHA\" length=\"8\">" + terminal + "</field>\n"
+				+ "</template>\n<parse type=\"0800\">\n"
+				+ "<field num=\"3\" type=\"NUMERIC\" length=\"6\" />\n"
+				+ "<field num=\"41\" type=\"ALPHA\" length=\"8\" />\n"
+				+ "</parse>\n</j8583-config>\n";
+	}
+
+	private Path write(String xml) throws IOException {
+		return Files.write(dir.resolve("j8583.xml"), xml.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static ReloadableMessageFactory<IsoMessage> create(Path file) throws IOException {
+		return new ReloadableMessageFactory<>(file, () -> {
+			MessageFactory<IsoMessage> mf = new MessageFactory<>();
+			mf.setCharacterEncoding("UTF-8");
+			return mf;
+		});
+	}
+
+	@Test
+	void testReload() throws IOException, ParseException {
+		final Path file = write(config("ISO1", "TERM1"));
+		try (ReloadableMessageFactory<IsoMessage> holder = create(file)) {
+			final MessageFactorySnapshot<IsoMessage> old = holder.get();
+			final byte[] buf = old.newMessage(0x800).writeData();
+			Assertions.assertEquals("TERM1", old.newMessage(0x800).getObjectValue(41));
+			write(config("ISO2", "TERM2"));
+			holder.reload();
+			Assertions.assertNotSame(old, holder.get());
+			Assertions.assertEquals("ISO2", holder.get().newMessage(0x800).getIsoHeader());
+			Assertions.assertEquals("TERM2", holder.get().newMessage(0x800).getObjectValue(41));
+			//The old configuration can still be used
+			Assertions.assertEquals("TERM1   ", old.parseMessage(buf, 0, buf.length, 4, false).getObjectValue(41));
+		}
+	}
+
+	@Test
+	void testInvalidConfig() throws IOException {
+		final Path file = write(config("ISO1", "TERM1"));
+		try (ReloadableMessageFactory<IsoMessage> holder = create(file)) {
+			final MessageFactorySnapshot<IsoMessage> old = holder.get();
+			holder.addSample(old.newMessage(0x800).writeData(), 4, false);
+			write("<j8583-config><parse type=\"0800\">");
+			Assertions.assertThrows(IOException.class, holder::reload);
+			Assertions.assertSame(old, holder.get());
+			//Valid, but it can't parse the sample
+			write(config("ISO1", "TERM1").replace("<field num=\"41\" type=\"ALPHA\" length=\"8\" />\n", ""));
+			Assertions.assertThrows(IOException.class, holder::reload);
+			Assertions.assertSame(old, holder.get());
+		}
+		write("not xml");
+		Assertions.assertThrows(IOException.class, () -> create(file));
+	}
+
+	@Test
+	void testWatch() throws IOException, InterruptedException {
+		final Path file = write(config("ISO1", "TERM1"));
+		try (ReloadableMessageFactory<IsoMessage> holder = create(file)) {
+			final MessageFactorySnapshot<IsoMessage> old = holder.get();
+			holder.watch();
+			write(config("ISO3", "TERM3"));
+			for (int i = 0; i < 200 && holder.get() == old; i++) {
+				Thread.sleep(50);
+			}
+			Assertions.assertEquals("ISO3", holder.get().newMessage(0x800).getIsoHeader());
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.solab.iso8583;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.util.BitSet;
+
+/** Tests parsing only some of the fields of a message. */
+class TestSelectiveParsing {
+
+	private MessageFactory<IsoMessage> mf;
+	private IsoMessage orig;
+	private int hlen;
+	private final BitSet routing = new BitSet();
+
+	@BeforeEach
+	void init() throws IOException {
+		mf = new MessageFactory<>();
+		mf.setCharacterEncoding("UTF-8");
+		mf.setCustomField(48, new CustomField48());
+		mf.setConfigPath("config.xml");
+		hlen = mf.getIsoHeader(0x200).length();
+		orig = mf.newMessage(0x200);
+		orig.setValue(41, "TERM0001", IsoType.ALPHA, 16);
+		routing.set(3);
+		routing.set(32);
+		routing.set(33);
+		routing.set(41);
+	}
+
+	private void assertRoutingFields(IsoMessage m) {
+		Assertions.assertEquals(0x200, m.getType());
+		for (int i = 2; i <= IsoMessage.MAX_AMOUNT_OF_FIELDS; i++) {
+			Assertions.assertEquals(i == 3 || i == 32 || i == 41, m.hasField(i), "Field " + i);
+		}
+		Assertions.assertEquals(orig.getObjectValue(3).toString(), m.getObjectValue(3).toString());
+		Assertions.assertEquals(orig.getObjectValue(32).toString(), m.getObjectValue(32).toString());
+		Assertions.assertEquals("TERM0001", m.getObjectValue(41).toString().trim());
+	}
+
+	@Test
+	void testTextFields() throws Exception {
+		final byte[] buf = orig.writeData();
+		final ParsePosition end = new ParsePosition(0);
+		assertRoutingFields(mf.parseMessage(buf, 0, buf.length, hlen, false, routing, end));
+		//Parsing stopped right before field 43
+		final String rest = new String(buf, end.getIndex(), buf.length - end.getIndex(), "UTF-8");
+		Assertions.assertTrue(rest.startsWith("SOLABTEST"), rest);
+
+		mf.setUseLazyParsing(true);
+		assertRoutingFields(mf.parseMessage(buf, 0, buf.length, hlen, false, routing, null));
+	}
+
+	@Test
+	void testBinaryFields() throws Exception {
+		mf.setUseBinaryMessages(true);
+		orig.setBinary(true);
+		orig.setValue(61, "Only ASCII in binary messages", IsoType.LLLVAR, 0);
+		final byte[] buf = orig.writeData();
+		assertRoutingFields(mf.parseMessage(buf, 0, buf.length, hlen, false, routing, null));
+	}
+
+	@Test
+	void testAllFields() throws Exception {
+		final byte[] buf = orig.writeData();
+		final ParsePosition end = new ParsePosition(0);
+		IsoMessage m = mf.parseMessage(buf, 0, buf.length, hlen, false, null, end);
+		Assertions.assertArrayEquals(buf, m.writeData());
+		Assertions.assertEquals(buf.length, end.getIndex());
+	}
+
+	@Test
+	void testUnknownFields() throws Exception {
+		//Field 127 is not in the parsing guide, but it's after the routing fields
+		orig.setValue(127, "unknown", IsoType.LLLVAR, 0);
+		final byte[] buf = orig.writeData();
+		Assertions.assertThrows(ParseException.class, () -> mf.parseMessage(buf, hlen));
+		assertRoutingFields(mf.parseMessage(buf, 0, buf.length, hlen, false, routing, null));
+		routing.set(127);
+		Assertions.assertThrows(ParseException.class,
+				() -> mf.parseMessage(buf, 0, buf.length, hlen, false, routing, null));
+	}
+
+}
@@ -0,0 +1,188 @@
+package com.solab.iso8583;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.List;
+
+/** Tests the exact size of encoded messages and writing them straight into a ByteBuffer. */
+class TestWriteToBuffer {
+
+	private MessageFactory<IsoMessage> mf;
+
+	@BeforeEach
+	void init() throws IOException {
+		mf = new MessageFactory<>();
+		mf.setCharacterEncoding("UTF-8");
+		mf.setCustomField(48, new CustomField48());
+		mf.setConfigPath("config.xml");
+		mf.setAssignDate(true);
+		mf.setEtx(3);
+	}
+
+	private IsoMessage createMessage() {
+		IsoMessage m = mf.newMessage(0x200);
+		m.setValue(4, new BigDecimal("1234.56"), IsoType.AMOUNT, 0);
+		m.setValue(11, 123456, IsoType.NUMERIC, 6);
+		m.setValue(12, new Date(), IsoType.TIME, 0);
+		m.setValue(41, "TERM ñ", IsoType.ALPHA, 8);
+		m.setValue(52, new byte[]{ 1, 2, 3, 4, 5, 6, 7, 8 }, IsoType.BINARY, 8);
+		m.setValue(63, "ñandú", IsoType.LLLVAR, 0);
+		return m;
+	}
+
+	private static void assertWritesLikeStream(IsoMessage m, int lengthBytes) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		m.write(bout, lengthBytes);
+		final byte[] expected = bout.toByteArray();
+		Assertions.assertEquals(expected.length, m.encodedSize(lengthBytes));
+		ByteBuffer direct = ByteBuffer.allocateDirect(expected.length + 10);
+		direct.put((byte) 0x55);
+		m.writeTo(direct, lengthBytes);
+		Assertions.assertEquals(expected.length + 1, direct.position());
+		direct.flip();
+		direct.get();
+		byte[] written = new byte[expected.length];
+		direct.get(written);
+		Assertions.assertArrayEquals(expected, written);
+		ByteBuffer heap = m.writeToBuffer(lengthBytes);
+		Assertions.assertEquals(expected.length, heap.capacity());
+		Assertions.assertEquals(ByteBuffer.wrap(expected), heap);
+	}
+
+	@Test
+	void testTextMessage() throws IOException {
+		IsoMessage m = createMessage();
+		for (int lengthBytes = 0; lengthBytes <= 4; lengthBytes++) {
+			assertWritesLikeStream(m, lengthBytes);
+		}
+		m.setForceStringEncoding(true);
+		assertWritesLikeStream(m, 2);
+		m.setCharacterEncoding("UTF-16");
+		assertWritesLikeStream(m, 2);
+	}
+
+	@Test
+	void testVariableLengthMessage() throws IOException {
+		IsoMessage m = new IsoMessage();
+		m.setType(0x200);
+		m.setValue(2, "4000123412341234", IsoType.LLVAR, 0);
+		m.setValue(35, "4000123412341234=2512", IsoType.LLVAR, 0);
+		m.setValue(52, new byte[]{ 1, 2, 3, 4, 5, 6, 7, 8 }, IsoType.BINARY, 8);
+		m.setValue(55, new byte[]{ (byte) 0x9f, 0x26, 0x08, 1, 2, 3, 4 }, IsoType.LLLBIN, 0);
+		m.setValue(102, "ACCOUNT", IsoType.LLVAR, 0);
+		for (String enc : new String[]{ "ISO-8859-1", "Cp1047", "UTF-16" }) {
+			m.setCharacterEncoding(enc);
+			m.setForceStringEncoding(false);
+			assertWritesLikeStream(m, 2);
+			m.setForceStringEncoding(true);
+			assertWritesLikeStream(m, 2);
+		}
+		m.setBinary(true);
+		assertWritesLikeStream(m, 2);
+	}
+
+	@Test
+	void testBinaryMessage() throws IOException {
+		IsoMessage m = createMessage();
+		m.setBinary(true);
+		assertWritesLikeStream(m, 2);
+		m.setBinaryHeader(false);
+		m.setBinaryBitmap(true);
+		assertWritesLikeStream(m, 4);
+		m.setValue(130, "ABCD", IsoType.LLVAR, 0);
+		assertWritesLikeStream(m, 2);
+	}
+
+	@Test
+	void testStreamingWrite() throws IOException {
+		IsoMessage m = createMessage();
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		m.write(expected, 2);
+		m.write(expected, 4);
+		final int[] flushes = new int[1];
+		ByteArrayOutputStream bout = new ByteArrayOutputStream() {
+			@Override
+			public void flush() {
+				flushes[0]++;
+			}
+		};
+		m.write(bout, 2, false);
+		m.write(bout, 4, false);
+		Assertions.assertEquals(0, flushes[0]);
+		Assertions.assertArrayEquals(expected.toByteArray(), bout.toByteArray());
+		m.write(bout, 0, true);
+		Assertions.assertEquals(1, flushes[0]);
+	}
+
+	@Test
+	void testMessageType() throws IOException {
+		for (int type : new int[]{ 0x200, 0x9999, 0x20a, 0xf800 }) {
+			IsoMessage m = new IsoMessage();
+			m.setCharacterEncoding("UTF-8");
+			m.setType(type);
+			m.setValue(3, "650000", IsoType.NUMERIC, 6);
+			Assertions.assertEquals(String.format("%04x", type), new String(m.writeData(), 0, 4, "UTF-8"));
+			assertWritesLikeStream(m, 2);
+			m.setCharacterEncoding("Cp1047");
+			Assertions.assertEquals(String.format("%04x", type), new String(m.writeData(), 0, 4, "Cp1047"));
+			assertWritesLikeStream(m, 2);
+		}
+	}
+
+	@Test
+	void testHexFields() throws IOException {
+		final byte[] data = { 1, 0x23, 0x45, 0x67, (byte) 0x89, (byte) 0xab, (byte) 0xcd, (byte) 0xef };
+		for (IsoValue<byte[]> v : List.of(new IsoValue<>(IsoType.LLBIN, data), new IsoValue<>(IsoType.LLLBIN, data),
+				new IsoValue<>(IsoType.BINARY, data, 8), new IsoValue<>(IsoType.BINARY, data, 10))) {
+			for (String enc : new String[]{ "UTF-8", "Cp1047" }) {
+				v.setCharacterEncoding(enc);
+				ByteArrayOutputStream bout = new ByteArrayOutputStream();
+				v.write(bout, false, true);
+				final String text = v.getType() == IsoType.BINARY ? v.toString()
+						: String.format("%0" + (v.getType() == IsoType.LLBIN ? 2 : 3) + "d%s", 16, v);
+				Assertions.assertEquals(text, bout.toString(enc), v.getType() + " " + enc);
+				Assertions.assertEquals(bout.size(), v.encodedSize(false, true));
+			}
+		}
+	}
+
+	@Test
+	void testVariableLengthSizes() throws IOException {
+		final byte[] data = { 1, 0x23, 0x45, 0x67, (byte) 0x89 };
+		final String text = "x".repeat(120);
+		for (IsoValue<?> v : List.of(new IsoValue<>(IsoType.LLVAR, "Hello"), new IsoValue<>(IsoType.LLLVAR, text),
+				new IsoValue<>(IsoType.LLLLVAR, "ñandú"), new IsoValue<>(IsoType.LLBIN, data),
+				new IsoValue<>(IsoType.LLLBIN, data), new IsoValue<>(IsoType.LLLLBIN, data),
+				new IsoValue<>(IsoType.BINARY, data, 5), new IsoValue<>(IsoType.BINARY, data, 8),
+				new IsoValue<>(IsoType.BINARY, data, 3))) {
+			for (String enc : new String[]{ "ISO-8859-1", "UTF-8", "Cp1047", "UTF-16" }) {
+				v.setCharacterEncoding(enc);
+				for (boolean binary : new boolean[]{ false, true }) {
+					for (boolean force : new boolean[]{ false, true }) {
+						ByteArrayOutputStream bout = new ByteArrayOutputStream();
+						v.write(bout, binary, force);
+						Assertions.assertEquals(bout.size(), v.encodedSize(binary, force),
+								v.getType() + " " + enc + " binary " + binary + " force " + force);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void testOverflow() {
+		IsoMessage m = createMessage();
+		ByteBuffer buf = ByteBuffer.allocate(m.encodedSize(2) - 1);
+		Assertions.assertThrows(BufferOverflowException.class, () -> m.writeTo(buf, 2));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> m.encodedSize(5));
+	}
+
+}
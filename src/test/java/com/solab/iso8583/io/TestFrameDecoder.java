@@ -0,0 +1,147 @@
+package com.solab.iso8583.io;
+
+import com.solab.iso8583.IsoMessage;
+import com.solab.iso8583.IsoType;
+import com.solab.iso8583.MessageFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.text.ParseException;
+import java.util.Arrays;
+
+/** Tests reading framed messages from streams and channels. */
+class TestFrameDecoder {
+
+	private MessageFactory<IsoMessage> mf;
+	private int hlen;
+
+	@BeforeEach
+	void init() throws IOException {
+		mf = new MessageFactory<>();
+		mf.setCharacterEncoding("UTF-8");
+		mf.setConfigPath("config.xml");
+		hlen = mf.getIsoHeader(0x200).length();
+	}
+
+	/** Writes several messages with the specified length header. */
+	private byte[] frames(int lengthBytes, int count) throws IOException {
+		final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		for (int i = 1; i <= count; i++) {
+			IsoMessage m = mf.newMessage(0x200);
+			m.setValue(11, i, IsoType.NUMERIC, 6);
+			m.write(bout, lengthBytes);
+		}
+		return bout.toByteArray();
+	}
+
+	/** A stream that returns at most one byte on each read. */
+	private static InputStream trickle(byte[] data) {
+		return new FilterInputStream(new ByteArrayInputStream(data)) {
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return super.read(b, off, Math.min(len, 1));
+			}
+		};
+	}
+
+	private void assertMessages(FrameDecoder<IsoMessage> dec, InputStream ins, int count) throws Exception {
+		for (int i = 1; i <= count; i++) {
+			IsoMessage m = dec.read(ins);
+			Assertions.assertNotNull(m, "Message " + i);
+			Assertions.assertEquals(0x200, m.getType());
+			Assertions.assertEquals(i, Integer.parseInt((String) m.getObjectValue(11)));
+		}
+		Assertions.assertNull(dec.read(ins));
+	}
+
+	@Test
+	void testLengthHeaders() throws Exception {
+		//The messages are too long for a single byte header
+		for (int lengthBytes = 2; lengthBytes <= 4; lengthBytes++) {
+			final byte[] data = frames(lengthBytes, 5);
+			assertMessages(new FrameDecoder<>(mf, lengthBytes, hlen), new ByteArrayInputStream(data), 5);
+			assertMessages(new FrameDecoder<>(mf, lengthBytes, hlen), trickle(data), 5);
+		}
+	}
+
+	@Test
+	void testEtx() throws Exception {
+		mf.setEtx(3);
+		final byte[] data = frames(2, 3);
+		assertMessages(new FrameDecoder<>(mf, 2, hlen), trickle(data), 3);
+		final byte[] noLength = frames(0, 3);
+		assertMessages(new FrameDecoder<>(mf, 0, hlen), new ByteArrayInputStream(noLength), 3);
+		assertMessages(new FrameDecoder<>(mf, 0, hlen), trickle(noLength), 3);
+		mf.setEtx(-1);
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new FrameDecoder<>(mf, 0, hlen));
+	}
+
+	@Test
+	void testChannel() throws Exception {
+		final byte[] data = frames(2, 4);
+		final FrameDecoder<IsoMessage> dec = new FrameDecoder<>(mf, 2, hlen);
+		try (ReadableByteChannel ch = Channels.newChannel(trickle(data))) {
+			for (int i = 1; i <= 4; i++) {
+				Assertions.assertEquals(i, Integer.parseInt((String) dec.read(ch).getObjectValue(11)));
+			}
+			Assertions.assertNull(dec.read(ch));
+			Assertions.assertTrue(dec.isEndOfStream());
+		}
+	}
+
+	@Test
+	void testLazyFactory() throws Exception {
+		mf.setUseLazyParsing(true);
+		final FrameDecoder<IsoMessage> dec = new FrameDecoder<>(mf, 2, hlen);
+		final InputStream ins = new ByteArrayInputStream(frames(2, 3));
+		IsoMessage m1 = dec.read(ins);
+		IsoMessage m2 = dec.read(ins);
+		Assertions.assertEquals(1, Integer.parseInt((String) m1.getObjectValue(11)));
+		Assertions.assertEquals(2, Integer.parseInt((String) m2.getObjectValue(11)));
+	}
+
+	@Test
+	void testLargeMessage() throws Exception {
+		IsoMessage m = mf.newMessage(0x200);
+		final char[] big = new char[9000];
+		Arrays.fill(big, 'x');
+		m.setValue(61, new String(big), IsoType.LLLLVAR, 0);
+		final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		m.write(bout, 2);
+		final FrameDecoder<IsoMessage> dec = new FrameDecoder<>(mf, 2, hlen);
+		dec.setMaxFrameLength(8192);
+		Assertions.assertThrows(IOException.class, () -> dec.read(new ByteArrayInputStream(bout.toByteArray())));
+	}
+
+	@Test
+	void testIncompleteMessage() throws Exception {
+		final byte[] data = frames(2, 2);
+		final FrameDecoder<IsoMessage> dec = new FrameDecoder<>(mf, 2, hlen);
+		final InputStream ins = new ByteArrayInputStream(data, 0, data.length - 5);
+		Assertions.assertNotNull(dec.read(ins));
+		Assertions.assertThrows(EOFException.class, () -> dec.read(ins));
+	}
+
+	@Test
+	void testSkipInvalidMessage() throws Exception {
+		final byte[] good = frames(2, 1);
+		final byte[] data = new byte[good.length * 2];
+		System.arraycopy(good, 0, data, 0, good.length);
+		System.arraycopy(good, 0, data, good.length, good.length);
+		data[2 + hlen] = '9'; //message type with no parsing guide
+		final FrameDecoder<IsoMessage> dec = new FrameDecoder<>(mf, 2, hlen);
+		final InputStream ins = new ByteArrayInputStream(data);
+		Assertions.assertThrows(ParseException.class, () -> dec.read(ins));
+		Assertions.assertEquals(0x200, dec.read(ins).getType());
+	}
+
+}
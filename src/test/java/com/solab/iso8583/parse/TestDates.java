@@ -75,6 +75,19 @@ class TestDates {
 		Assertions.assertEquals(comp.getValue().getTime(), bin.getValue().getTime());
 	}
 
+	@Test
+	void testForceStringDecoding() throws ParseException, IOException {
+		final TimeZone utc = TimeZone.getTimeZone("UTC");
+		Date12ParseInfo d12 = new Date12ParseInfo();
+		d12.setForceStringDecoding(true);
+		d12.setTimeZone(utc);
+		Assertions.assertEquals(1514700000000L, d12.parse(0, "171231060000".getBytes(), 0, null).getValue().getTime());
+		Date14ParseInfo d14 = new Date14ParseInfo();
+		d14.setForceStringDecoding(true);
+		d14.setTimeZone(utc);
+		Assertions.assertEquals(1514700000000L, d14.parse(0, "20171231060000".getBytes(), 0, null).getValue().getTime());
+	}
+
     @Test
     void testDate6() throws ParseException, IOException {
 	    TimeZone defaultTz =TimeZone.getDefault();
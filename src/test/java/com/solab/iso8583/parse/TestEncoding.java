@@ -1,11 +1,17 @@
 package com.solab.iso8583.parse;
 
+import com.solab.iso8583.IsoMessage;
+import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.MessageFactory;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
+import java.text.ParsePosition;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Test parsing of data with different encodings.
@@ -28,4 +34,92 @@ class TestEncoding {
         Assertions.assertEquals(data.substring(2), field.getValue());
     }
 
+    @Test
+    void testCharsets() throws UnsupportedEncodingException, ParseException {
+        final byte[] buf = "04ABC\u00e9".getBytes("ISO-8859-1");
+        final LlvarParseInfo parser = new LlvarParseInfo();
+        for (String enc : new String[]{ "US-ASCII", "ISO-8859-1", "Cp1047" }) {
+            parser.setCharacterEncoding(enc);
+            Assertions.assertEquals(new String(buf, 2, 4, enc), parser.parse(1, buf, 0, null).getValue(), enc);
+        }
+        parser.setCharacterEncoding("no-such-encoding");
+        Assertions.assertEquals("no-such-encoding", parser.getCharacterEncoding());
+        Assertions.assertThrows(UnsupportedEncodingException.class, () -> parser.parse(1, buf, 0, null));
+    }
+
+    @Test
+    void testUtf8Span() throws UnsupportedEncodingException, ParseException {
+        final String text = "a\u00f1\u20ac\ud83d\ude00z";
+        final byte[] buf = ("06" + text + "xyz").getBytes("UTF-8");
+        final LlvarParseInfo parser = new LlvarParseInfo();
+        parser.setCharacterEncoding("UTF-8");
+        Assertions.assertEquals(text, parser.parse(1, buf, 0, null).getValue());
+        Assertions.assertEquals(11, FieldParseInfo.utf8Span(buf, 2, buf.length, 6));
+        //A surrogate pair is not split
+        Assertions.assertEquals(-1, FieldParseInfo.utf8Span(buf, 2, buf.length, 4));
+        //Malformed input is measured by the decoder, replacing the bad bytes
+        final byte[] bad = { '0', '4', 'a', (byte) 0xe2, (byte) 0x28, 'b', 'c', 'd' };
+        Assertions.assertEquals(-1, FieldParseInfo.utf8Span(bad, 2, bad.length, 4));
+        Assertions.assertEquals(new String(bad, 2, 4, "UTF-8"), parser.parse(1, bad, 0, null).getValue());
+        //Not enough characters
+        final byte[] shortBuf = "05\u00e1cid".getBytes("UTF-8");
+        Assertions.assertThrows(ParseException.class, () -> parser.parse(1, shortBuf, 0, null));
+    }
+
+    @Test
+    void testParseWithCursor() throws UnsupportedEncodingException, ParseException {
+        final byte[] buf = "x06\u00f1and\u00fa!005a\u00e9iouABC".getBytes("UTF-8");
+        final FieldParseInfo[] parsers = { new LlvarParseInfo(), new LllvarParseInfo(), new AlphaParseInfo(3) };
+        final String[] values = { "\u00f1and\u00fa!", "a\u00e9iou", "ABC" };
+        final ParsePosition cursor = new ParsePosition(1);
+        for (int i = 0; i < parsers.length; i++) {
+            parsers[i].setCharacterEncoding("UTF-8");
+            final int pos = cursor.getIndex();
+            Assertions.assertEquals(values[i], parsers[i].parse(i, buf, cursor, buf.length, null).getValue());
+            //The cursor moves as far as the field measures
+            Assertions.assertEquals(pos + parsers[i].measure(i, buf, pos, buf.length), cursor.getIndex());
+        }
+        Assertions.assertEquals(buf.length, cursor.getIndex());
+        //Binary length headers
+        final byte[] bin = { 0x03, 'a', 'b', 'c', 0x00, 0x02, 1, 2, 9 };
+        cursor.setIndex(0);
+        Assertions.assertEquals("abc", new LlvarParseInfo().parseBinary(1, bin, cursor, bin.length, null).getValue());
+        Assertions.assertEquals(4, cursor.getIndex());
+        Assertions.assertArrayEquals(new byte[]{ 1, 2 },
+                (byte[]) new LllbinParseInfo().parseBinary(2, bin, cursor, bin.length, null).getValue());
+        Assertions.assertEquals(8, cursor.getIndex());
+    }
+
+    @Test
+    void testLastCharacterMultiByte() throws UnsupportedEncodingException, ParseException {
+        //The first 4 bytes decode to 4 characters too, with the last one cut in half
+        final byte[] buf = "04Caf\u00e902XYCaf\u00e9".getBytes("UTF-8");
+        final LlvarParseInfo llvar = new LlvarParseInfo();
+        llvar.setCharacterEncoding("UTF-8");
+        final AlphaParseInfo alpha = new AlphaParseInfo(4);
+        alpha.setCharacterEncoding("UTF-8");
+        final ParsePosition cursor = new ParsePosition(0);
+        Assertions.assertEquals("Caf\u00e9", llvar.parse(1, buf, cursor, buf.length, null).getValue());
+        Assertions.assertEquals(7, cursor.getIndex());
+        Assertions.assertEquals(7, llvar.measure(1, buf, 0, buf.length));
+        Assertions.assertEquals("XY", llvar.parse(2, buf, cursor, buf.length, null).getValue());
+        Assertions.assertEquals("Caf\u00e9", alpha.parse(3, buf, cursor, buf.length, null).getValue());
+        Assertions.assertEquals(buf.length, cursor.getIndex());
+        Assertions.assertEquals("Caf\u00e9", llvar.parse(1, buf, 0, null).getValue());
+        //The fields after it are parsed from the right position, eagerly and lazily
+        final MessageFactory<IsoMessage> mf = new MessageFactory<>();
+        final Map<Integer, FieldParseInfo> guide = new HashMap<>();
+        guide.put(43, new LlvarParseInfo());
+        guide.put(44, new LlvarParseInfo());
+        mf.setParseMap(0x200, guide);
+        mf.setCharacterEncoding("UTF-8");
+        final IsoMessage m = mf.newMessage(0x200);
+        m.setValue(43, "Caf\u00e9", IsoType.LLVAR, 0);
+        m.setValue(44, "XY", IsoType.LLVAR, 0);
+        final byte[] data = m.writeData();
+        Assertions.assertEquals("XY", mf.parseMessage(data, 0).getObjectValue(44));
+        mf.setUseLazyParsing(true);
+        Assertions.assertEquals("XY", mf.parseMessage(data, 0).getObjectValue(44));
+    }
+
 }
@@ -0,0 +1,23 @@
+package com.solab.iso8583.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests resolving character encoding names to charsets.
+ */
+class TestCharsets {
+
+    @Test
+    void testLookup() {
+        Assertions.assertEquals(StandardCharsets.US_ASCII, Charsets.lookup("US-ASCII"));
+        Assertions.assertEquals(StandardCharsets.ISO_8859_1, Charsets.lookup("latin1"));
+        Assertions.assertSame(Charsets.lookup("UTF-8"), Charsets.lookup("UTF-8"));
+        Assertions.assertNull(Charsets.lookup(null));
+        Assertions.assertNull(Charsets.lookup("no-such-encoding"));
+        Assertions.assertNull(Charsets.lookup("*illegal*"));
+    }
+
+}
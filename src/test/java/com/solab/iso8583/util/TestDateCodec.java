@@ -0,0 +1,62 @@
+package com.solab.iso8583.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Tests for the date arithmetic used when parsing dates.
+ */
+class TestDateCodec {
+
+    @Test
+    void testEpochDay() {
+        for (LocalDate d = LocalDate.of(1899, 1, 1); d.getYear() < 2101; d = d.plusDays(1)) {
+            Assertions.assertEquals(d.toEpochDay(), DateCodec.epochDay(d.getYear(), d.getMonthValue(), d.getDayOfMonth()),
+                    d.toString());
+        }
+    }
+
+    @Test
+    void testLenient() {
+        Assertions.assertEquals(LocalDate.of(2023, 3, 2).toEpochDay(), DateCodec.epochDay(2023, 2, 30));
+        Assertions.assertEquals(LocalDate.of(2024, 1, 5).toEpochDay(), DateCodec.epochDay(2023, 13, 5));
+        Assertions.assertEquals(LocalDate.of(2022, 12, 31).toEpochDay(), DateCodec.epochDay(2023, 1, 0));
+        Assertions.assertEquals(29, DateCodec.monthLength(2000, 2));
+        Assertions.assertEquals(28, DateCodec.monthLength(1900, 2));
+    }
+
+    @Test
+    void testTimeZones() {
+        final ZoneId mx = ZoneId.of("America/Mexico_City");
+        final ZoneId ny = ZoneId.of("America/New_York");
+        LocalDateTime ldt = LocalDateTime.of(2018, 7, 15, 13, 45, 7);
+        for (ZoneId zone : new ZoneId[]{ ZoneId.of("UTC"), ZoneId.of("GMT-0600"), mx, ny }) {
+            Assertions.assertEquals(ZonedDateTime.of(ldt, zone).toInstant().toEpochMilli(),
+                    DateCodec.toEpochMillis(2018, 7, 15, 13, 45, 7, zone), zone.toString());
+        }
+        //Skipped by daylight saving time, moved forward
+        Assertions.assertEquals(ZonedDateTime.of(LocalDateTime.of(2021, 3, 14, 2, 30), ny).toInstant().toEpochMilli(),
+                DateCodec.toEpochMillis(2021, 3, 14, 2, 30, 0, ny));
+        //Repeated when daylight saving time ends, the earlier one is used
+        Assertions.assertEquals(ZonedDateTime.of(LocalDateTime.of(2021, 11, 7, 1, 30), ny).toInstant().toEpochMilli(),
+                DateCodec.toEpochMillis(2021, 11, 7, 1, 30, 0, ny));
+    }
+
+    @Test
+    void testToday() {
+        final LocalDate now = LocalDate.now();
+        final DateCodec.Today today = DateCodec.today();
+        //Unless the test runs exactly at midnight
+        if (now.equals(LocalDate.now())) {
+            Assertions.assertEquals(now.getYear(), today.getYear());
+            Assertions.assertEquals(now.getMonthValue(), today.getMonth());
+            Assertions.assertEquals(now.getDayOfMonth(), today.getDay());
+        }
+    }
+
+}
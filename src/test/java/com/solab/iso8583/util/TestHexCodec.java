@@ -3,6 +3,8 @@ package com.solab.iso8583.util;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+
 class TestHexCodec {
 
 	public void encodeDecode(String hex) {
@@ -43,4 +45,21 @@ class TestHexCodec {
                 1, 2));
     }
 
+	@Test
+	void testBytes() {
+		final byte[] ascii = "x0123456789abcdefABCDEFx".getBytes(StandardCharsets.US_ASCII);
+		for (int len = 0; len <= 22; len++) {
+			final String hex = new String(ascii, 1, len, StandardCharsets.US_ASCII);
+			Assertions.assertArrayEquals(HexCodec.hexDecode(hex), HexCodec.hexDecode(ascii, 1, len), hex);
+		}
+		final byte[] dest = new byte[13];
+		Assertions.assertEquals(12, HexCodec.hexDecode(ascii, 1, 22, dest, 1));
+		Assertions.assertEquals(0x01, dest[1]);
+		Assertions.assertEquals((byte) 0xef, dest[11]);
+		final byte[] hex = new byte[14];
+		Assertions.assertEquals(13, HexCodec.hexEncode(new byte[]{ 1, 2, (byte) 0xab, (byte) 0xcd, 0, (byte) 0xff, 9 },
+				1, 6, hex, 1));
+		Assertions.assertEquals("02ABCD00FF09", new String(hex, 1, 12, StandardCharsets.US_ASCII));
+	}
+
 }
@@ -0,0 +1,87 @@
+package com.solab.iso8583.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for the zero-filled digit writers.
+ */
+class TestNumericCodec {
+
+    @Test
+    void testAscii() {
+        final byte[] buf = new byte[8];
+        Assertions.assertEquals(7, NumericCodec.writeAscii(123, 6, buf, 1));
+        Assertions.assertEquals("000123", new String(buf, 1, 6, StandardCharsets.US_ASCII));
+        Assertions.assertEquals(6, NumericCodec.writeAscii(999999, 6, buf, 0));
+        Assertions.assertEquals("999999", new String(buf, 0, 6, StandardCharsets.US_ASCII));
+        final byte[] big = new byte[19];
+        NumericCodec.writeAscii(Long.MAX_VALUE, 19, big, 0);
+        Assertions.assertEquals(Long.toString(Long.MAX_VALUE), new String(big, StandardCharsets.US_ASCII));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> NumericCodec.writeAscii(1000000, 6, buf, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> NumericCodec.writeAscii(-1, 6, buf, 0));
+    }
+
+    @Test
+    void testBcdLikeEncode() {
+        for (long v : new long[]{ 0, 7, 79, 100, 779, 12345, 999999 }) {
+            for (int digits = 6; digits <= 9; digits++) {
+                final byte[] expected = new byte[(digits / 2) + (digits % 2)];
+                Bcd.encode(String.format("%0" + digits + "d", v), expected);
+                final byte[] buf = new byte[expected.length];
+                Assertions.assertEquals(buf.length, NumericCodec.writeBcd(v, digits, buf, 0));
+                Assertions.assertArrayEquals(expected, buf, v + " in " + digits);
+            }
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> NumericCodec.writeBcd(1000, 3, new byte[2], 0));
+    }
+
+    @Test
+    void testReadAscii() {
+        final byte[] buf = "x123456789012345678x".getBytes(StandardCharsets.US_ASCII);
+        for (int digits = 0; digits <= 18; digits++) {
+            final long expected = digits == 0 ? 0 : Long.parseLong(new String(buf, 1, digits, StandardCharsets.US_ASCII));
+            Assertions.assertEquals(expected, NumericCodec.readAscii(buf, 1, digits), "digits " + digits);
+            Assertions.assertEquals(-1, NumericCodec.indexOfNonDigit(buf, 1, digits));
+        }
+        Assertions.assertEquals(-1, NumericCodec.readAscii(buf, 0, 12));
+        Assertions.assertEquals(-1, NumericCodec.readAscii(buf, 8, 12));
+        Assertions.assertEquals(19, NumericCodec.indexOfNonDigit(buf, 1, 19));
+        for (byte bad : new byte[]{ '/', ':', '?', ' ', 0x40, (byte) 0xb0, (byte) 0xf0 }) {
+            final byte[] copy = buf.clone();
+            copy[13] = bad;
+            Assertions.assertEquals(-1, NumericCodec.readAscii(copy, 1, 16), "byte " + bad);
+            Assertions.assertEquals(13, NumericCodec.indexOfNonDigit(copy, 1, 18), "byte " + bad);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> NumericCodec.readAscii(new byte[19], 0, 19));
+    }
+
+    @Test
+    void testReadBcd() {
+        final byte[] buf = { 0x12, 0x34, 0x56, 0x78, (byte) 0x90, 0x12, 0x34, 0x56, 0x78, (byte) 0x99 };
+        Assertions.assertEquals(123456789012345678L, NumericCodec.readBcd(buf, 0, 18));
+        Assertions.assertEquals(345678901234567899L, NumericCodec.readBcd(buf, 1, 18));
+        Assertions.assertEquals(1234567890123456L, NumericCodec.readBcd(buf, 0, 16));
+        Assertions.assertEquals(1234L, NumericCodec.readBcd(buf, 0, 4));
+        Assertions.assertEquals(123L, NumericCodec.readBcd(new byte[]{ 0x01, 0x23 }, 0, 3));
+        Assertions.assertEquals(Bcd.decodeToLong(buf, 0, 17), NumericCodec.readBcd(buf, 0, 17));
+        final byte[] bad = buf.clone();
+        bad[6] = 0x3c;
+        Assertions.assertEquals(-1, NumericCodec.readBcd(bad, 0, 18));
+        Assertions.assertEquals(6, NumericCodec.indexOfNonBcd(bad, 0, 9));
+        bad[6] = (byte) 0xa4;
+        Assertions.assertEquals(-1, NumericCodec.readBcd(bad, 0, 16));
+        Assertions.assertEquals(-1, NumericCodec.indexOfNonBcd(buf, 0, 10));
+        //The lenient conversion adds invalid nibbles with their value, like it always has
+        final byte[] ff = { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+                (byte) 0xff, (byte) 0xff, (byte) 0xff };
+        long expected = 0;
+        for (int i = 0; i < 18; i++) {
+            expected = expected * 10 + 15;
+        }
+        Assertions.assertEquals(expected, Bcd.decodeToLong(ff, 0, 18));
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.solab.iso8583.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests translating single-byte encodings through tables.
+ */
+class TestSingleByteCodec {
+
+    @Test
+    void testForCharset() {
+        Assertions.assertNull(SingleByteCodec.forCharset(null));
+        Assertions.assertNull(SingleByteCodec.forCharset(StandardCharsets.UTF_8));
+        Assertions.assertNull(SingleByteCodec.forCharset(StandardCharsets.US_ASCII));
+        Assertions.assertNull(SingleByteCodec.forCharset(StandardCharsets.UTF_16));
+        Assertions.assertNotNull(SingleByteCodec.forCharset(Charset.forName("Cp1047")));
+        Assertions.assertSame(SingleByteCodec.forCharset(Charset.forName("Cp037")),
+                SingleByteCodec.forCharset(Charset.forName("IBM037")));
+    }
+
+    @Test
+    void testLikeCharset() {
+        final byte[] all = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            all[i] = (byte) i;
+        }
+        final String text = "ISO8583 ñandú €Ж 😀!";
+        for (String enc : new String[]{ "Cp1047", "Cp037", "Cp1140", "Cp1252", "KOI8-R" }) {
+            final Charset cs = Charset.forName(enc);
+            final SingleByteCodec codec = SingleByteCodec.forCharset(cs);
+            Assertions.assertEquals(new String(all, cs), codec.decode(all, 0, 256), enc);
+            Assertions.assertEquals(new String(all, 10, 20, cs), codec.decode(all, 10, 20), enc);
+            Assertions.assertArrayEquals(text.getBytes(cs), codec.encode(text), enc);
+            Assertions.assertArrayEquals(text.substring(0, 12).getBytes(cs), codec.encode(text.substring(0, 12)), enc);
+        }
+    }
+
+    @Test
+    void testDigits() {
+        final Charset cs = Charset.forName("Cp1047");
+        final SingleByteCodec codec = SingleByteCodec.forCharset(cs);
+        final byte[] buf = "x0200F1a0".getBytes(cs);
+        Assertions.assertEquals(200, codec.parseDigits(buf, 1, 4, 10));
+        Assertions.assertEquals(0x200, codec.parseDigits(buf, 1, 4, 16));
+        Assertions.assertEquals(0xf1a0, codec.parseDigits(buf, 5, 4, 16));
+        Assertions.assertEquals(-1, codec.parseDigits(buf, 5, 4, 10));
+        Assertions.assertEquals(-1, codec.parseDigits(buf, 0, 4, 16));
+        final byte[] ascii = new byte[9];
+        codec.toAscii(buf, 0, ascii, 0, 9);
+        Assertions.assertEquals("x0200F1a0", new String(ascii, StandardCharsets.US_ASCII));
+        codec.fromAscii(ascii, 0, 9);
+        Assertions.assertArrayEquals(buf, ascii);
+    }
+
+}